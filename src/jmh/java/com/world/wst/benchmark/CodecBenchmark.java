@@ -0,0 +1,80 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.network.BinaryCodec;
+import com.world.wst.network.NetworkMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NetworkMessage 的 JSON 与二进制编解码
+ * 
+ * @author World Studio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    
+    private NetworkMessage message;
+    private String json;
+    private BinaryCodec codec;
+    private BinaryCodec.Decoder decoder;
+    private byte[] frame;
+    
+    @Setup
+    public void setup() throws IOException {
+        message = NetworkMessage.createChatMessage("server1", "主服务器", "全服大厅", "Steve",
+            "大家好，今天晚上八点在主城广场集合开始活动！");
+        json = message.toJson();
+        
+        codec = new BinaryCodec();
+        frame = toBytes(codec.encode(message));
+        decoder = new BinaryCodec.Decoder();
+        for (int i = 0; i < codec.getDictionarySize(); i++) {
+            byte[] definition = toBytes(codec.getDefinition(i));
+            decoder.decodeFrame(definition, 0, definition.length, decoded -> { });
+        }
+    }
+    
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+    
+    @Benchmark
+    public String jsonEncode() {
+        return message.toJson();
+    }
+    
+    @Benchmark
+    public NetworkMessage jsonDecode() {
+        return NetworkMessage.fromJson(json);
+    }
+    
+    @Benchmark
+    public ByteBuffer binaryEncode() {
+        return codec.encode(message);
+    }
+    
+    @Benchmark
+    public int binaryDecode(Blackhole blackhole) throws IOException {
+        return decoder.decodeFrame(frame, 0, frame.length, blackhole::consume);
+    }
+}
\ No newline at end of file
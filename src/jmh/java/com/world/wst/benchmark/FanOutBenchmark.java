@@ -0,0 +1,77 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.data.ChatRoom;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 聊天室消息分发: 原来的复制成员集合并按 UUID 查找玩家与在线成员数组的对比
+ * 
+ * 原来的 Bukkit.getPlayer(uuid) 用一个 UUID 到玩家的 HashMap 代替。
+ * 
+ * @author World Studio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int members;
+    
+    private ChatRoom room;
+    private Map<UUID, Player> onlinePlayers;
+    private AtomicLong received;
+    private final String formatted = "§7[§b全服大厅§7] §fSteve§7: §f大家好";
+    
+    @Setup
+    public void setup() {
+        room = new ChatRoom("全服大厅", "服务器", true);
+        room.setMaxMembers(members);
+        onlinePlayers = new HashMap<>();
+        received = new AtomicLong();
+        for (int i = 0; i < members; i++) {
+            Player player = StandIns.player("Player" + i, received);
+            room.addMember(player);
+            onlinePlayers.put(player.getUniqueId(), player);
+        }
+    }
+    
+    @Benchmark
+    public long legacyLookup() {
+        for (UUID memberId : room.getMembers()) {
+            Player member = onlinePlayers.get(memberId);
+            if (member != null && member.isOnline()) {
+                member.sendMessage(formatted);
+            }
+        }
+        return received.get();
+    }
+    
+    @Benchmark
+    public long onlineArray() {
+        for (Player member : room.getOnlineMembers()) {
+            member.sendMessage(formatted);
+        }
+        return received.get();
+    }
+}
\ No newline at end of file
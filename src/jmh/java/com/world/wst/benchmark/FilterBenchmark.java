@@ -0,0 +1,68 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.filter.WordFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天过滤的单条消息开销
+ * 
+ * 没有命中的消息是绝大多数，应当不分配对象 (配合 -prof gc 查看)；命中时才复制一份替换。
+ * 
+ * @author World Studio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    
+    @Param({"100", "10000"})
+    public int words;
+    
+    private WordFilter filter;
+    private String clean;
+    private String dirty;
+    
+    @Setup
+    public void setup() {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            list.add("广告" + i + "号");
+        }
+        list.add("加我ＱＱ");
+        filter = WordFilter.compile(list);
+        clean = "今天天气不错，大家一起去挖矿吧，晚上八点在主城集合 see you";
+        dirty = "今天天气不错，想要钻石的加我qq 123456，晚上八点在主城集合";
+    }
+    
+    @Benchmark
+    public String censorClean() {
+        return filter.censor(clean, '*');
+    }
+    
+    @Benchmark
+    public String censorDirty() {
+        return filter.censor(dirty, '*');
+    }
+    
+    @Benchmark
+    public boolean matchClean() {
+        return filter.matches(clean);
+    }
+}
\ No newline at end of file
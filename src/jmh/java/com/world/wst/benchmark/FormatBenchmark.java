@@ -0,0 +1,91 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.manager.MessageTemplate;
+import com.world.wst.manager.WstSettings;
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息格式化: 原来的逐个 replace 再转换颜色代码与预编译模板的对比
+ * 
+ * @author World Studio
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+    
+    private WstSettings settings;
+    private String chatFormat;
+    private String crossServerFormat;
+    private String roomMessage;
+    private MessageTemplate roomTemplate;
+    
+    private final String room = "全服大厅";
+    private final String player = "Steve";
+    private final String server = "生存服务器";
+    private final String message = "&a大家好&r，今天晚上八点在主城广场集合开始活动！";
+    
+    @Setup
+    public void setup() throws Exception {
+        settings = StandIns.settings();
+        chatFormat = settings.getChatMessageFormat();
+        crossServerFormat = settings.getCrossServerMessageFormat();
+        roomMessage = "聊天室 &e{room} &c不存在！";
+        roomTemplate = MessageTemplate.compileMessage(roomMessage);
+    }
+    
+    @Benchmark
+    public String legacyChat() {
+        String format = chatFormat;
+        format = format.replace("{room}", room);
+        format = format.replace("{player}", player);
+        format = format.replace("{message}", message);
+        return ChatColor.translateAlternateColorCodes('&', format);
+    }
+    
+    @Benchmark
+    public String templateChat() {
+        return settings.getChatTemplate().render(room, player, message);
+    }
+    
+    @Benchmark
+    public String legacyCrossServer() {
+        String format = crossServerFormat;
+        format = format.replace("{server}", server);
+        format = format.replace("{room}", room);
+        format = format.replace("{player}", player);
+        format = format.replace("{message}", message);
+        return ChatColor.translateAlternateColorCodes('&', format);
+    }
+    
+    @Benchmark
+    public String templateCrossServer() {
+        return settings.getCrossServerTemplate().render(server, room, player, message);
+    }
+    
+    @Benchmark
+    public String legacyPlaceholderMessage() {
+        String result = ChatColor.translateAlternateColorCodes('&', roomMessage);
+        return result.replace("{room}", room);
+    }
+    
+    @Benchmark
+    public String templatePlaceholderMessage() {
+        return roomTemplate.renderNamed("room", room);
+    }
+}
\ No newline at end of file
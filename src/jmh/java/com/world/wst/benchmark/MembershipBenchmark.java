@@ -0,0 +1,86 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.data.ChatRoom;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ChatRoom 成员加入/离开与遍历在并发下的表现
+ * 
+ * 一个线程不断让玩家离开再加入，三个线程同时遍历在线成员，模拟聊天高峰时玩家切换聊天室。
+ * "joins" 组中八个线程同时让随机玩家离开再加入，聊天室始终处于满员边缘，名额检查在竞争下进行。
+ * 
+ * @author World Studio
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MembershipBenchmark {
+    
+    @Param({"100", "1000"})
+    public int members;
+    
+    private ChatRoom room;
+    private Player[] players;
+    
+    @Setup
+    public void setup() {
+        room = new ChatRoom("全服大厅", "服务器", true);
+        room.setMaxMembers(members);
+        players = new Player[members];
+        AtomicLong received = new AtomicLong();
+        for (int i = 0; i < members; i++) {
+            players[i] = StandIns.player("Player" + i, received);
+            room.addMember(players[i]);
+        }
+    }
+    
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public boolean leaveAndJoin() {
+        Player player = players[ThreadLocalRandom.current().nextInt(players.length)];
+        room.removeMember(player.getUniqueId());
+        return room.addMember(player);
+    }
+    
+    @Benchmark
+    @Group("joins")
+    @GroupThreads(8)
+    public boolean contendedJoin() {
+        Player player = players[ThreadLocalRandom.current().nextInt(players.length)];
+        return room.removeMember(player.getUniqueId()) && room.addMember(player);
+    }
+    
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(3)
+    public int iterate() {
+        int count = 0;
+        for (Player member : room.getOnlineMembers()) {
+            if (member != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
\ No newline at end of file
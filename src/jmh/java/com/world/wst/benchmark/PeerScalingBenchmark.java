@@ -0,0 +1,287 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.network.NetworkMessage;
+import com.world.wst.network.NetworkTransport;
+import com.world.wst.network.PeerConnection;
+import com.world.wst.network.TransportListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * 大量对端连接时不同执行方式的线程数、内存和接收延迟
+ * 
+ * 一个中心服务器接受 100 个模拟对端的连接，比较三种接收方式：
+ * <ul>
+ *   <li>selector: 插件使用的 {@link NetworkTransport}，固定数量的 I/O 线程</li>
+ *   <li>platform: 每个连接一个阻塞读取的平台线程 (改为 NIO 之前的做法)</li>
+ *   <li>virtual: 同样的阻塞读取，改用虚拟线程，只能在 Java 21 及以上运行</li>
+ * </ul>
+ * 连接全部建立后打印新增的线程数、堆内存和进程常驻内存 (RSS，包含线程栈)。
+ * 每次调用每个对端发送一条聊天消息，等待中心服务器全部收到。
+ * 
+ * 虚拟线程通过反射创建，基准测试在 Java 17 上也能编译；运行时不支持时该参数组合报错跳过。
+ * 
+ * @author World Studio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PeerScalingBenchmark {
+    
+    private static final int PEERS = 100;
+    
+    @Param({"selector", "platform", "virtual"})
+    public String mode;
+    
+    private final AtomicLong received = new AtomicLong();
+    private NetworkTransport transport;
+    private BlockingHub blockingHub;
+    private final List<Socket> peers = new ArrayList<>();
+    private byte[] line;
+    
+    @Setup
+    public void setup() throws Exception {
+        Function<Runnable, Thread> threads = null;
+        if ("virtual".equals(mode)) {
+            threads = virtualThreads();
+        } else if ("platform".equals(mode)) {
+            threads = Thread::new;
+        }
+        
+        System.gc();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        long rssBefore = residentSetSize();
+        
+        int port;
+        if (threads == null) {
+            transport = new NetworkTransport("hub", "hub", 2, Logger.getLogger("WST-benchmark"), new Listener());
+            transport.setBinaryEnabled(false);
+            transport.start();
+            transport.bind("127.0.0.1", 0);
+            port = transport.getLocalPort();
+        } else {
+            blockingHub = new BlockingHub(threads);
+            port = blockingHub.getLocalPort();
+        }
+        
+        for (int i = 0; i < PEERS; i++) {
+            Socket socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress("127.0.0.1", port), 5000);
+            peers.add(socket);
+        }
+        // 等待所有连接被接受
+        Thread.sleep(500);
+        
+        System.gc();
+        System.out.println();
+        System.out.println("# " + mode + ": " + PEERS + " 个连接, 新增线程 "
+            + (ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore)
+            + ", 堆内存 +" + (usedHeap() - heapBefore) / 1024 + " KB"
+            + (rssBefore >= 0 ? ", RSS +" + (residentSetSize() - rssBefore) / 1024 + " KB" : ""));
+        
+        NetworkMessage message = NetworkMessage.createChatMessage("peer", "子服务器", "全服大厅", "Steve",
+            "&a大家好&r，今天晚上八点在主城广场集合开始活动！");
+        line = (message.toJson() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Socket peer : peers) {
+            peer.close();
+        }
+        peers.clear();
+        if (transport != null) {
+            transport.close();
+        }
+        if (blockingHub != null) {
+            blockingHub.close();
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(PEERS)
+    public void fanIn() throws IOException {
+        long target = received.get() + PEERS;
+        for (Socket peer : peers) {
+            peer.getOutputStream().write(line);
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received.get() < target) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("等待中心服务器接收超时");
+            }
+            Thread.onSpinWait();
+        }
+    }
+    
+    /**
+     * 通过反射获取虚拟线程工厂 (Thread.ofVirtual().unstarted(task))
+     */
+    private static Function<Runnable, Thread> virtualThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+            return task -> {
+                try {
+                    return (Thread) unstarted.invoke(builder, task);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("当前运行时不支持虚拟线程: " + System.getProperty("java.version"));
+        }
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * 进程常驻内存 (字节)，非 Linux 系统返回 -1
+     */
+    private static long residentSetSize() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String entry : Files.readAllLines(status)) {
+                if (entry.startsWith("VmRSS:")) {
+                    return Long.parseLong(entry.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // 读取失败时不报告 RSS
+        }
+        return -1;
+    }
+    
+    /**
+     * 每个连接一个线程阻塞读取的中心服务器
+     */
+    private class BlockingHub implements Runnable {
+        
+        private final ServerSocket serverSocket;
+        private final Function<Runnable, Thread> threads;
+        private final List<Socket> accepted = new ArrayList<>();
+        private final AtomicInteger readers = new AtomicInteger();
+        private final Thread acceptThread;
+        
+        BlockingHub(Function<Runnable, Thread> threads) throws IOException {
+            this.serverSocket = new ServerSocket(0, PEERS, InetAddress.getLoopbackAddress());
+            this.threads = threads;
+            this.acceptThread = threads.apply(this);
+            acceptThread.start();
+        }
+        
+        int getLocalPort() {
+            return serverSocket.getLocalPort();
+        }
+        
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    synchronized (accepted) {
+                        accepted.add(socket);
+                    }
+                    Thread reader = threads.apply(() -> read(socket));
+                    reader.setName("WST-benchmark-reader-" + readers.incrementAndGet());
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+        
+        private void read(Socket socket) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String text;
+                while ((text = reader.readLine()) != null) {
+                    NetworkMessage message = NetworkMessage.fromJson(text);
+                    if (message != null && message.getType() == NetworkMessage.Type.CHAT_MESSAGE) {
+                        received.incrementAndGet();
+                    }
+                }
+            } catch (IOException ignored) {
+                // 连接关闭
+            }
+        }
+        
+        void close() throws IOException {
+            serverSocket.close();
+            synchronized (accepted) {
+                for (Socket socket : accepted) {
+                    socket.close();
+                }
+            }
+        }
+    }
+    
+    /**
+     * 统计收到的聊天消息
+     */
+    private class Listener implements TransportListener {
+        
+        @Override
+        public void onConnected(PeerConnection connection) {
+        }
+        
+        @Override
+        public void onConnectFailed(String serverKey, String address, IOException cause) {
+        }
+        
+        @Override
+        public void onMessage(PeerConnection connection, NetworkMessage message) {
+            if (message.getType() == NetworkMessage.Type.CHAT_MESSAGE) {
+                received.incrementAndGet();
+            }
+        }
+        
+        @Override
+        public void onDisconnected(PeerConnection connection) {
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.ratelimit.RateLimit;
+import com.world.wst.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 刷屏时的限流开销
+ * 
+ * 七个聊天线程同时刷屏，"flood" 组集中在同一个玩家上 (同一个令牌桶的 CAS 竞争)，
+ * "spread" 组分散在大量玩家上；两组中都有一个线程代表主线程，只检查自己的令牌桶，
+ * 它的吞吐量应当与无人刷屏时 ("baseline") 基本相同。
+ * 
+ * @author World Studio
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitBenchmark {
+    
+    @Param({"1000"})
+    public int players;
+    
+    private RateLimiter<UUID> limiter;
+    private RateLimit limit;
+    private UUID[] playerIds;
+    private UUID mainThreadId;
+    
+    @Setup
+    public void setup() {
+        limiter = new RateLimiter<>();
+        limit = RateLimit.of(2.0, 5);
+        playerIds = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = UUID.randomUUID();
+        }
+        mainThreadId = UUID.randomUUID();
+    }
+    
+    @Benchmark
+    @Group("baseline")
+    @GroupThreads(1)
+    public boolean baselineMainThread() {
+        return limiter.tryAcquire(mainThreadId, limit);
+    }
+    
+    @Benchmark
+    @Group("flood")
+    @GroupThreads(7)
+    public boolean floodOnePlayer() {
+        return limiter.tryAcquire(playerIds[0], limit);
+    }
+    
+    @Benchmark
+    @Group("flood")
+    @GroupThreads(1)
+    public boolean floodMainThread() {
+        return limiter.tryAcquire(mainThreadId, limit);
+    }
+    
+    @Benchmark
+    @Group("spread")
+    @GroupThreads(7)
+    public boolean floodManyPlayers() {
+        return limiter.tryAcquire(playerIds[ThreadLocalRandom.current().nextInt(playerIds.length)], limit);
+    }
+    
+    @Benchmark
+    @Group("spread")
+    @GroupThreads(1)
+    public boolean spreadMainThread() {
+        return limiter.tryAcquire(mainThreadId, limit);
+    }
+}
\ No newline at end of file
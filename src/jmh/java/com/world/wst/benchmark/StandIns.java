@@ -0,0 +1,69 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.manager.WstSettings;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基准测试用的 Bukkit 替身
+ * 
+ * 不启动服务器，玩家用动态代理实现，配置直接读取插件自带的 config.yml。
+ * 
+ * @author World Studio
+ */
+final class StandIns {
+    
+    private StandIns() {
+    }
+    
+    /**
+     * 创建一个在线玩家替身，sendMessage 只累加计数
+     * 
+     * @param name 玩家名称
+     * @param received 收到的消息计数
+     */
+    static Player player(String name, AtomicLong received) {
+        UUID uuid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getUniqueId":
+                        return uuid;
+                    case "getName":
+                        return name;
+                    case "isOnline":
+                        return true;
+                    case "sendMessage":
+                        received.lazySet(received.get() + 1);
+                        return null;
+                    case "hashCode":
+                        return uuid.hashCode();
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "Player{" + name + "}";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+    
+    /**
+     * 读取插件默认配置生成配置快照
+     */
+    static WstSettings settings() throws Exception {
+        try (InputStream in = StandIns.class.getClassLoader().getResourceAsStream("config.yml")) {
+            if (in == null) {
+                throw new IllegalStateException("找不到 config.yml");
+            }
+            return new WstSettings(YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        }
+    }
+}
\ No newline at end of file
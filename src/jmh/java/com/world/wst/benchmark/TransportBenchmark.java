@@ -0,0 +1,164 @@
+package com.world.wst.benchmark;
+
+import com.world.wst.network.NetworkMessage;
+import com.world.wst.network.NetworkTransport;
+import com.world.wst.network.OverflowPolicy;
+import com.world.wst.network.PeerConnection;
+import com.world.wst.network.SerializedFrame;
+import com.world.wst.network.TransportListener;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 两个传输层实例之间的本地回环吞吐量
+ * 
+ * NetworkManager 依赖 Bukkit 插件实例，这里直接使用它所封装的 NetworkTransport。
+ * 每次调用发送一批聊天消息并等待对端全部收到，附加计数器给出每条消息的写操作次数。
+ * 
+ * @author World Studio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+    
+    private static final int MESSAGES = 1000;
+    
+    @Param({"json", "binary"})
+    public String codec;
+    
+    @Param({"0", "5"})
+    public long batchWindowMillis;
+    
+    @Param({"false", "true"})
+    public boolean compression;
+    
+    private NetworkTransport sender;
+    private NetworkTransport receiver;
+    private volatile PeerConnection connection;
+    private final AtomicLong received = new AtomicLong();
+    private NetworkMessage message;
+    
+    @Setup
+    public void setup() throws Exception {
+        Logger logger = Logger.getLogger("WST-benchmark");
+        CountDownLatch connected = new CountDownLatch(1);
+        
+        receiver = create("receiver", logger, new Listener() {
+            @Override
+            public void onMessage(PeerConnection peer, NetworkMessage message) {
+                if (message.getType() == NetworkMessage.Type.CHAT_MESSAGE) {
+                    received.incrementAndGet();
+                }
+            }
+        });
+        receiver.bind("127.0.0.1", 0);
+        
+        sender = create("sender", logger, new Listener() {
+            @Override
+            public void onConnected(PeerConnection peer) {
+                connection = peer;
+                connected.countDown();
+            }
+        });
+        sender.connect("receiver", "127.0.0.1", receiver.getLocalPort());
+        if (!connected.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("连接超时");
+        }
+        // 等待握手完成
+        Thread.sleep(200);
+        
+        message = NetworkMessage.createChatMessage("sender", "主服务器", "全服大厅", "Steve",
+            "&a大家好&r，今天晚上八点在主城广场集合开始活动！");
+    }
+    
+    private NetworkTransport create(String serverId, Logger logger, TransportListener listener) throws IOException {
+        NetworkTransport transport = new NetworkTransport(serverId, serverId, 1, logger, listener);
+        transport.setOutboundQueue(MESSAGES * 4, OverflowPolicy.DROP_OLDEST);
+        transport.setBinaryEnabled("binary".equals(codec));
+        transport.setCompression(compression, 256);
+        transport.setBatching(batchWindowMillis, 64, 16 * 1024);
+        transport.start();
+        return transport;
+    }
+    
+    @TearDown
+    public void tearDown() {
+        sender.close();
+        receiver.close();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void sendAndReceive(WriteCounters counters) throws InterruptedException {
+        long target = received.get() + MESSAGES;
+        long writes = sender.getWriteCalls();
+        SerializedFrame frame = sender.serialize(message);
+        for (int i = 0; i < MESSAGES; i++) {
+            connection.send(frame);
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received.get() < target) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("等待对端接收超时");
+            }
+            Thread.onSpinWait();
+        }
+        counters.writeCalls += sender.getWriteCalls() - writes;
+        counters.messages += MESSAGES;
+    }
+    
+    /**
+     * 写操作次数与消息数，二者之比即每次写操作平均携带的消息数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WriteCounters {
+        public long writeCalls;
+        public long messages;
+    }
+    
+    /**
+     * 只关心部分事件的监听器
+     */
+    private static class Listener implements TransportListener {
+        
+        @Override
+        public void onConnected(PeerConnection connection) {
+        }
+        
+        @Override
+        public void onConnectFailed(String serverKey, String address, IOException cause) {
+        }
+        
+        @Override
+        public void onMessage(PeerConnection connection, NetworkMessage message) {
+        }
+        
+        @Override
+        public void onDisconnected(PeerConnection connection) {
+        }
+    }
+}
\ No newline at end of file
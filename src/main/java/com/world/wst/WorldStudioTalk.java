@@ -1,12 +1,21 @@
 package com.world.wst;
 
+import com.world.wst.manager.ChatEventLoop;
 import com.world.wst.manager.ChatRoomManager;
 import com.world.wst.manager.ConfigManager;
+import com.world.wst.manager.FilterManager;
 import com.world.wst.manager.NetworkManager;
 import com.world.wst.command.CommandHandler;
+import com.world.wst.metrics.LatencyTracker;
+import com.world.wst.storage.ChatHistoryJournal;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * WorldStudioTalk - 我的世界聊天室插件
@@ -20,6 +29,10 @@ public class WorldStudioTalk extends JavaPlugin {
     private ChatRoomManager chatRoomManager;
     private NetworkManager networkManager;
     private ConfigManager configManager;
+    private FilterManager filterManager;
+    private ChatHistoryJournal historyJournal;
+    private ChatEventLoop chatLoop;
+    private LatencyTracker latencyTracker;
     
     @Override
     public void onEnable() {
@@ -35,22 +48,42 @@ public class WorldStudioTalk extends JavaPlugin {
         getLogger().info("  制作: World Studio");
         getLogger().info("========================================");
         
+        // 打开聊天记录
+        openHistoryJournal();
+        
+        // 启用延迟统计
+        startLatencyTracking();
+        
+        // 加载过滤词表
+        filterManager = new FilterManager(this);
+        filterManager.load();
+        
         // 初始化管理器
         chatRoomManager = new ChatRoomManager(this);
+        chatRoomManager.restoreState();
         networkManager = new NetworkManager(this);
         
+        // 启动聊天事件循环
+        FileConfiguration config = configManager.getConfig();
+        chatLoop = new ChatEventLoop(chatRoomManager::deliverChat,
+            config.getLong("chat-loop.budget-ms", 10),
+            config.getLong("chat-loop.period-ms", 50),
+            config.getInt("chat-loop.max-backlog", 10000),
+            getLogger());
+        chatLoop.start();
+        
         // 注册命令
         CommandHandler commandHandler = new CommandHandler(this);
         getCommand("wst").setExecutor(commandHandler);
         getCommand("wst").setTabCompleter(commandHandler);
         
         // 启动网络管理器
-        if (configManager.getConfig().getBoolean("network.enabled", true)) {
+        if (configManager.getSettings().isNetworkEnabled()) {
             networkManager.start();
         }
         
         // 创建默认聊天室
-        String defaultRoom = configManager.getConfig().getString("chatroom.default-room", "全服大厅");
+        String defaultRoom = configManager.getSettings().getDefaultRoomName();
         chatRoomManager.createRoom(defaultRoom, "服务器", true);
         
         getLogger().info("插件启动完成!");
@@ -60,11 +93,21 @@ public class WorldStudioTalk extends JavaPlugin {
     public void onDisable() {
         getLogger().info("正在关闭 WorldStudioTalk...");
         
+        // 处理完积压的聊天消息，本服消息仍会发送到其他服务器
+        if (chatLoop != null) {
+            chatLoop.shutdown();
+        }
+        
         // 关闭网络管理器
         if (networkManager != null) {
             networkManager.stop();
         }
         
+        // 写完并关闭聊天记录
+        if (historyJournal != null) {
+            historyJournal.close();
+        }
+        
         // 清理聊天室数据
         if (chatRoomManager != null) {
             chatRoomManager.cleanup();
@@ -73,6 +116,56 @@ public class WorldStudioTalk extends JavaPlugin {
         getLogger().info("WorldStudioTalk 已关闭");
     }
     
+    /**
+     * 创建延迟统计，并按配置的间隔在日志中输出最近一段时间的延迟摘要
+     */
+    private void startLatencyTracking() {
+        FileConfiguration config = configManager.getConfig();
+        if (!config.getBoolean("latency.enabled", true)) {
+            return;
+        }
+        
+        LatencyTracker tracker = new LatencyTracker();
+        latencyTracker = tracker;
+        long ticks = config.getLong("latency.summary-interval-minutes", 5) * 60 * 20;
+        if (ticks > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+                String summary = tracker.summarize();
+                if (summary != null) {
+                    getLogger().info(summary);
+                }
+            }, ticks, ticks);
+        }
+    }
+    
+    /**
+     * 打开聊天记录日志，失败时不记录聊天历史
+     */
+    private void openHistoryJournal() {
+        FileConfiguration config = configManager.getConfig();
+        if (!config.getBoolean("history.enabled", true)) {
+            return;
+        }
+        
+        ChatHistoryJournal journal = new ChatHistoryJournal(
+            getDataFolder().toPath().resolve("history"),
+            config.getInt("history.replay-lines", 20),
+            config.getLong("history.segment-size-mb", 4) * 1024 * 1024,
+            config.getLong("history.max-size-mb", 64) * 1024 * 1024,
+            TimeUnit.HOURS.toMillis(config.getLong("history.max-age-hours", 72)),
+            config.getBoolean("history.fsync", false),
+            getLogger());
+        try {
+            long start = System.nanoTime();
+            long records = journal.open();
+            historyJournal = journal;
+            getLogger().info("聊天记录已加载: " + records + " 条, " + journal.getSegmentCount() + " 个分段 (耗时 "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+        } catch (IOException e) {
+            getLogger().severe("打开聊天记录失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取插件实例
      */
@@ -94,6 +187,34 @@ public class WorldStudioTalk extends JavaPlugin {
         return networkManager;
     }
     
+    /**
+     * 获取聊天过滤管理器
+     */
+    public FilterManager getFilterManager() {
+        return filterManager;
+    }
+    
+    /**
+     * 获取聊天事件循环，插件启动完成前为 null
+     */
+    public ChatEventLoop getChatLoop() {
+        return chatLoop;
+    }
+    
+    /**
+     * 获取延迟统计，未启用时返回 null
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+    
+    /**
+     * 获取聊天记录日志，未启用时返回 null
+     */
+    public ChatHistoryJournal getHistoryJournal() {
+        return historyJournal;
+    }
+    
     /**
      * 获取配置管理器
      */
@@ -108,12 +229,28 @@ public class WorldStudioTalk extends JavaPlugin {
         Bukkit.broadcastMessage(ChatColor.translateAlternateColorCodes('&', message));
     }
     
+    /**
+     * 是否启用调试模式
+     */
+    public boolean isDebugEnabled() {
+        return configManager.getSettings().isDebug();
+    }
+    
     /**
      * 调试日志
      */
     public void debug(String message) {
-        if (configManager.getConfig().getBoolean("plugin.debug", false)) {
+        if (isDebugEnabled()) {
             getLogger().info("[DEBUG] " + message);
         }
     }
+    
+    /**
+     * 调试日志，仅在启用调试模式时生成消息内容
+     */
+    public void debug(Supplier<String> message) {
+        if (isDebugEnabled()) {
+            getLogger().info("[DEBUG] " + message.get());
+        }
+    }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import com.world.wst.WorldStudioTalk;
 import com.world.wst.data.ChatRoom;
 import com.world.wst.manager.ChatRoomManager;
 import com.world.wst.manager.ConfigManager;
+import com.world.wst.metrics.LatencyHistogram;
+import com.world.wst.metrics.LatencyTracker;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -92,6 +94,10 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
                 handleStatusCommand(player);
                 break;
                 
+            case "latency":
+                handleLatencyCommand(player, args);
+                break;
+                
             default:
                 player.sendMessage(configManager.formatErrorMessage("未知命令! 输入 /wst help 查看帮助"));
         }
@@ -125,6 +131,9 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         for (ChatRoom room : rooms) {
             String status = room.isDefault() ? "§a[默认]" : "§7[普通]";
             String memberInfo = "§e" + room.getMemberCount() + "§7/§e" + room.getMaxMembers();
+            if (room.getRemoteMemberCount() > 0) {
+                memberInfo += " §7(+§e" + room.getRemoteMemberCount() + " §7跨服)";
+            }
             String ownerInfo = room.isDefault() ? "§7系统" : "§7" + room.getOwner();
             
             player.sendMessage(String.format("§f%s %s §7- §7成员: %s §7- §7创建者: %s", 
@@ -330,6 +339,9 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         player.sendMessage("§f类型: " + (room.isDefault() ? "§a默认聊天室" : "§7普通聊天室"));
         player.sendMessage("§f创建者: §7" + (room.isDefault() ? "系统" : room.getOwner()));
         player.sendMessage("§f成员数: §e" + room.getMemberCount() + "§7/§e" + room.getMaxMembers());
+        if (room.getRemoteMemberCount() > 0) {
+            player.sendMessage("§f其他服务器成员数: §e" + room.getRemoteMemberCount());
+        }
         player.sendMessage("§f创建时间: §7" + room.getCreatedTime().toString());
         
         if (!room.getDescription().isEmpty()) {
@@ -349,7 +361,8 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         }
         
         configManager.reloadConfig();
-        player.sendMessage(configManager.formatSystemMessage("配置文件已重载！"));
+        plugin.getFilterManager().reload();
+        player.sendMessage(configManager.formatSystemMessage("配置文件已重载！过滤词表正在后台重新编译"));
     }
     
     /**
@@ -364,6 +377,16 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         player.sendMessage("§7========== §bWorldStudioTalk 状态 §7==========");
         player.sendMessage("§f插件版本: §a" + plugin.getDescription().getVersion());
         player.sendMessage("§f聊天室数量: §e" + chatRoomManager.getAllRooms().size());
+        player.sendMessage("§f限流拒绝: §f玩家 §e" + chatRoomManager.getPlayerRateLimited()
+            + " §f聊天室 §e" + chatRoomManager.getRoomRateLimited());
+        if (plugin.getChatLoop() != null) {
+            Map<String, Object> loopStatus = plugin.getChatLoop().getStatus();
+            player.sendMessage("§f聊天事件: §f已处理 §e" + loopStatus.get("processed") + " §f积压 §e" + loopStatus.get("backlog")
+                + " §f超出预算 §e" + loopStatus.get("carriedOver") + " §f丢弃 §e" + loopStatus.get("dropped")
+                + " §f最大批次 §e" + loopStatus.get("maxBatch"));
+        }
+        player.sendMessage("§f聊天过滤: §e" + plugin.getFilterManager().getWordCount() + " §f个词 §f替换 §e"
+            + plugin.getFilterManager().getCensored() + " §f拦截 §e" + plugin.getFilterManager().getBlocked());
         
         // 网络状态
         if (plugin.getNetworkManager() != null) {
@@ -372,6 +395,45 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             player.sendMessage("§f服务器ID: §7" + networkStatus.get("serverId"));
             player.sendMessage("§f连接的客户端: §e" + networkStatus.get("connectedClients"));
             player.sendMessage("§f连接的服务器: §e" + networkStatus.get("serverConnections"));
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> peerStates = (Map<String, Map<String, Object>>) networkStatus.get("peerStates");
+            for (Map.Entry<String, Map<String, Object>> entry : peerStates.entrySet()) {
+                Map<String, Object> state = entry.getValue();
+                player.sendMessage("§7  " + entry.getKey() + " §f状态: §e" + state.get("state")
+                    + " §f重连: §e" + state.get("reconnects") + " §f缓冲: §e" + state.get("buffered"));
+            }
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Integer> queueDepths = (Map<String, Integer>) networkStatus.get("queueDepths");
+            for (Map.Entry<String, Integer> entry : queueDepths.entrySet()) {
+                player.sendMessage("§7  " + entry.getKey() + " §f发送队列: §e" + entry.getValue());
+            }
+            player.sendMessage("§f丢弃消息: §e" + networkStatus.get("droppedMessages"));
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> peerHealth = (Map<String, Map<String, Object>>) networkStatus.get("peerHealth");
+            for (Map.Entry<String, Map<String, Object>> entry : peerHealth.entrySet()) {
+                Map<String, Object> health = entry.getValue();
+                double rtt = (Double) health.get("rttMillis");
+                double loss = (Double) health.get("loss");
+                player.sendMessage(String.format("§7  %s §fRTT: §e%s §f抖动: §e%.1fms §f丢包: §e%s", entry.getKey(),
+                    rtt < 0 ? "-" : String.format("%.1fms", rtt), (Double) health.get("jitterMillis"),
+                    loss < 0 ? "-" : String.format("%.0f%%", loss * 100)));
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> compression = (Map<String, Map<String, Object>>) networkStatus.get("compression");
+            for (Map.Entry<String, Map<String, Object>> entry : compression.entrySet()) {
+                player.sendMessage(String.format("§7  %s §f压缩比: §e%.2f §fCPU: §e%.1fms", entry.getKey(),
+                    (Double) entry.getValue().get("ratio"), (Double) entry.getValue().get("cpuMillis")));
+            }
+            player.sendMessage("§f消息帧: §e" + networkStatus.get("framesSerialized")
+                + " §f编码次数: §e" + networkStatus.get("frameEncodes"));
+            player.sendMessage("§f写操作: §e" + networkStatus.get("writeCalls")
+                + " §f写出消息: §e" + networkStatus.get("messagesWritten"));
+            player.sendMessage("§f兴趣过滤: §e" + networkStatus.get("interestFiltered")
+                + " §f条, 节省 §e" + networkStatus.get("interestBytesSaved") + " §f字节");
+            player.sendMessage("§f转发消息: §e" + networkStatus.get("relayedMessages")
+                + " §f丢弃重复: §e" + networkStatus.get("duplicatesDropped"));
+            player.sendMessage("§f跨服限流丢弃: §e" + networkStatus.get("serverRateLimited"));
         } else {
             player.sendMessage("§f网络状态: §c未启用");
         }
@@ -379,6 +441,71 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         player.sendMessage("§7==========================================");
     }
     
+    /**
+     * 处理延迟命令: /wst latency [room|server] [名称]
+     */
+    private void handleLatencyCommand(Player player, String[] args) {
+        if (!player.hasPermission("wst.admin")) {
+            player.sendMessage(configManager.formatErrorMessage(configManager.getMessage("no-permission")));
+            return;
+        }
+        
+        LatencyTracker tracker = plugin.getLatencyTracker();
+        if (tracker == null) {
+            player.sendMessage(configManager.formatErrorMessage("延迟统计未启用"));
+            return;
+        }
+        
+        String scope = args.length >= 2 ? args[1].toLowerCase() : "";
+        if (!scope.isEmpty() && !"room".equals(scope) && !"server".equals(scope)) {
+            player.sendMessage(configManager.formatErrorMessage("用法: /wst latency [room|server] [名称]"));
+            return;
+        }
+        if (!scope.isEmpty() && args.length < 3) {
+            Set<String> names = "room".equals(scope) ? tracker.getRoomNames() : tracker.getServerNames();
+            player.sendMessage(configManager.formatSystemMessage(("room".equals(scope) ? "有延迟记录的聊天室: " : "有延迟记录的服务器: ")
+                + (names.isEmpty() ? "无" : String.join(", ", names))));
+            return;
+        }
+        
+        String name = scope.isEmpty() ? null : String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+        Map<LatencyTracker.Stage, LatencyHistogram.Snapshot> stages;
+        if (name == null) {
+            stages = tracker.getTotals();
+        } else if ("room".equals(scope)) {
+            stages = tracker.getRoom(name);
+        } else {
+            stages = tracker.getServer(name);
+        }
+        
+        player.sendMessage("§7========== §b聊天延迟" + (name != null ? " §7- §b" + name : "") + " §7==========");
+        if (stages.isEmpty()) {
+            player.sendMessage("§7暂无记录");
+        }
+        for (Map.Entry<LatencyTracker.Stage, LatencyHistogram.Snapshot> entry : stages.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            player.sendMessage("§f" + entry.getKey().getDisplayName() + ": §7" + snapshot.getCount() + " 条"
+                + " §fp50 §e" + LatencyTracker.formatMicros(snapshot.percentile(0.5))
+                + " §fp90 §e" + LatencyTracker.formatMicros(snapshot.percentile(0.9))
+                + " §fp99 §e" + LatencyTracker.formatMicros(snapshot.percentile(0.99))
+                + " §f最大 §e" + LatencyTracker.formatMicros(snapshot.getMax()));
+        }
+        
+        // 总览中列出各服务器的时钟偏差，以及因偏差未知而没有计入跨服阶段的消息数
+        if (name == null && plugin.getNetworkManager() != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> peerHealth = (Map<String, Map<String, Object>>)
+                plugin.getNetworkManager().getNetworkStatus().get("peerHealth");
+            for (Map.Entry<String, Map<String, Object>> entry : peerHealth.entrySet()) {
+                double offset = (Double) entry.getValue().get("clockOffsetMillis");
+                player.sendMessage("§7  " + entry.getKey() + " §f时钟偏差: §e"
+                    + (Double.isNaN(offset) ? "未知" : String.format("%+.1fms", offset)));
+            }
+            player.sendMessage("§f时钟偏差未知的跨服消息: §e" + tracker.getUnsynced());
+        }
+        player.sendMessage("§7================================");
+    }
+    
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (!(sender instanceof Player)) {
@@ -393,7 +520,7 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             // 管理员命令
             if (player.hasPermission("wst.admin")) {
                 List<String> adminCommands = new ArrayList<>(subCommands);
-                adminCommands.addAll(Arrays.asList("reload", "status"));
+                adminCommands.addAll(Arrays.asList("reload", "status", "latency"));
                 return adminCommands.stream()
                     .filter(cmd -> cmd.toLowerCase().startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
@@ -413,6 +540,21 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
                     .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
                     .collect(Collectors.toList());
             }
+            
+            if ("latency".equals(subCommand) && player.hasPermission("wst.admin")) {
+                return Arrays.asList("room", "server").stream()
+                    .filter(scope -> scope.startsWith(args[1].toLowerCase()))
+                    .collect(Collectors.toList());
+            }
+        }
+        
+        if (args.length == 3 && "latency".equalsIgnoreCase(args[0]) && player.hasPermission("wst.admin")
+                && plugin.getLatencyTracker() != null) {
+            Set<String> names = "room".equalsIgnoreCase(args[1])
+                ? plugin.getLatencyTracker().getRoomNames() : plugin.getLatencyTracker().getServerNames();
+            return names.stream()
+                .filter(name -> name.toLowerCase().startsWith(args[2].toLowerCase()))
+                .collect(Collectors.toList());
         }
         
         return Collections.emptyList();
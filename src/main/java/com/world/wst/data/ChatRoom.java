@@ -3,21 +3,37 @@ package com.world.wst.data;
 import org.bukkit.entity.Player;
 import java.util.*;
 import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * 聊天室数据类
  * 
+ * 成员保存在 UUID -> 玩家的并发哈希表中，另外维护一个在线成员的写时复制数组，
+ * 发送消息时直接遍历该数组，不需要复制集合或按 UUID 查找玩家。
+ * 
+ * 加入和离开都不加锁：加入前先通过 CAS 预留一个名额，保证并发加入时成员数不会超过上限；
+ * 数组通过 CAS 整体替换：每次修改哈希表后，按哈希表中该玩家的当前状态修正数组，
+ * 每次替换成功后再核对一次，直到两者一致。同一玩家的加入和离开任意交错，
+ * 数组最终都与哈希表一致，不会重复、遗漏或保留旧的玩家对象。
+ * 
  * @author World Studio
  */
 public class ChatRoom {
     
     private final String name;
-    private final String owner;
+    private volatile String owner;
     private final boolean isDefault;
-    private final Set<UUID> members;
+    private final Map<UUID, Player> members;
+    private final AtomicInteger reserved; // 已预留的名额，包括正在加入的玩家
+    private final AtomicReference<Player[]> onlineMembers;
     private final LocalDateTime createdTime;
     private String description;
-    private int maxMembers;
+    private volatile int maxMembers;
+    private volatile int remoteMemberCount;
     
     /**
      * 构造函数
@@ -27,11 +43,25 @@ public class ChatRoom {
      * @param isDefault 是否为默认聊天室
      */
     public ChatRoom(String name, String owner, boolean isDefault) {
+        this(name, owner, isDefault, LocalDateTime.now());
+    }
+    
+    /**
+     * 构造函数，用于恢复已保存的聊天室
+     * 
+     * @param name 聊天室名称
+     * @param owner 创建者
+     * @param isDefault 是否为默认聊天室
+     * @param createdTime 创建时间
+     */
+    public ChatRoom(String name, String owner, boolean isDefault, LocalDateTime createdTime) {
         this.name = name;
         this.owner = owner;
         this.isDefault = isDefault;
-        this.members = Collections.synchronizedSet(new HashSet<>());
-        this.createdTime = LocalDateTime.now();
+        this.members = new ConcurrentHashMap<>();
+        this.reserved = new AtomicInteger();
+        this.onlineMembers = new AtomicReference<>(new Player[0]);
+        this.createdTime = createdTime;
         this.description = "";
         this.maxMembers = 100;
     }
@@ -39,14 +69,71 @@ public class ChatRoom {
     /**
      * 添加成员
      * 
-     * @param playerId 玩家UUID
+     * @param player 玩家
      * @return 是否添加成功
      */
-    public boolean addMember(UUID playerId) {
-        if (members.size() >= maxMembers) {
+    public boolean addMember(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (members.containsKey(playerId) || !reserve()) {
             return false;
         }
-        return members.add(playerId);
+        if (members.putIfAbsent(playerId, player) != null) {
+            reserved.decrementAndGet();
+            return false;
+        }
+        syncOnline(playerId);
+        return true;
+    }
+    
+    /**
+     * 预留一个名额，已满时返回 false
+     */
+    private boolean reserve() {
+        while (true) {
+            int current = reserved.get();
+            if (current >= maxMembers) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * 按哈希表修正在线成员数组中某个玩家的项：加入、移除或替换为当前的玩家对象
+     * 
+     * 先读数组再读哈希表，两者一致时返回；替换成功后重新核对，
+     * 其他线程基于旧状态完成的替换也会被它自己随后的核对修正。
+     */
+    private void syncOnline(UUID playerId) {
+        while (true) {
+            Player[] current = onlineMembers.get();
+            Player member = members.get(playerId);
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].getUniqueId().equals(playerId)) {
+                    index = i;
+                    break;
+                }
+            }
+            
+            Player[] updated;
+            if (member != null && index < 0) {
+                updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = member;
+            } else if (member == null && index >= 0) {
+                updated = new Player[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            } else if (member != null && current[index] != member) {
+                updated = current.clone();
+                updated[index] = member;
+            } else {
+                return;
+            }
+            onlineMembers.compareAndSet(current, updated);
+        }
     }
     
     /**
@@ -56,7 +143,12 @@ public class ChatRoom {
      * @return 是否移除成功
      */
     public boolean removeMember(UUID playerId) {
-        return members.remove(playerId);
+        if (members.remove(playerId) == null) {
+            return false;
+        }
+        syncOnline(playerId);
+        reserved.decrementAndGet();
+        return true;
     }
     
     /**
@@ -66,7 +158,7 @@ public class ChatRoom {
      * @return 是否为成员
      */
     public boolean isMember(UUID playerId) {
-        return members.contains(playerId);
+        return members.containsKey(playerId);
     }
     
     /**
@@ -87,10 +179,52 @@ public class ChatRoom {
     }
     
     /**
-     * 获取所有成员ID
+     * 获取其他服务器上的成员数量 (由聊天室复制更新)
+     */
+    public int getRemoteMemberCount() {
+        return remoteMemberCount;
+    }
+    
+    /**
+     * 设置其他服务器上的成员数量
+     */
+    public void setRemoteMemberCount(int remoteMemberCount) {
+        this.remoteMemberCount = Math.max(0, remoteMemberCount);
+    }
+    
+    /**
+     * 获取所有成员ID (只读视图，随成员变化)
      */
     public Set<UUID> getMembers() {
-        return new HashSet<>(members);
+        return Collections.unmodifiableSet(members.keySet());
+    }
+    
+    /**
+     * 获取在线成员快照
+     * 
+     * 返回的数组在成员变化时整体替换，可以在任意线程上无锁遍历，调用方不得修改。
+     */
+    public Player[] getOnlineMembers() {
+        return onlineMembers.get();
+    }
+    
+    /**
+     * 对当前快照中的每个在线成员执行操作
+     */
+    public void forEachOnlineMember(Consumer<? super Player> action) {
+        for (Player member : onlineMembers.get()) {
+            action.accept(member);
+        }
+    }
+    
+    /**
+     * 对当前快照中的每个在线成员执行操作，参数单独传入，
+     * 使用不捕获变量的方法引用 (例如 {@code Player::sendMessage}) 时不分配对象
+     */
+    public <T> void forEachOnlineMember(BiConsumer<? super Player, ? super T> action, T argument) {
+        for (Player member : onlineMembers.get()) {
+            action.accept(member, argument);
+        }
     }
     
     /**
@@ -107,6 +241,13 @@ public class ChatRoom {
         return owner;
     }
     
+    /**
+     * 更改创建者，只用于按复制版本解决同名聊天室的冲突 (见 {@link com.world.wst.manager.RoomDirectory#changeOwner})
+     */
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+    
     /**
      * 是否为默认聊天室
      */
@@ -153,7 +294,9 @@ public class ChatRoom {
      * 清空所有成员
      */
     public void clearMembers() {
-        members.clear();
+        for (UUID playerId : members.keySet()) {
+            removeMember(playerId);
+        }
     }
     
     @Override
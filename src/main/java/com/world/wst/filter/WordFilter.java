@@ -0,0 +1,337 @@
+package com.world.wst.filter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 编译后的敏感词自动机 (Aho-Corasick)
+ * 
+ * 所有状态和转移都保存在基本类型数组中：转移表是以 (状态, 字符) 为键的开放寻址哈希表，
+ * 每个状态记录失败链接和以该状态结尾的最长敏感词长度 (已合并失败链上的输出)。
+ * 一条消息只扫描一遍，没有命中时不分配任何对象。
+ * 
+ * 匹配前每个字符先经过 {@link #normalize(char)}：忽略大小写，全角字母数字和符号折叠为半角，
+ * 半角片假名转为全角。折叠是逐字符的，因此匹配位置与原文位置一一对应。
+ * 
+ * 实例不可变，可以在任意线程并发使用；词表变化时编译新的实例整体替换。
+ * 
+ * @author World Studio
+ */
+public final class WordFilter {
+    
+    private static final int ROOT = 0;
+    private static final int NO_STATE = -1;
+    private static final long EMPTY_KEY = -1L;
+    
+    /**
+     * 半角片假名 (U+FF61 ~ U+FF9F) 对应的全角字符
+     */
+    private static final char[] HALF_WIDTH_KANA = (
+        "。「」、・ヲァィゥェォャュョッーアイウエオカキクケコサシスセソタチツテトナニヌネノハヒフヘホマミムメモヤユヨラリルレロワン゛゜"
+    ).toCharArray();
+    
+    /**
+     * 空词表，不匹配任何内容
+     */
+    public static final WordFilter EMPTY = compile(Collections.emptyList());
+    
+    private final long[] transitionKeys;
+    private final int[] transitionTargets;
+    private final int transitionMask;
+    private final int[] fail;
+    private final int[] matchLength;
+    private final int wordCount;
+    private final int stateCount;
+    
+    private WordFilter(long[] transitionKeys, int[] transitionTargets, int[] fail, int[] matchLength,
+                       int wordCount, int stateCount) {
+        this.transitionKeys = transitionKeys;
+        this.transitionTargets = transitionTargets;
+        this.transitionMask = transitionKeys.length - 1;
+        this.fail = fail;
+        this.matchLength = matchLength;
+        this.wordCount = wordCount;
+        this.stateCount = stateCount;
+    }
+    
+    /**
+     * 编译词表，空白的词被忽略，重复的词只保留一次
+     * 
+     * @param words 敏感词
+     * @return 自动机
+     */
+    public static WordFilter compile(Collection<String> words) {
+        Builder builder = new Builder();
+        int count = 0;
+        for (String word : words) {
+            if (word != null && builder.add(word.trim())) {
+                count++;
+            }
+        }
+        return builder.build(count);
+    }
+    
+    /**
+     * 匹配前的字符折叠
+     */
+    public static char normalize(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        if (c >= '！' && c <= '～') {
+            // 全角 ASCII
+            c = (char) (c - 0xFEE0);
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        if (c == '　') {
+            return ' ';
+        }
+        if (c >= '｡' && c <= 'ﾟ') {
+            return HALF_WIDTH_KANA[c - 0xFF61];
+        }
+        return Character.toLowerCase(c);
+    }
+    
+    /**
+     * 文本中是否包含敏感词
+     */
+    public boolean matches(CharSequence text) {
+        return findEnd(text) >= 0;
+    }
+    
+    /**
+     * 将文本中的敏感词替换为指定字符，重叠的敏感词全部替换
+     * 
+     * @param text 原文
+     * @param mask 替换字符
+     * @return 没有命中时返回原文本身，否则返回替换后的新字符串
+     */
+    public String censor(String text, char mask) {
+        if (findEnd(text) < 0) {
+            return text;
+        }
+        
+        char[] chars = text.toCharArray();
+        int state = ROOT;
+        for (int i = 0; i < chars.length; i++) {
+            state = step(state, normalize(chars[i]));
+            int length = matchLength[state];
+            if (length > 0) {
+                // 以 i 结尾的较短敏感词都包含在最长的这个之内
+                Arrays.fill(chars, i - length + 1, i + 1, mask);
+            }
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * 查找第一个敏感词的结束位置
+     * 
+     * @return 敏感词最后一个字符的下标，没有命中时返回 -1
+     */
+    private int findEnd(CharSequence text) {
+        if (wordCount == 0) {
+            return -1;
+        }
+        int state = ROOT;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = step(state, normalize(text.charAt(i)));
+            if (matchLength[state] > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private int step(int state, char c) {
+        while (true) {
+            int next = lookup(transitionKeys, transitionTargets, transitionMask, state, c);
+            if (next != NO_STATE) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+    
+    private static long key(int state, char c) {
+        return ((long) state << 16) | c;
+    }
+    
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 40) & mask;
+    }
+    
+    private static int lookup(long[] keys, int[] targets, int mask, int state, char c) {
+        long key = key(state, c);
+        int index = slot(key, mask);
+        while (true) {
+            long value = keys[index];
+            if (value == key) {
+                return targets[index];
+            }
+            if (value == EMPTY_KEY) {
+                return NO_STATE;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+    
+    /**
+     * 词表中的敏感词数量
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+    
+    /**
+     * 自动机的状态数量
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+    
+    /**
+     * 编译过程中的字典树，转移表随状态增长而扩容
+     */
+    private static final class Builder {
+        
+        private long[] keys;
+        private int[] targets;
+        private int size;
+        private int[] depth;
+        private int[] terminal; // 以该状态结尾的词长度，0 表示不是词尾
+        private int states;
+        
+        Builder() {
+            this.keys = new long[64];
+            Arrays.fill(keys, EMPTY_KEY);
+            this.targets = new int[64];
+            this.depth = new int[16];
+            this.terminal = new int[16];
+            this.states = 1;
+        }
+        
+        /**
+         * 加入一个词
+         * 
+         * @return 是否是新词
+         */
+        boolean add(String word) {
+            if (word.isEmpty()) {
+                return false;
+            }
+            int state = ROOT;
+            for (int i = 0; i < word.length(); i++) {
+                char c = normalize(word.charAt(i));
+                int next = lookup(keys, targets, keys.length - 1, state, c);
+                if (next == NO_STATE) {
+                    next = newState(depth[state] + 1);
+                    put(key(state, c), next);
+                }
+                state = next;
+            }
+            if (terminal[state] != 0) {
+                return false;
+            }
+            terminal[state] = depth[state];
+            return true;
+        }
+        
+        private int newState(int stateDepth) {
+            if (states == depth.length) {
+                depth = Arrays.copyOf(depth, states * 2);
+                terminal = Arrays.copyOf(terminal, states * 2);
+            }
+            depth[states] = stateDepth;
+            return states++;
+        }
+        
+        private void put(long key, int target) {
+            if ((size + 1) * 2 > keys.length) {
+                long[] oldKeys = keys;
+                int[] oldTargets = targets;
+                keys = new long[oldKeys.length * 2];
+                Arrays.fill(keys, EMPTY_KEY);
+                targets = new int[oldKeys.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != EMPTY_KEY) {
+                        insert(oldKeys[i], oldTargets[i]);
+                    }
+                }
+            }
+            insert(key, target);
+            size++;
+        }
+        
+        private void insert(long key, int target) {
+            int mask = keys.length - 1;
+            int index = slot(key, mask);
+            while (keys[index] != EMPTY_KEY) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            targets[index] = target;
+        }
+        
+        /**
+         * 按广度优先顺序计算失败链接，并把失败链上最长的输出合并到每个状态
+         */
+        WordFilter build(int wordCount) {
+            int[] fail = new int[states];
+            int[] matchLength = Arrays.copyOf(terminal, states);
+            int mask = keys.length - 1;
+            
+            // 按深度分组子状态：遍历转移表一次，记录每个状态的 (父状态, 字符)
+            int[] parent = new int[states];
+            char[] via = new char[states];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY_KEY) {
+                    parent[targets[i]] = (int) (keys[i] >>> 16);
+                    via[targets[i]] = (char) keys[i];
+                }
+            }
+            int[][] children = new int[states][];
+            int[] childCount = new int[states];
+            for (int s = 1; s < states; s++) {
+                childCount[parent[s]]++;
+            }
+            for (int s = 0; s < states; s++) {
+                children[s] = new int[childCount[s]];
+                childCount[s] = 0;
+            }
+            for (int s = 1; s < states; s++) {
+                children[parent[s]][childCount[parent[s]]++] = s;
+            }
+            
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int child : children[ROOT]) {
+                fail[child] = ROOT;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (int child : children[state]) {
+                    char c = via[child];
+                    int f = fail[state];
+                    int target;
+                    while ((target = lookup(keys, targets, mask, f, c)) == NO_STATE && f != ROOT) {
+                        f = fail[f];
+                    }
+                    fail[child] = target != NO_STATE ? target : ROOT;
+                    if (matchLength[child] == 0) {
+                        matchLength[child] = matchLength[fail[child]];
+                    }
+                    queue.add(child);
+                }
+            }
+            return new WordFilter(keys, targets, fail, matchLength, wordCount, states);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+package com.world.wst.manager;
+
+import com.world.wst.storage.ChatRecord;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 聊天事件循环
+ * 
+ * 本服玩家的发言 (聊天线程) 和其他服务器的聊天消息 (I/O 线程) 都投递到同一个多生产者单消费者队列，
+ * 由一个专用线程按到达顺序批量处理：格式化、写聊天记录、发送给聊天室成员。
+ * 投递只是一次入队，聊天线程和 I/O 线程不再被大聊天室的分发拖慢。
+ * 
+ * 每个周期 (与服务器 tick 相同，默认 50ms) 最多处理预算时间内的事件，用完预算后剩余的事件留到下一个周期，
+ * 刷屏时分发线程占用的 CPU 有上限，不会挤占主线程。积压超过上限时丢弃新事件。
+ * 
+ * @author World Studio
+ */
+public class ChatEventLoop implements Runnable {
+    
+    private final Consumer<ChatRecord> handler;
+    private final Logger logger;
+    private final long budgetNanos;
+    private final long periodNanos;
+    private final int maxBacklog;
+    private final Queue<ChatRecord> queue;
+    private final AtomicInteger backlog;
+    private final AtomicBoolean wakeupPending;
+    private final AtomicLong processed;
+    private final AtomicLong dropped;
+    private final AtomicLong carriedOver; // 预算用完后仍有积压的周期数
+    private final Thread thread;
+    private volatile boolean running;
+    private volatile int maxBatch;
+    
+    /**
+     * 构造函数
+     * 
+     * @param handler 事件处理，在循环线程上调用
+     * @param budgetMillis 每个周期的处理时间预算 (毫秒)
+     * @param periodMillis 周期长度 (毫秒)
+     * @param maxBacklog 最多积压的事件数
+     * @param logger 日志
+     */
+    public ChatEventLoop(Consumer<ChatRecord> handler, long budgetMillis, long periodMillis, int maxBacklog, Logger logger) {
+        this.handler = handler;
+        this.logger = logger;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, periodMillis));
+        this.budgetNanos = Math.min(periodNanos, TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMillis)));
+        this.maxBacklog = Math.max(1, maxBacklog);
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.backlog = new AtomicInteger();
+        this.wakeupPending = new AtomicBoolean();
+        this.processed = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.carriedOver = new AtomicLong();
+        this.thread = new Thread(this, "WST-chat-loop");
+        this.thread.setDaemon(true);
+    }
+    
+    /**
+     * 启动循环线程
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+    
+    /**
+     * 停止循环线程，不受预算限制地处理完剩余的事件
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 投递一个聊天事件，可以在任意线程调用
+     * 
+     * @return 是否已入队；循环未运行或积压已满时返回 false
+     */
+    public boolean post(ChatRecord record) {
+        if (!running) {
+            return false;
+        }
+        if (backlog.incrementAndGet() > maxBacklog) {
+            backlog.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.offer(record);
+        if (wakeupPending.compareAndSet(false, true)) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+    
+    @Override
+    public void run() {
+        long periodStart = System.nanoTime();
+        long used = 0; // 本周期已用的处理时间
+        boolean throttled = false;
+        while (running) {
+            if (queue.isEmpty()) {
+                // 先清除唤醒标记再检查队列，之后入队的生产者一定会唤醒本线程
+                wakeupPending.set(false);
+                if (queue.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+            
+            long now = System.nanoTime();
+            if (now - periodStart >= periodNanos) {
+                periodStart = now;
+                used = 0;
+                throttled = false;
+            }
+            if (used >= budgetNanos) {
+                // 预算用完，积压留到下一个周期
+                if (!throttled) {
+                    carriedOver.incrementAndGet();
+                    throttled = true;
+                }
+                LockSupport.parkNanos(this, periodStart + periodNanos - now);
+                continue;
+            }
+            
+            drain(now + budgetNanos - used, true);
+            used += System.nanoTime() - now;
+        }
+        drain(0, false);
+    }
+    
+    /**
+     * 处理队列中的事件，直到队列为空或超过截止时间
+     */
+    private void drain(long deadline, boolean bounded) {
+        int batch = 0;
+        ChatRecord record;
+        while ((record = queue.poll()) != null) {
+            backlog.decrementAndGet();
+            try {
+                handler.accept(record);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "处理聊天消息时出错", e);
+            }
+            batch++;
+            if (bounded && (batch & 7) == 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        processed.addAndGet(batch);
+        if (batch > maxBatch) {
+            maxBatch = batch;
+        }
+    }
+    
+    /**
+     * 获取统计信息
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("backlog", backlog.get());
+        status.put("processed", processed.get());
+        status.put("dropped", dropped.get());
+        status.put("carriedOver", carriedOver.get());
+        status.put("maxBatch", maxBatch);
+        return status;
+    }
+}
\ No newline at end of file
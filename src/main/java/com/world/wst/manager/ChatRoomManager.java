@@ -2,7 +2,14 @@ package com.world.wst.manager;
 
 import com.world.wst.WorldStudioTalk;
 import com.world.wst.data.ChatRoom;
+import com.world.wst.metrics.ChatTrace;
+import com.world.wst.metrics.LatencyTracker;
+import com.world.wst.ratelimit.RateLimiter;
+import com.world.wst.storage.ChatHistoryJournal;
+import com.world.wst.storage.ChatRecord;
+import com.world.wst.storage.RoomStateStore;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -10,29 +17,48 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 聊天室管理器
  * 
+ * 聊天室和玩家所在聊天室保存在 {@link RoomDirectory} 中，各项变化原子完成，可以在任意线程调用。
+ * 变化写入 {@link RoomStateStore}，重启后通过 {@link #restoreState()} 恢复。
+ * 玩家退出时保留其所在聊天室，重新进入时回到该聊天室。
+ * 
  * @author World Studio
  */
-public class ChatRoomManager implements Listener {
+public class ChatRoomManager implements Listener, RoomDirectory.Changes {
+    
+    private static final long LIMITER_EVICT_TICKS = 60 * 20; // 回收空闲令牌桶的间隔
     
     private final WorldStudioTalk plugin;
-    private final Map<String, ChatRoom> chatRooms;
-    private final Map<UUID, String> playerRooms; // 玩家当前所在聊天室
-    private final Map<String, Integer> playerRoomCount; // 玩家创建的聊天室数量
+    private final RoomDirectory directory;
+    private final RateLimiter<UUID> playerLimiter;
+    private final RateLimiter<String> roomLimiter;
+    private volatile RoomStateStore stateStore;
     
     public ChatRoomManager(WorldStudioTalk plugin) {
         this.plugin = plugin;
-        this.chatRooms = new ConcurrentHashMap<>();
-        this.playerRooms = new ConcurrentHashMap<>();
-        this.playerRoomCount = new ConcurrentHashMap<>();
+        this.directory = new RoomDirectory(this);
+        this.playerLimiter = new RateLimiter<>();
+        this.roomLimiter = new RateLimiter<>();
         
         // 注册事件监听器
         Bukkit.getPluginManager().registerEvents(this, plugin);
+        
+        // 定期回收已经补满的玩家令牌桶 (主要是已退出的玩家)
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            int evicted = playerLimiter.evictFull(plugin.getConfigManager().getSettings().getPlayerRateLimit());
+            if (evicted > 0) {
+                plugin.debug("回收 " + evicted + " 个空闲的发言令牌桶");
+            }
+        }, LIMITER_EVICT_TICKS, LIMITER_EVICT_TICKS);
     }
     
     /**
@@ -44,29 +70,12 @@ public class ChatRoomManager implements Listener {
      * @return 是否创建成功
      */
     public boolean createRoom(String roomName, String owner, boolean isDefault) {
-        // 检查聊天室是否已存在
-        if (chatRooms.containsKey(roomName)) {
-            return false;
-        }
-        
-        // 检查聊天室数量限制
-        if (chatRooms.size() >= plugin.getConfigManager().getMaxRooms()) {
-            return false;
-        }
-        
-        // 检查玩家创建的聊天室数量限制
-        if (!isDefault) {
-            int playerCount = playerRoomCount.getOrDefault(owner, 0);
-            if (playerCount >= plugin.getConfigManager().getMaxRoomsPerPlayer()) {
-                return false;
-            }
-            playerRoomCount.put(owner, playerCount + 1);
-        }
-        
-        // 创建聊天室
         ChatRoom room = new ChatRoom(roomName, owner, isDefault);
         room.setMaxMembers(plugin.getConfigManager().getMaxMembersPerRoom());
-        chatRooms.put(roomName, room);
+        if (!directory.create(room, plugin.getConfigManager().getMaxRooms(),
+                plugin.getConfigManager().getMaxRoomsPerPlayer())) {
+            return false;
+        }
         
         plugin.debug("创建聊天室: " + roomName + " (创建者: " + owner + ")");
         return true;
@@ -80,7 +89,7 @@ public class ChatRoomManager implements Listener {
      * @return 删除结果 (0: 成功, 1: 聊天室不存在, 2: 无权限, 3: 不能删除默认聊天室)
      */
     public int deleteRoom(String roomName, String requester) {
-        ChatRoom room = chatRooms.get(roomName);
+        ChatRoom room = directory.getRoom(roomName);
         
         if (room == null) {
             return 1; // 聊天室不存在
@@ -96,29 +105,137 @@ public class ChatRoomManager implements Listener {
             return 2; // 无权限
         }
         
-        // 将所有成员移到默认聊天室
-        String defaultRoom = plugin.getConfigManager().getDefaultRoomName();
-        for (UUID memberId : room.getMembers()) {
-            playerRooms.put(memberId, defaultRoom);
-            ChatRoom defaultChatRoom = chatRooms.get(defaultRoom);
-            if (defaultChatRoom != null) {
-                defaultChatRoom.addMember(memberId);
-            }
-        }
-        
-        // 更新创建者的聊天室计数
-        int ownerCount = playerRoomCount.getOrDefault(room.getOwner(), 0);
-        if (ownerCount > 0) {
-            playerRoomCount.put(room.getOwner(), ownerCount - 1);
+        if (directory.delete(roomName, plugin.getConfigManager().getDefaultRoomName()) != room) {
+            return 1; // 已被同时删除
         }
-        
-        // 删除聊天室
-        chatRooms.remove(roomName);
+        roomLimiter.remove(roomName);
         
         plugin.debug("删除聊天室: " + roomName + " (删除者: " + requester + ")");
         return 0; // 成功
     }
     
+    /**
+     * 应用其他服务器创建的聊天室，不检查数量限制，也不再复制出去
+     */
+    void applyReplicatedCreate(String roomName, String owner) {
+        ChatRoom room = new ChatRoom(roomName, owner, false);
+        room.setMaxMembers(plugin.getConfigManager().getMaxMembersPerRoom());
+        if (directory.create(room, Integer.MAX_VALUE, Integer.MAX_VALUE)) {
+            plugin.debug("复制聊天室: " + roomName + " (创建者: " + owner + ")");
+            return;
+        }
+        // 本服已有同名聊天室：复制来的版本较新，保留聊天室和成员，创建者与其他服务器一致
+        if (directory.changeOwner(roomName, owner)) {
+            plugin.debug("同名聊天室 " + roomName + " 按较新的复制版本更改创建者为 " + owner);
+        }
+    }
+    
+    /**
+     * 持有聊天室的分段锁执行复制来的变更，版本比较和应用之间不会插入同名聊天室的其他变更
+     */
+    void withReplicationLock(String roomName, Runnable action) {
+        directory.withRoomLock(roomName, plugin.getConfigManager().getDefaultRoomName(), action);
+    }
+    
+    /**
+     * 应用其他服务器删除的聊天室，默认聊天室不会被删除
+     */
+    void applyReplicatedDelete(String roomName) {
+        ChatRoom room = directory.getRoom(roomName);
+        if (room == null || room.isDefault()) {
+            return;
+        }
+        
+        // 与远程聊天消息一样直接在 I/O 线程上移动成员并通知，保证与之后的复制变更顺序一致
+        room.forEachOnlineMember(Player::sendMessage, plugin.getConfigManager().formatSystemMessage(
+            "聊天室 " + roomName + " 已在其他服务器上被删除"));
+        directory.delete(roomName, plugin.getConfigManager().getDefaultRoomName());
+        roomLimiter.remove(roomName);
+        plugin.debug("复制删除聊天室: " + roomName);
+    }
+    
+    private RoomReplicator replicator() {
+        NetworkManager networkManager = plugin.getNetworkManager();
+        return networkManager != null ? networkManager.getReplicator() : null;
+    }
+    
+    /**
+     * 写入状态存储并复制到其他服务器，默认聊天室不复制
+     * 
+     * 与创建在同一把分段锁内完成，同一聊天室的创建和删除按发生顺序分配版本。
+     * 复制来的聊天室已有版本，不会再复制出去。
+     */
+    @Override
+    public void roomCreated(ChatRoom room) {
+        RoomStateStore store = stateStore;
+        if (store != null) {
+            store.roomCreated(room.getName(), room.getOwner(), room.isDefault(),
+                room.getCreatedTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        RoomReplicator replicator = replicator();
+        if (replicator != null && !room.isDefault()) {
+            replicator.roomCreated(room.getName(), room.getOwner());
+        }
+    }
+    
+    /**
+     * 按新的创建者重新写入状态存储，恢复时后写入的记录覆盖之前的记录
+     */
+    @Override
+    public void ownerChanged(ChatRoom room) {
+        RoomStateStore store = stateStore;
+        if (store != null) {
+            store.roomCreated(room.getName(), room.getOwner(), room.isDefault(),
+                room.getCreatedTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+    }
+    
+    /**
+     * 写入状态存储并复制到其他服务器，复制来的删除不会再复制出去
+     */
+    @Override
+    public void roomDeleted(ChatRoom room) {
+        RoomStateStore store = stateStore;
+        if (store != null) {
+            store.roomDeleted(room.getName());
+        }
+        RoomReplicator replicator = replicator();
+        if (replicator != null) {
+            replicator.roomDeleted(room.getName(), room.getOwner());
+        }
+        LatencyTracker tracker = plugin.getLatencyTracker();
+        if (tracker != null) {
+            tracker.removeRoom(room.getName());
+        }
+    }
+    
+    @Override
+    public void playerJoined(UUID playerId, String roomName) {
+        RoomStateStore store = stateStore;
+        if (store != null) {
+            store.playerJoined(playerId, roomName);
+        }
+    }
+    
+    @Override
+    public void playerLeft(UUID playerId) {
+        RoomStateStore store = stateStore;
+        if (store != null) {
+            store.playerLeft(playerId);
+        }
+    }
+    
+    /**
+     * 通知聊天室复制本服成员数量发生变化
+     */
+    @Override
+    public void memberCountChanged(String roomName) {
+        RoomReplicator replicator = replicator();
+        if (replicator != null && roomName != null) {
+            replicator.memberCountChanged(roomName);
+        }
+    }
+    
     /**
      * 玩家加入聊天室
      * 
@@ -127,32 +244,12 @@ public class ChatRoomManager implements Listener {
      * @return 是否加入成功
      */
     public boolean joinRoom(Player player, String roomName) {
-        ChatRoom room = chatRooms.get(roomName);
-        if (room == null) {
-            return false;
-        }
-        
-        UUID playerId = player.getUniqueId();
-        
-        // 检查是否已在此聊天室
-        String currentRoom = playerRooms.get(playerId);
-        if (roomName.equals(currentRoom)) {
+        if (!directory.join(player, roomName)) {
             return false;
         }
-        
-        // 离开当前聊天室
-        if (currentRoom != null) {
-            leaveRoom(player);
-        }
-        
-        // 加入新聊天室
-        if (room.addMember(playerId)) {
-            playerRooms.put(playerId, roomName);
-            plugin.debug("玩家 " + player.getName() + " 加入聊天室: " + roomName);
-            return true;
-        }
-        
-        return false;
+        replayHistory(player, roomName);
+        plugin.debug("玩家 " + player.getName() + " 加入聊天室: " + roomName);
+        return true;
     }
     
     /**
@@ -162,19 +259,10 @@ public class ChatRoomManager implements Listener {
      * @return 是否离开成功
      */
     public boolean leaveRoom(Player player) {
-        UUID playerId = player.getUniqueId();
-        String currentRoom = playerRooms.get(playerId);
-        
+        String currentRoom = directory.leave(player);
         if (currentRoom == null) {
             return false;
         }
-        
-        ChatRoom room = chatRooms.get(currentRoom);
-        if (room != null) {
-            room.removeMember(playerId);
-        }
-        
-        playerRooms.remove(playerId);
         plugin.debug("玩家 " + player.getName() + " 离开聊天室: " + currentRoom);
         return true;
     }
@@ -183,28 +271,32 @@ public class ChatRoomManager implements Listener {
      * 获取玩家当前所在聊天室
      */
     public String getPlayerRoom(Player player) {
-        return playerRooms.get(player.getUniqueId());
+        return directory.getPlayerRoom(player.getUniqueId());
     }
     
     /**
      * 获取聊天室
      */
     public ChatRoom getRoom(String roomName) {
-        return chatRooms.get(roomName);
+        return directory.getRoom(roomName);
     }
     
     /**
      * 获取所有聊天室名称
      */
     public Set<String> getAllRoomNames() {
-        return new HashSet<>(chatRooms.keySet());
+        Set<String> names = new HashSet<>();
+        for (ChatRoom room : directory.getRooms()) {
+            names.add(room.getName());
+        }
+        return names;
     }
     
     /**
      * 获取所有聊天室
      */
     public Collection<ChatRoom> getAllRooms() {
-        return new ArrayList<>(chatRooms.values());
+        return new ArrayList<>(directory.getRooms());
     }
     
     /**
@@ -224,69 +316,213 @@ public class ChatRoomManager implements Listener {
     
     /**
      * 向聊天室发送消息
+     * 
+     * 可以在任意线程调用，消息投递到聊天事件循环后按顺序处理。
      */
     public void sendMessageToRoom(String roomName, String playerName, String message) {
-        ChatRoom room = chatRooms.get(roomName);
+        postChat(new ChatRecord(System.currentTimeMillis(), roomName, null, playerName, message));
+    }
+    
+    /**
+     * 投递聊天消息到聊天事件循环，事件循环未启动时直接处理
+     * 
+     * @param record 本服消息 (serverName 为 null) 或其他服务器的消息
+     */
+    public void postChat(ChatRecord record) {
+        LatencyTracker tracker = plugin.getLatencyTracker();
+        if (tracker != null && record.getTrace() != null) {
+            tracker.posted(record.getTrace(), record.isRemote() ? null : record.getRoomName());
+        }
+        ChatEventLoop chatLoop = plugin.getChatLoop();
+        if (chatLoop == null) {
+            deliverChat(record);
+        } else if (!chatLoop.post(record)) {
+            plugin.debug(() -> "聊天事件积压已满，丢弃聊天室 " + record.getRoomName() + " 的消息");
+        }
+    }
+    
+    /**
+     * 处理一条聊天消息：记录聊天历史并发送给聊天室内的在线玩家，本服消息再发送到其他服务器
+     * 
+     * 由聊天事件循环调用，成员列表使用在线成员快照。
+     */
+    public void deliverChat(ChatRecord record) {
+        String roomName = record.getRoomName();
+        ChatRoom room = directory.getRoom(roomName);
+        LatencyTracker tracker = plugin.getLatencyTracker();
+        ChatTrace trace = tracker != null ? record.getTrace() : null;
+        long dispatched = trace != null ? tracker.dispatched(trace, room != null ? roomName : null) : 0;
+        if (record.isRemote()) {
+            // 聊天室尚未复制到本服时也保留记录，复制完成后加入的玩家可以看到
+            recordHistory(record);
+            if (room == null) {
+                plugin.debug(() -> "聊天室 " + roomName + " 尚未复制到本服，消息只记录不发送");
+                return;
+            }
+            room.forEachOnlineMember(Player::sendMessage, plugin.getConfigManager().formatCrossServerMessage(
+                record.getServerName(), roomName, record.getPlayerName(), record.getMessage()));
+            if (trace != null) {
+                tracker.delivered(trace, roomName, dispatched);
+            }
+            return;
+        }
+        
         if (room == null) {
             return;
         }
+        String playerName = record.getPlayerName();
+        String message = record.getMessage();
         
-        String formattedMessage = plugin.getConfigManager().formatChatMessage(roomName, playerName, message);
+        // 记录聊天历史
+        recordHistory(record);
         
-        // 发送给聊天室内的所有玩家
-        for (UUID memberId : room.getMembers()) {
-            Player member = Bukkit.getPlayer(memberId);
-            if (member != null && member.isOnline()) {
-                member.sendMessage(formattedMessage);
-            }
+        // 发送给聊天室内的所有在线玩家
+        room.forEachOnlineMember(Player::sendMessage, plugin.getConfigManager().formatChatMessage(roomName, playerName, message));
+        if (trace != null) {
+            tracker.delivered(trace, roomName, dispatched);
         }
         
-        // 发送到其他服务器
+        // 发送到其他服务器，带上发言时间，对端据此统计跨服延迟
         if (plugin.getNetworkManager() != null) {
-            plugin.getNetworkManager().broadcastMessage(roomName, playerName, message);
+            plugin.getNetworkManager().broadcastMessage(roomName, playerName, message, record.getTimestamp());
+        }
+        
+        plugin.debug(() -> "聊天室 " + roomName + " 消息: " + playerName + ": " + message);
+    }
+    
+    /**
+     * 写入聊天记录 (未启用时忽略)，可以在任意线程调用
+     */
+    public void recordHistory(ChatRecord record) {
+        ChatHistoryJournal journal = plugin.getHistoryJournal();
+        if (journal != null) {
+            journal.append(record);
+        }
+    }
+    
+    /**
+     * 异步读取聊天室最近的记录并发送给玩家
+     */
+    private void replayHistory(Player player, String roomName) {
+        ChatHistoryJournal journal = plugin.getHistoryJournal();
+        if (journal == null || journal.getIndexDepth() == 0) {
+            return;
+        }
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<ChatRecord> records = journal.replay(roomName, journal.getIndexDepth());
+            if (records.isEmpty() || !player.isOnline()) {
+                return;
+            }
+            
+            ConfigManager config = plugin.getConfigManager();
+            player.sendMessage(config.formatSystemMessage("最近的聊天记录:"));
+            for (ChatRecord record : records) {
+                if (record.isRemote()) {
+                    player.sendMessage(config.formatCrossServerMessage(record.getServerName(), roomName,
+                        record.getPlayerName(), record.getMessage()));
+                } else {
+                    player.sendMessage(config.formatChatMessage(roomName, record.getPlayerName(), record.getMessage()));
+                }
+            }
+        });
+    }
+    
+    /**
+     * 打开聊天室状态存储，恢复上次保存的聊天室和玩家所在聊天室
+     * 
+     * 应在创建默认聊天室之前调用；未启用或打开失败时只使用内存中的状态。
+     */
+    public void restoreState() {
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        if (!config.getBoolean("persistence.enabled", true)) {
+            return;
         }
         
-        plugin.debug("聊天室 " + roomName + " 消息: " + playerName + ": " + message);
+        long start = System.nanoTime();
+        RoomStateStore store = new RoomStateStore(plugin.getDataFolder().toPath().resolve("state"),
+            config.getInt("persistence.snapshot-interval", 1000),
+            config.getBoolean("persistence.fsync", false),
+            plugin.getLogger());
+        try {
+            store.open();
+        } catch (IOException e) {
+            plugin.getLogger().severe("打开聊天室状态存储失败: " + e.getMessage());
+            return;
+        }
+        
+        String defaultRoom = plugin.getConfigManager().getDefaultRoomName();
+        int maxMembers = plugin.getConfigManager().getMaxMembersPerRoom();
+        for (RoomStateStore.StoredRoom stored : store.getRooms()) {
+            // 默认聊天室改名后，旧的默认聊天室作为普通聊天室恢复
+            boolean isDefault = stored.isDefault() && stored.getName().equals(defaultRoom);
+            LocalDateTime createdTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(stored.getCreatedTime()), ZoneId.systemDefault());
+            ChatRoom room = new ChatRoom(stored.getName(), stored.getOwner(), isDefault, createdTime);
+            room.setMaxMembers(maxMembers);
+            directory.create(room, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+        for (Map.Entry<UUID, String> entry : store.getMemberships().entrySet()) {
+            directory.restoreMembership(entry.getKey(), entry.getValue());
+        }
+        stateStore = store;
+        
+        // 插件重载时已在线的玩家重新加入所在聊天室
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            directory.rejoin(player);
+        }
+        
+        plugin.getLogger().info("聊天室状态已恢复: " + directory.getRoomCount() + " 个聊天室, " + directory.getPlayerCount()
+            + " 个玩家 (快照 " + store.getSnapshotRecords() + " 条, 日志 " + store.getReplayedRecords()
+            + " 条, 耗时 " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
     }
     
     /**
-     * 清理数据
+     * 清理数据，关闭状态存储
      */
     public void cleanup() {
-        chatRooms.clear();
-        playerRooms.clear();
-        playerRoomCount.clear();
+        if (stateStore != null) {
+            stateStore.close();
+            stateStore = null;
+        }
+        directory.clear();
     }
     
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         
-        // 自动加入默认聊天室
-        String defaultRoom = plugin.getConfigManager().getDefaultRoomName();
-        ChatRoom room = chatRooms.get(defaultRoom);
-        if (room != null) {
-            room.addMember(player.getUniqueId());
-            playerRooms.put(player.getUniqueId(), defaultRoom);
-            
-            // 发送欢迎消息
-            Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                player.sendMessage(plugin.getConfigManager().formatSystemMessage(
-                    "欢迎使用 WorldStudioTalk! 输入 /wst help 查看帮助"));
-                player.sendMessage(plugin.getConfigManager().formatSystemMessage(
-                    "您已自动加入聊天室: " + defaultRoom));
-            }, 20L); // 延迟1秒发送
+        // 回到上次所在的聊天室，没有或已删除时自动加入默认聊天室
+        boolean restored = directory.rejoin(player);
+        String roomName = restored ? directory.getPlayerRoom(player.getUniqueId())
+            : plugin.getConfigManager().getDefaultRoomName();
+        if (!restored && !directory.join(player, roomName)) {
+            directory.leave(player);
+            return;
         }
+        
+        // 发送欢迎消息
+        String joinedRoom = roomName;
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            player.sendMessage(plugin.getConfigManager().formatSystemMessage(
+                "欢迎使用 WorldStudioTalk! 输入 /wst help 查看帮助"));
+            player.sendMessage(plugin.getConfigManager().formatSystemMessage(
+                (restored ? "您已回到聊天室: " : "您已自动加入聊天室: ") + joinedRoom));
+            replayHistory(player, joinedRoom);
+        }, 20L); // 延迟1秒发送
     }
     
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
-        leaveRoom(player);
+        
+        // 只移出在线成员，保留所在聊天室以便下次进入时恢复
+        directory.disconnect(player);
+        // 不移除发言令牌桶，退出后立即重新进入不会得到新的突发额度；补满的桶由定时任务回收
     }
     
     @EventHandler
     public void onPlayerChat(AsyncPlayerChatEvent event) {
+        long start = System.nanoTime();
         Player player = event.getPlayer();
         String message = event.getMessage();
         String roomName = getPlayerRoom(player);
@@ -295,10 +531,54 @@ public class ChatRoomManager implements Listener {
             // 取消原始聊天事件
             event.setCancelled(true);
             
-            // 通过聊天室系统发送消息
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                sendMessageToRoom(roomName, player.getName(), message);
-            });
+            // 在聊天线程上限流，超出的消息不会进入聊天室、聊天记录和网络
+            if (!tryAcquireChat(player, roomName)) {
+                return;
+            }
+            
+            // 过滤敏感词，拦截模式下整条消息不发送
+            message = plugin.getFilterManager().apply(message);
+            if (message == null) {
+                ConfigManager configManager = plugin.getConfigManager();
+                player.sendMessage(configManager.formatErrorMessage(configManager.getMessage("message-blocked")));
+                return;
+            }
+            
+            // 通过聊天事件循环发送消息，不占用聊天线程和主线程
+            ChatTrace trace = plugin.getLatencyTracker() != null ? ChatTrace.local(start) : null;
+            postChat(new ChatRecord(System.currentTimeMillis(), roomName, null, player.getName(), message, trace));
+        }
+    }
+    
+    /**
+     * 检查玩家和聊天室的发言限流，超出时提示玩家
+     */
+    private boolean tryAcquireChat(Player player, String roomName) {
+        ConfigManager configManager = plugin.getConfigManager();
+        WstSettings settings = configManager.getSettings();
+        if (!playerLimiter.tryAcquire(player.getUniqueId(), settings.getPlayerRateLimit())) {
+            player.sendMessage(configManager.formatErrorMessage(configManager.getMessage("rate-limited")));
+            return false;
+        }
+        if (!roomLimiter.tryAcquire(roomName, settings.getRoomRateLimit())) {
+            player.sendMessage(configManager.formatErrorMessage(
+                configManager.getMessage("room-rate-limited", "room", roomName)));
+            return false;
         }
+        return true;
+    }
+    
+    /**
+     * 因玩家发言过快被拒绝的消息数
+     */
+    public long getPlayerRateLimited() {
+        return playerLimiter.getRejected();
+    }
+    
+    /**
+     * 因聊天室消息过多被拒绝的消息数
+     */
+    public long getRoomRateLimited() {
+        return roomLimiter.getRejected();
     }
 }
\ No newline at end of file
@@ -1,19 +1,22 @@
 package com.world.wst.manager;
 
 import com.world.wst.WorldStudioTalk;
-import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
 import java.util.List;
 
 /**
  * 配置管理器
  * 
+ * 加载和重载时生成新的 {@link WstSettings} 快照并整体替换，message.* 格式和 messages.* 消息
+ * 在快照中编译为 {@link MessageTemplate}。热路径上的读取只访问快照字段，不再查询配置文件。
+ * 
  * @author World Studio
  */
 public class ConfigManager {
     
     private final WorldStudioTalk plugin;
-    private FileConfiguration config;
+    private volatile FileConfiguration config;
+    private volatile WstSettings settings;
     
     public ConfigManager(WorldStudioTalk plugin) {
         this.plugin = plugin;
@@ -27,6 +30,7 @@ public class ConfigManager {
         plugin.saveDefaultConfig();
         plugin.reloadConfig();
         config = plugin.getConfig();
+        settings = new WstSettings(config);
         
         plugin.getLogger().info("配置文件已加载");
     }
@@ -37,9 +41,28 @@ public class ConfigManager {
     public void reloadConfig() {
         plugin.reloadConfig();
         config = plugin.getConfig();
+        settings = new WstSettings(config);
         plugin.getLogger().info("配置文件已重载");
     }
     
+    /**
+     * 获取消息模板，配置中不存在或不是字符串时临时编译
+     */
+    private MessageTemplate getMessageTemplate(String key) {
+        MessageTemplate template = settings.getMessageTemplate(key);
+        if (template == null) {
+            template = MessageTemplate.compileMessage(config.getString("messages." + key, "消息未找到: " + key));
+        }
+        return template;
+    }
+    
+    /**
+     * 获取当前配置快照
+     */
+    public WstSettings getSettings() {
+        return settings;
+    }
+    
     /**
      * 获取配置文件
      */
@@ -54,8 +77,7 @@ public class ConfigManager {
      * @return 格式化的消息
      */
     public String getMessage(String key) {
-        String message = config.getString("messages." + key, "消息未找到: " + key);
-        return ChatColor.translateAlternateColorCodes('&', message);
+        return getMessageTemplate(key).renderNamed();
     }
     
     /**
@@ -66,135 +88,111 @@ public class ConfigManager {
      * @return 格式化的消息
      */
     public String getMessage(String key, String... placeholders) {
-        String message = getMessage(key);
-        
-        for (int i = 0; i < placeholders.length; i += 2) {
-            if (i + 1 < placeholders.length) {
-                message = message.replace("{" + placeholders[i] + "}", placeholders[i + 1]);
-            }
-        }
-        
-        return message;
+        return getMessageTemplate(key).renderNamed(placeholders);
     }
     
     /**
      * 获取帮助消息列表
      */
     public List<String> getHelpMessages() {
-        List<String> messages = config.getStringList("messages.help");
-        return messages.stream()
-                .map(msg -> ChatColor.translateAlternateColorCodes('&', msg))
-                .toList();
+        return settings.getHelpMessages();
     }
     
     /**
      * 获取系统消息格式
      */
     public String getSystemMessageFormat() {
-        return config.getString("message.system-format", "&7[&aWST&7] &f{message}");
+        return settings.getSystemMessageFormat();
     }
     
     /**
      * 获取错误消息格式
      */
     public String getErrorMessageFormat() {
-        return config.getString("message.error-format", "&7[&cWST&7] &c{message}");
+        return settings.getErrorMessageFormat();
     }
     
     /**
      * 获取聊天消息格式
      */
     public String getChatMessageFormat() {
-        return config.getString("message.chat-format", "&7[&b{room}&7] &f{player}&7: &f{message}");
+        return settings.getChatMessageFormat();
     }
     
     /**
      * 获取跨服务器消息格式
      */
     public String getCrossServerMessageFormat() {
-        return config.getString("message.cross-server-format", "&7[&e{server}&7] &7[&b{room}&7] &f{player}&7: &f{message}");
+        return settings.getCrossServerMessageFormat();
     }
     
     /**
      * 格式化系统消息
      */
     public String formatSystemMessage(String message) {
-        String format = getSystemMessageFormat();
-        format = format.replace("{message}", message);
-        return ChatColor.translateAlternateColorCodes('&', format);
+        return settings.getSystemTemplate().render(message);
     }
     
     /**
      * 格式化错误消息
      */
     public String formatErrorMessage(String message) {
-        String format = getErrorMessageFormat();
-        format = format.replace("{message}", message);
-        return ChatColor.translateAlternateColorCodes('&', format);
+        return settings.getErrorTemplate().render(message);
     }
     
     /**
      * 格式化聊天消息
      */
     public String formatChatMessage(String room, String player, String message) {
-        String format = getChatMessageFormat();
-        format = format.replace("{room}", room);
-        format = format.replace("{player}", player);
-        format = format.replace("{message}", message);
-        return ChatColor.translateAlternateColorCodes('&', format);
+        return settings.getChatTemplate().render(room, player, message);
     }
     
     /**
      * 格式化跨服务器聊天消息
      */
     public String formatCrossServerMessage(String server, String room, String player, String message) {
-        String format = getCrossServerMessageFormat();
-        format = format.replace("{server}", server);
-        format = format.replace("{room}", room);
-        format = format.replace("{player}", player);
-        format = format.replace("{message}", message);
-        return ChatColor.translateAlternateColorCodes('&', format);
+        return settings.getCrossServerTemplate().render(server, room, player, message);
     }
     
     /**
      * 获取聊天室最大数量
      */
     public int getMaxRooms() {
-        return config.getInt("chatroom.max-rooms", 50);
+        return settings.getMaxRooms();
     }
     
     /**
      * 获取每个玩家最大聊天室数量
      */
     public int getMaxRoomsPerPlayer() {
-        return config.getInt("chatroom.max-rooms-per-player", 5);
+        return settings.getMaxRoomsPerPlayer();
     }
     
     /**
      * 获取聊天室最大成员数
      */
     public int getMaxMembersPerRoom() {
-        return config.getInt("chatroom.max-members", 100);
+        return settings.getMaxMembersPerRoom();
     }
     
     /**
      * 获取聊天室名称最大长度
      */
     public int getMaxRoomNameLength() {
-        return config.getInt("chatroom.max-name-length", 20);
+        return settings.getMaxRoomNameLength();
     }
     
     /**
      * 获取聊天室名称最小长度
      */
     public int getMinRoomNameLength() {
-        return config.getInt("chatroom.min-name-length", 3);
+        return settings.getMinRoomNameLength();
     }
     
     /**
      * 获取默认聊天室名称
      */
     public String getDefaultRoomName() {
-        return config.getString("chatroom.default-room", "全服大厅");
+        return settings.getDefaultRoomName();
     }
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.world.wst.manager;
+
+import com.world.wst.WorldStudioTalk;
+import com.world.wst.filter.WordFilter;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 聊天过滤管理器
+ * 
+ * 从插件目录的词表文件编译 {@link WordFilter}，通过 volatile 字段整体替换。
+ * 启动时同步编译；重载时在异步线程上编译，完成后再替换，编译期间继续使用旧的自动机。
+ * 
+ * @author World Studio
+ */
+public class FilterManager {
+    
+    private static final String DEFAULT_WORDS_FILE = "filter-words.txt";
+    
+    private final WorldStudioTalk plugin;
+    private final AtomicInteger generation; // 只有最近一次重载的结果会被采用
+    private final AtomicLong censored;
+    private final AtomicLong blocked;
+    private volatile WordFilter filter;
+    
+    public FilterManager(WorldStudioTalk plugin) {
+        this.plugin = plugin;
+        this.generation = new AtomicInteger();
+        this.censored = new AtomicLong();
+        this.blocked = new AtomicLong();
+        this.filter = WordFilter.EMPTY;
+    }
+    
+    /**
+     * 同步加载词表
+     */
+    public void load() {
+        generation.incrementAndGet();
+        filter = compile();
+    }
+    
+    /**
+     * 在异步线程上重新编译词表，完成后替换
+     */
+    public void reload() {
+        int current = generation.incrementAndGet();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            WordFilter compiled = compile();
+            if (generation.get() == current) {
+                filter = compiled;
+            }
+        });
+    }
+    
+    private WordFilter compile() {
+        WstSettings settings = plugin.getConfigManager().getSettings();
+        if (!settings.isFilterEnabled()) {
+            return WordFilter.EMPTY;
+        }
+        
+        String fileName = settings.getFilterWordsFile();
+        File file = new File(plugin.getDataFolder(), fileName);
+        if (!file.exists() && DEFAULT_WORDS_FILE.equals(fileName)) {
+            plugin.saveResource(DEFAULT_WORDS_FILE, false);
+        }
+        if (!file.exists()) {
+            plugin.getLogger().warning("过滤词表 " + fileName + " 不存在，聊天过滤未启用");
+            return WordFilter.EMPTY;
+        }
+        
+        try {
+            long start = System.nanoTime();
+            List<String> words = new ArrayList<>();
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                String word = line.trim();
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    words.add(word);
+                }
+            }
+            WordFilter compiled = WordFilter.compile(words);
+            plugin.getLogger().info("过滤词表已加载: " + compiled.getWordCount() + " 个词, "
+                + compiled.getStateCount() + " 个状态 (耗时 "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+            return compiled;
+        } catch (IOException e) {
+            plugin.getLogger().severe("读取过滤词表失败: " + e.getMessage());
+            return filter;
+        }
+    }
+    
+    /**
+     * 过滤一条聊天消息
+     * 
+     * @param message 原始消息
+     * @return 没有命中时返回原消息本身；替换模式下返回替换后的消息；拦截模式下返回 null
+     */
+    public String apply(String message) {
+        WordFilter current = filter;
+        if (current.getWordCount() == 0) {
+            return message;
+        }
+        WstSettings settings = plugin.getConfigManager().getSettings();
+        if (settings.isFilterBlock()) {
+            if (current.matches(message)) {
+                blocked.incrementAndGet();
+                return null;
+            }
+            return message;
+        }
+        String result = current.censor(message, settings.getFilterReplacement());
+        if (result != message) {
+            censored.incrementAndGet();
+        }
+        return result;
+    }
+    
+    /**
+     * 当前词表中的词数量
+     */
+    public int getWordCount() {
+        return filter.getWordCount();
+    }
+    
+    /**
+     * 被替换过的消息数
+     */
+    public long getCensored() {
+        return censored.get();
+    }
+    
+    /**
+     * 被拦截的消息数
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,233 @@
+package com.world.wst.manager;
+
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的消息模板
+ * 
+ * 模板在加载配置时编译为字面片段和占位符槽位，字面片段中的 & 颜色代码已经转换，
+ * 渲染时只需要把片段和参数依次写入一个预估好大小的 StringBuilder。
+ * 
+ * 格式模板 ({@link #compileFormat}) 与原来的"先替换再转换颜色代码"结果一致，
+ * 参数中的 & 颜色代码 (包括与相邻字面片段组成的代码) 在写入时转换；
+ * 消息模板 ({@link #compileMessage}) 与原来的"先转换颜色代码再替换"一致，参数原样写入。
+ * 
+ * @author World Studio
+ */
+public final class MessageTemplate {
+    
+    private static final char ALT_COLOR_CHAR = '&';
+    private static final String COLOR_CODES = "0123456789AaBbCcDdEeFfKkLlMmNnOoRrXx";
+    
+    private final String[] literals;
+    private final String[] slotNames;
+    private final int[] slotIndexes;
+    private final boolean translateValues;
+    private final int literalLength;
+    
+    private MessageTemplate(List<String> literals, List<String> slotNames, int[] slotIndexes, boolean translateValues) {
+        this.literals = literals.toArray(new String[0]);
+        this.slotNames = slotNames.toArray(new String[0]);
+        this.slotIndexes = slotIndexes;
+        this.translateValues = translateValues;
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+    
+    /**
+     * 编译格式模板，只识别给定名称的占位符
+     * 
+     * @param format 原始格式 (含 & 颜色代码)
+     * @param names 占位符名称，顺序即 {@link #render(String...)} 的参数顺序
+     * @return 模板
+     */
+    public static MessageTemplate compileFormat(String format, String... names) {
+        List<String> literals = new ArrayList<>();
+        List<String> slotNames = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        
+        int start = 0;
+        int position = 0;
+        while ((position = format.indexOf('{', position)) >= 0) {
+            int matched = -1;
+            for (int i = 0; i < names.length; i++) {
+                if (format.startsWith(names[i], position + 1) && format.startsWith("}", position + 1 + names[i].length())) {
+                    matched = i;
+                    break;
+                }
+            }
+            if (matched < 0) {
+                position++;
+                continue;
+            }
+            literals.add(ChatColor.translateAlternateColorCodes(ALT_COLOR_CHAR, format.substring(start, position)));
+            slotNames.add(names[matched]);
+            indexes.add(matched);
+            position += names[matched].length() + 2;
+            start = position;
+        }
+        literals.add(ChatColor.translateAlternateColorCodes(ALT_COLOR_CHAR, format.substring(start)));
+        
+        return new MessageTemplate(literals, slotNames, toArray(indexes), true);
+    }
+    
+    /**
+     * 编译消息模板，先转换颜色代码，任意 {键} 均视为占位符
+     * 
+     * @param message 原始消息 (含 & 颜色代码)
+     * @return 模板
+     */
+    public static MessageTemplate compileMessage(String message) {
+        String translated = ChatColor.translateAlternateColorCodes(ALT_COLOR_CHAR, message);
+        List<String> literals = new ArrayList<>();
+        List<String> slotNames = new ArrayList<>();
+        
+        int start = 0;
+        int position = 0;
+        while ((position = translated.indexOf('{', position)) >= 0) {
+            int end = translated.indexOf('}', position + 1);
+            if (end < 0) {
+                break;
+            }
+            int nested = translated.indexOf('{', position + 1);
+            if (nested >= 0 && nested < end) {
+                position = nested;
+                continue;
+            }
+            literals.add(translated.substring(start, position));
+            slotNames.add(translated.substring(position + 1, end));
+            position = end + 1;
+            start = position;
+        }
+        literals.add(translated.substring(start));
+        
+        int[] indexes = new int[slotNames.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        return new MessageTemplate(literals, slotNames, indexes, false);
+    }
+    
+    /**
+     * 按编译时给出的名称顺序渲染
+     * 
+     * @param values 参数值
+     * @return 渲染结果
+     */
+    public String render(String... values) {
+        int length = literalLength;
+        for (int index : slotIndexes) {
+            length += values[index].length();
+        }
+        
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(literals[0]);
+        for (int i = 0; i < slotIndexes.length; i++) {
+            appendValue(builder, values[slotIndexes[i]]);
+            appendLiteral(builder, literals[i + 1]);
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * 按占位符键值对渲染，没有提供的占位符保持原样
+     * 
+     * @param placeholders 占位符键值对
+     * @return 渲染结果
+     */
+    public String renderNamed(String... placeholders) {
+        if (slotNames.length == 0) {
+            return literals[0];
+        }
+        
+        StringBuilder builder = new StringBuilder(literalLength + 16 * slotNames.length);
+        builder.append(literals[0]);
+        for (int i = 0; i < slotNames.length; i++) {
+            String value = lookup(slotNames[i], placeholders);
+            if (value != null) {
+                appendValue(builder, value);
+            } else {
+                builder.append('{').append(slotNames[i]).append('}');
+            }
+            appendLiteral(builder, literals[i + 1]);
+        }
+        return builder.toString();
+    }
+    
+    private static String lookup(String name, String[] placeholders) {
+        for (int i = 0; i + 1 < placeholders.length; i += 2) {
+            if (name.equals(placeholders[i])) {
+                return placeholders[i + 1];
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 写入已转换的字面片段
+     * 
+     * 格式模板中，前一个参数末尾未转换的 & 与片段开头的颜色代码字符组成颜色代码。
+     */
+    private void appendLiteral(StringBuilder builder, String literal) {
+        if (translateValues && !literal.isEmpty() && endsWithColorChar(builder)
+            && COLOR_CODES.indexOf(literal.charAt(0)) >= 0) {
+            builder.setCharAt(builder.length() - 1, ChatColor.COLOR_CHAR);
+            builder.append(Character.toLowerCase(literal.charAt(0)));
+            builder.append(literal, 1, literal.length());
+            return;
+        }
+        builder.append(literal);
+    }
+    
+    /**
+     * 写入参数值
+     * 
+     * 格式模板中参数内的颜色代码 (包括与前面内容末尾的 & 组成的代码) 在这里转换，
+     * 与对整个字符串调用 translateAlternateColorCodes 的结果相同。
+     */
+    private void appendValue(StringBuilder builder, String value) {
+        if (!translateValues) {
+            builder.append(value);
+            return;
+        }
+        
+        boolean pending = endsWithColorChar(builder);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (pending && COLOR_CODES.indexOf(c) >= 0) {
+                builder.setCharAt(builder.length() - 1, ChatColor.COLOR_CHAR);
+                builder.append(Character.toLowerCase(c));
+                pending = false;
+            } else {
+                builder.append(c);
+                pending = c == ALT_COLOR_CHAR;
+            }
+        }
+    }
+    
+    private static boolean endsWithColorChar(StringBuilder builder) {
+        int length = builder.length();
+        return length > 0 && builder.charAt(length - 1) == ALT_COLOR_CHAR;
+    }
+    
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+    
+    /**
+     * 占位符数量
+     */
+    public int getSlotCount() {
+        return slotNames.length;
+    }
+}
\ No newline at end of file
@@ -1,16 +1,29 @@
 package com.world.wst.manager;
 
 import com.world.wst.WorldStudioTalk;
-import com.world.wst.data.ChatRoom;
+import com.world.wst.metrics.ChatTrace;
+import com.world.wst.metrics.LatencyTracker;
+import com.world.wst.network.DuplicateFilter;
+import com.world.wst.network.HandshakeInfo;
+import com.world.wst.network.MessageRouter;
 import com.world.wst.network.NetworkMessage;
+import com.world.wst.network.NetworkTransport;
+import com.world.wst.network.OverflowPolicy;
+import com.world.wst.network.PeerConnection;
+import com.world.wst.network.PeerHealth;
+import com.world.wst.network.PeerRegistry;
+import com.world.wst.network.ReconnectSupervisor;
+import com.world.wst.network.SerializedFrame;
+import com.world.wst.network.TransportListener;
+import com.world.wst.ratelimit.RateLimiter;
+import com.world.wst.storage.ChatRecord;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.entity.Player;
 
-import java.io.*;
-import java.net.*;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 网络管理器 - 处理跨服务器通信
@@ -24,11 +37,31 @@ public class NetworkManager {
     private final String serverName;
     private final int port;
     private final String bindIp;
+    private final int ioThreads;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean binaryCodec;
+    private final boolean compression;
+    private final int compressionThreshold;
+    private final long batchWindowMillis;
+    private final int batchMaxMessages;
+    private final int batchMaxBytes;
+    private final long replicationFlushMillis;
+    private final boolean relayEnabled;
+    private final ReconnectSupervisor.Settings reconnectSettings;
+    private final long heartbeatIntervalSeconds;
+    private final int heartbeatMaxMissed;
+    private final RoomReplicator replicator;
+    private final MessageRouter router;
     
-    private ServerSocket serverSocket;
-    private final Set<Socket> connectedClients;
-    private final Map<String, Socket> serverConnections;
-    private final ExecutorService threadPool;
+    private NetworkTransport transport;
+    private final Set<PeerConnection> connectedClients;
+    private final Map<String, PeerConnection> serverConnections;
+    private final Map<String, String> serverNames;
+    private final PeerRegistry peers;
+    private final RateLimiter<String> serverLimiter;
+    private final AtomicLong interestFiltered;
+    private final AtomicLong interestBytesSaved;
     private volatile boolean running;
     
     public NetworkManager(WorldStudioTalk plugin) {
@@ -37,10 +70,40 @@ public class NetworkManager {
         this.serverName = plugin.getConfig().getString("network.server-name", "主服务器");
         this.port = plugin.getConfig().getInt("network.port", 25580);
         this.bindIp = plugin.getConfig().getString("network.bind-ip", "0.0.0.0");
+        this.ioThreads = plugin.getConfig().getInt("network.io-threads", 2);
+        this.queueCapacity = plugin.getConfig().getInt("network.outbound-queue.capacity", 1024);
+        this.overflowPolicy = OverflowPolicy.fromConfig(
+            plugin.getConfig().getString("network.outbound-queue.overflow-policy"), OverflowPolicy.DROP_OLDEST);
+        this.binaryCodec = plugin.getConfig().getBoolean("network.binary-codec", true);
+        this.compression = plugin.getConfig().getBoolean("network.compression.enabled", true);
+        this.compressionThreshold = plugin.getConfig().getInt("network.compression.threshold", 256);
+        this.batchWindowMillis = plugin.getConfig().getLong("network.batch.window-ms", 5);
+        this.batchMaxMessages = plugin.getConfig().getInt("network.batch.max-messages", 64);
+        this.batchMaxBytes = plugin.getConfig().getInt("network.batch.max-bytes", 16384);
+        this.replicationFlushMillis = plugin.getConfig().getLong("network.replication.flush-ms", 1000);
+        this.relayEnabled = plugin.getConfig().getBoolean("network.relay.enabled", true);
+        this.heartbeatIntervalSeconds = Math.max(1, plugin.getConfig().getLong("network.heartbeat.interval-seconds", 10));
+        this.heartbeatMaxMissed = Math.max(1, plugin.getConfig().getInt("network.heartbeat.max-missed", 3));
+        this.reconnectSettings = new ReconnectSupervisor.Settings(
+            plugin.getConfig().getLong("network.reconnect.initial-delay-ms", 1000),
+            plugin.getConfig().getLong("network.reconnect.max-delay-ms", 60000),
+            plugin.getConfig().getDouble("network.reconnect.multiplier", 2.0),
+            plugin.getConfig().getDouble("network.reconnect.jitter", 0.5),
+            plugin.getConfig().getInt("network.reconnect.buffer-size", 256),
+            plugin.getConfig().getLong("network.reconnect.buffer-max-age-seconds", 30) * 1000);
+        this.replicator = new RoomReplicator(plugin, this, serverId);
+        this.router = new MessageRouter(serverId,
+            new DuplicateFilter(plugin.getConfig().getInt("network.relay.dedupe-capacity", 65536),
+                plugin.getConfig().getLong("network.relay.dedupe-window-seconds", 60) * 1000),
+            relayEnabled, plugin.getConfig().getInt("network.relay.max-hops", 8), heartbeatIntervalSeconds * 500);
         
-        this.connectedClients = Collections.synchronizedSet(new HashSet<>());
+        this.connectedClients = ConcurrentHashMap.newKeySet();
         this.serverConnections = new ConcurrentHashMap<>();
-        this.threadPool = Executors.newCachedThreadPool();
+        this.serverNames = new ConcurrentHashMap<>();
+        this.peers = new PeerRegistry(serverId, plugin::debug);
+        this.serverLimiter = new RateLimiter<>();
+        this.interestFiltered = new AtomicLong();
+        this.interestBytesSaved = new AtomicLong();
         this.running = false;
     }
     
@@ -53,13 +116,20 @@ public class NetworkManager {
         }
         
         try {
-            serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bindIp));
+            transport = new NetworkTransport(serverId, serverName, ioThreads, plugin.getLogger(), new Listener());
+            transport.setOutboundQueue(queueCapacity, overflowPolicy);
+            transport.setBinaryEnabled(binaryCodec);
+            transport.setCompression(compression, compressionThreshold);
+            transport.setBatching(batchWindowMillis, batchMaxMessages, batchMaxBytes);
+            transport.setRoomDigest(replicator::digest);
+            transport.setRelayEnabled(relayEnabled);
+            transport.setLatencyTracker(plugin.getLatencyTracker());
+            replicator.registerExistingRooms();
+            transport.start();
+            transport.bind(bindIp, port);
             running = true;
             
-            plugin.getLogger().info("网络服务启动成功，监听端口: " + port);
-            
-            // 启动服务器监听线程
-            threadPool.submit(this::serverListenLoop);
+            plugin.getLogger().info("网络服务启动成功，监听端口: " + port + " (I/O线程: " + transport.getIoThreadCount() + ")");
             
             // 连接到其他服务器
             connectToOtherServers();
@@ -67,7 +137,11 @@ public class NetworkManager {
             // 启动心跳任务
             startHeartbeatTask();
             
+            // 启动聊天室复制任务
+            startReplicationTask();
+            
         } catch (IOException e) {
+            transport.close();
             plugin.getLogger().severe("网络服务启动失败: " + e.getMessage());
         }
     }
@@ -83,157 +157,179 @@ public class NetworkManager {
         running = false;
         plugin.getLogger().info("正在关闭网络服务...");
         
-        // 关闭所有连接
-        synchronized (connectedClients) {
-            for (Socket client : connectedClients) {
-                try {
-                    client.close();
-                } catch (IOException e) {
-                    // 忽略关闭错误
-                }
-            }
-            connectedClients.clear();
-        }
-        
-        // 关闭服务器连接
-        for (Socket connection : serverConnections.values()) {
-            try {
-                connection.close();
-            } catch (IOException e) {
-                // 忽略关闭错误
-            }
-        }
+        // 停止重连，关闭所有连接和 I/O 线程
+        peers.clear();
+        transport.close();
+        connectedClients.clear();
         serverConnections.clear();
         
-        // 关闭服务器Socket
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            try {
-                serverSocket.close();
-            } catch (IOException e) {
-                // 忽略关闭错误
-            }
-        }
-        
-        // 关闭线程池
-        threadPool.shutdown();
-        try {
-            if (!threadPool.awaitTermination(5, TimeUnit.SECONDS)) {
-                threadPool.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            threadPool.shutdownNow();
-        }
-        
         plugin.getLogger().info("网络服务已关闭");
     }
     
-    /**
-     * 服务器监听循环
-     */
-    private void serverListenLoop() {
-        while (running && !serverSocket.isClosed()) {
-            try {
-                Socket client = serverSocket.accept();
-                connectedClients.add(client);
-                threadPool.submit(() -> handleClient(client));
-                plugin.debug("新的客户端连接: " + client.getRemoteSocketAddress());
-            } catch (IOException e) {
-                if (running) {
-                    plugin.getLogger().warning("接受客户端连接时出错: " + e.getMessage());
-                }
-            }
-        }
-    }
-    
-    /**
-     * 处理客户端连接
-     */
-    private void handleClient(Socket client) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
-             PrintWriter writer = new PrintWriter(client.getOutputStream(), true)) {
-            
-            String line;
-            while (running && (line = reader.readLine()) != null) {
-                handleMessage(line, writer);
-            }
-            
-        } catch (IOException e) {
-            plugin.debug("客户端连接断开: " + client.getRemoteSocketAddress());
-        } finally {
-            connectedClients.remove(client);
-            try {
-                client.close();
-            } catch (IOException e) {
-                // 忽略关闭错误
-            }
-        }
-    }
-    
     /**
      * 处理接收到的消息
      */
-    private void handleMessage(String messageData, PrintWriter sender) {
-        NetworkMessage message = NetworkMessage.fromJson(messageData);
-        if (message == null) {
+    private void handleMessage(PeerConnection sender, NetworkMessage message) {
+        if (message.getType() == null) {
             return;
         }
         
-        plugin.debug("收到网络消息: " + message.toString());
+        plugin.debug(() -> "收到网络消息: " + message.toString());
+        
+        if (isRoutable(message.getType()) && !acceptRoutable(sender, message)) {
+            return;
+        }
         
         switch (message.getType()) {
             case CHAT_MESSAGE:
-                handleChatMessage(message);
+                handleChatMessage(sender, message);
                 break;
             case HEARTBEAT:
                 handleHeartbeat(message, sender);
                 break;
             case SERVER_INFO:
-                handleServerInfo(message);
+                handleServerInfo(sender, message);
+                break;
+            case ROOM_CREATE:
+            case ROOM_DELETE:
+            case PLAYER_JOIN:
+            case PLAYER_LEAVE:
+                replicator.handleMessage(sender, message);
                 break;
             default:
                 plugin.debug("未知消息类型: " + message.getType());
         }
     }
     
+    /**
+     * 聊天消息和复制消息可以经其他服务器转发，心跳和握手只在单个连接上有效
+     */
+    private static boolean isRoutable(NetworkMessage.Type type) {
+        return type != NetworkMessage.Type.HEARTBEAT && type != NetworkMessage.Type.SERVER_INFO;
+    }
+    
+    /**
+     * 对带消息ID的消息去重、限流并转发给其他服务器
+     * 
+     * 旧版本服务器发送的消息和只对单个连接有效的消息没有ID，只限流，不转发。
+     * 聊天消息先去重再按来源服务器限流，同一条消息经多条路径到达只消耗一个令牌；
+     * 超出限流的消息既不在本服处理，也不转发。
+     * 
+     * @return 是否需要在本服处理
+     */
+    private boolean acceptRoutable(PeerConnection sender, NetworkMessage message) {
+        if (!router.accept(message) || !acquireChat(message)) {
+            return false;
+        }
+        if (MessageRouter.hasId(message) && transport != null) {
+            router.relay(transport, sender, message, getActiveConnections(),
+                connection -> message.getType() != NetworkMessage.Type.CHAT_MESSAGE
+                    || isInterested(connection, message.getRoomName()));
+        }
+        return true;
+    }
+    
+    /**
+     * 每个来源服务器一个令牌桶，超出预算的聊天消息在转发、格式化和记录之前丢弃；其他消息不限流
+     */
+    private boolean acquireChat(NetworkMessage message) {
+        if (message.getType() != NetworkMessage.Type.CHAT_MESSAGE) {
+            return true;
+        }
+        String origin = message.getServerId() != null ? message.getServerId() : "";
+        if (!serverLimiter.tryAcquire(origin, plugin.getConfigManager().getSettings().getServerRateLimit())) {
+            plugin.debug(() -> "来自服务器 " + origin + " 的聊天消息超出限流，已丢弃");
+            return false;
+        }
+        return true;
+    }
+    
     /**
      * 处理聊天消息
      */
-    private void handleChatMessage(NetworkMessage message) {
-        String roomName = message.getRoomName();
-        ChatRoom room = plugin.getChatRoomManager().getRoom(roomName);
+    private void handleChatMessage(PeerConnection sender, NetworkMessage message) {
+        // 按来源服务器的限流已在去重时完成 (见 acceptRoutable)
+        String origin = message.getServerId() != null ? message.getServerId() : "";
         
-        if (room == null) {
+        // 按本服词表过滤，来源服务器可能使用不同的词表
+        String text = plugin.getFilterManager().apply(message.getMessage());
+        if (text == null) {
+            plugin.debug(() -> "来自服务器 " + origin + " 的聊天消息命中过滤词，已拦截");
             return;
         }
         
-        String formattedMessage = plugin.getConfigManager().formatCrossServerMessage(
-            message.getServerName(), roomName, message.getPlayerName(), message.getMessage());
+        // 按来源服务器的发言时间和估计的时钟偏差统计到达延迟，只按本服存在的聊天室分别记录
+        LatencyTracker tracker = plugin.getLatencyTracker();
+        ChatTrace trace = null;
+        if (tracker != null) {
+            String room = plugin.getChatRoomManager().getRoom(message.getRoomName()) != null ? message.getRoomName() : null;
+            trace = tracker.received(origin, room, message.getTimestamp(), getClockOffset(sender, origin));
+        }
         
-        // 发送给聊天室内的所有玩家
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            for (UUID memberId : room.getMembers()) {
-                Player member = Bukkit.getPlayer(memberId);
-                if (member != null && member.isOnline()) {
-                    member.sendMessage(formattedMessage);
+        // 投递到聊天事件循环，I/O 线程不参与格式化、记录和分发
+        String serverName = message.getServerName() != null ? message.getServerName() : origin;
+        plugin.getChatRoomManager().postChat(new ChatRecord(message.getTimestamp(), message.getRoomName(),
+            serverName, message.getPlayerName(), text, trace));
+    }
+    
+    /**
+     * 来源服务器与本服的时钟偏差，取与它直接相连的连接上的估计值；经转发到达且没有直接连接时返回 NaN
+     */
+    private double getClockOffset(PeerConnection sender, String origin) {
+        if (origin.equals(sender.getPeerServerId())) {
+            return sender.getHealth().getClockOffset();
+        }
+        for (PeerConnection connection : getAllConnections()) {
+            if (origin.equals(connection.getPeerServerId())) {
+                double offset = connection.getHealth().getClockOffset();
+                if (!Double.isNaN(offset)) {
+                    return offset;
                 }
             }
-        });
+        }
+        return Double.NaN;
     }
     
     /**
      * 处理心跳包
+     * 
+     * 回复带序号的探测，收到回复时更新往返时间和时钟偏差估计。旧版本服务器的心跳不带序号，
+     * 它们会回复收到的任何心跳，因此不再回复，避免双方无限往返。
      */
-    private void handleHeartbeat(NetworkMessage message, PrintWriter sender) {
-        // 回复心跳包
-        NetworkMessage response = NetworkMessage.createHeartbeat(serverId, serverName);
-        sender.println(response.toJson());
+    private void handleHeartbeat(NetworkMessage message, PeerConnection sender) {
+        if (message.isHeartbeatAck()) {
+            double rtt = sender.getHealth().onAck(message.getSequence());
+            if (rtt >= 0) {
+                plugin.debug(() -> String.format("%s 往返时间: %.2fms", sender.getPeerName(), rtt));
+                long remoteClock = message.getAckClock();
+                if (remoteClock > 0) {
+                    sender.getHealth().onClockSample(message.getTimestamp(), remoteClock, rtt);
+                }
+            }
+            return;
+        }
+        router.onHeartbeat(sender, message);
+        if (message.getSequence() != 0) {
+            sender.send(NetworkMessage.createHeartbeatAck(serverId, serverName, message));
+        }
     }
     
     /**
      * 处理服务器信息
      */
-    private void handleServerInfo(NetworkMessage message) {
-        plugin.debug("收到服务器信息: " + message.getServerId() + " - " + message.getServerName());
+    private void handleServerInfo(PeerConnection sender, NetworkMessage message) {
+        plugin.debug("收到服务器信息: " + message.getServerId() + " - " + message.getServerName()
+            + " (编码: " + (sender.isBinary() ? "binary" : "json") + ")");
+        
+        if (!peers.register(sender)) {
+            return;
+        }
+        
+        // 交换聊天室版本摘要，旧版本服务器不携带摘要
+        Map<String, Long> digest = HandshakeInfo.parse(message.getData()).getRoomDigest();
+        if (digest != null) {
+            replicator.onPeerDigest(sender, digest);
+        }
     }
     
     /**
@@ -250,115 +346,249 @@ public class NetworkManager {
             int port = connections.getInt(serverKey + ".port");
             String name = connections.getString(serverKey + ".name", serverKey);
             
-            threadPool.submit(() -> connectToServer(serverKey, host, port, name));
+            connectToServer(serverKey, host, port, name);
         }
     }
     
     /**
-     * 连接到指定服务器
+     * 连接到指定服务器，失败或断开后由 {@link ReconnectSupervisor} 按退避时间自动重连
      */
     private void connectToServer(String serverKey, String host, int port, String name) {
-        try {
-            Socket socket = new Socket(host, port);
-            serverConnections.put(serverKey, socket);
-            
-            // 启动消息处理线程
-            threadPool.submit(() -> handleServerConnection(serverKey, socket));
-            
-            plugin.getLogger().info("成功连接到服务器: " + name + " (" + host + ":" + port + ")");
-            
-            // 发送服务器信息
-            sendToServer(serverKey, NetworkMessage.createServerInfo(serverId, serverName, "连接建立"));
-            
-        } catch (IOException e) {
-            plugin.getLogger().warning("连接服务器失败: " + name + " (" + host + ":" + port + ") - " + e.getMessage());
-        }
+        serverNames.put(serverKey, name);
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(transport, serverKey, host, port, reconnectSettings);
+        peers.addSupervisor(supervisor);
+        supervisor.start();
     }
     
     /**
-     * 处理服务器连接
+     * 发送消息到指定服务器
      */
-    private void handleServerConnection(String serverKey, Socket socket) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)) {
-            
-            String line;
-            while (running && (line = reader.readLine()) != null) {
-                handleMessage(line, writer);
-            }
-            
-        } catch (IOException e) {
-            plugin.debug("服务器连接断开: " + serverKey);
-        } finally {
-            serverConnections.remove(serverKey);
-            try {
-                socket.close();
-            } catch (IOException e) {
-                // 忽略关闭错误
-            }
+    public void sendToServer(String serverKey, NetworkMessage message) {
+        if (transport != null) {
+            sendToServer(serverKey, transport.serialize(message));
         }
     }
     
     /**
-     * 发送消息到指定服务器
+     * 发送已序列化的消息帧到指定服务器
      */
-    public void sendToServer(String serverKey, NetworkMessage message) {
-        Socket connection = serverConnections.get(serverKey);
-        if (connection != null && !connection.isClosed()) {
-            try {
-                PrintWriter writer = new PrintWriter(connection.getOutputStream(), true);
-                writer.println(message.toJson());
-                plugin.debug("发送消息到服务器 " + serverKey + ": " + message.toString());
-            } catch (IOException e) {
-                plugin.debug("发送消息到服务器失败: " + serverKey + " - " + e.getMessage());
-            }
+    private void sendToServer(String serverKey, SerializedFrame frame) {
+        PeerConnection connection = serverConnections.get(serverKey);
+        if (connection != null && connection.isConnected()) {
+            connection.send(frame);
+            plugin.debug(() -> "发送消息到服务器 " + serverKey + ": " + frame.getMessage().toString());
         }
     }
     
     /**
-     * 广播消息到所有连接的服务器
+     * 广播聊天消息到在该聊天室有成员的服务器
+     * 
+     * 消息只序列化一次，所有连接共享同一份编码结果。对端声明了兴趣集合时，
+     * 跳过该聊天室没有成员的服务器，并统计因此节省的字节数 (只统计已经生成的编码，是下限)。
      */
     public void broadcastMessage(String roomName, String playerName, String message) {
+        broadcastMessage(roomName, playerName, message, System.currentTimeMillis());
+    }
+    
+    /**
+     * 广播聊天消息，消息时间戳为玩家发言的时间
+     */
+    public void broadcastMessage(String roomName, String playerName, String message, long timestamp) {
         NetworkMessage networkMessage = NetworkMessage.createChatMessage(serverId, serverName, roomName, playerName, message);
-        String jsonMessage = networkMessage.toJson();
+        networkMessage.setTimestamp(timestamp);
+        if (transport == null) {
+            return;
+        }
+        router.stamp(networkMessage);
+        SerializedFrame frame = transport.serialize(networkMessage);
         
-        // 发送给所有连接的客户端
-        synchronized (connectedClients) {
-            for (Socket client : connectedClients) {
-                try {
-                    PrintWriter writer = new PrintWriter(client.getOutputStream(), true);
-                    writer.println(jsonMessage);
-                } catch (IOException e) {
-                    plugin.debug("发送消息给客户端失败: " + e.getMessage());
+        List<PeerConnection> filtered = null;
+        for (PeerConnection connection : getActiveConnections()) {
+            if (isInterested(connection, roomName)) {
+                send(connection, frame);
+            } else {
+                interestFiltered.incrementAndGet();
+                if (filtered == null) {
+                    filtered = new ArrayList<>();
                 }
+                filtered.add(connection);
             }
         }
-        
-        // 发送给所有连接的服务器
-        for (String serverKey : serverConnections.keySet()) {
-            sendToServer(serverKey, networkMessage);
+        // 只按发送给其他连接时已生成的编码统计节省的字节数，没有连接使用该编码时不计入
+        if (filtered != null) {
+            for (PeerConnection connection : filtered) {
+                int size = connection.getEncodedSize(frame);
+                if (size > 0) {
+                    interestBytesSaved.addAndGet(size);
+                }
+            }
         }
+        // 断开的出站连接由重连监督缓冲，对端的兴趣集合未知
+        bufferForDisconnected(frame);
         
-        plugin.debug("广播消息: " + networkMessage.toString());
+        plugin.debug(() -> "广播消息: " + networkMessage.toString());
+    }
+    
+    /**
+     * 对端是否需要某个聊天室的消息，不支持兴趣集合的旧版本服务器总是需要
+     * 
+     * 对端会转发消息时，只要有不直接相连的服务器在该聊天室有成员，也需要发送给它。
+     */
+    private boolean isInterested(PeerConnection connection, String roomName) {
+        if (!connection.hasPeerFeature(HandshakeInfo.FEATURE_INTEREST)) {
+            return true;
+        }
+        if (replicator.isInterested(connection.getPeerServerId(), roomName)) {
+            return true;
+        }
+        return relayEnabled && connection.hasPeerFeature(HandshakeInfo.FEATURE_RELAY)
+            && replicator.hasIndirectInterest(roomName, this::hasConnectionTo);
+    }
+    
+    /**
+     * 广播任意消息到所有连接的服务器
+     */
+    void broadcast(NetworkMessage message) {
+        if (transport != null) {
+            broadcast(transport.serialize(router.stamp(message)));
+        }
+    }
+    
+    /**
+     * 发送带消息ID的消息到指定连接，对端会继续转发
+     */
+    void send(PeerConnection connection, NetworkMessage message) {
+        if (connection.isConnected()) {
+            connection.send(router.stamp(message));
+        }
+    }
+    
+    /**
+     * 发送已序列化的消息帧到所有入站连接和配置的服务器，断开的出站连接缓冲到重连后发出
+     */
+    private void broadcast(SerializedFrame frame) {
+        for (PeerConnection connection : getActiveConnections()) {
+            send(connection, frame);
+        }
+        bufferForDisconnected(frame);
+    }
+    
+    /**
+     * 把消息帧交给尚未连接 (或正在重连) 的出站服务器缓冲，已经通过其他连接相连的服务器不缓冲
+     */
+    private void bufferForDisconnected(SerializedFrame frame) {
+        for (ReconnectSupervisor supervisor : peers.getSupervisors()) {
+            if (supervisor.getConnection() == null && !peers.isConnected(supervisor.getPeerServerId())) {
+                supervisor.send(frame);
+            }
+        }
+    }
+    
+    /**
+     * 发送已序列化的消息帧到指定连接
+     */
+    private void send(PeerConnection connection, SerializedFrame frame) {
+        if (connection.isConnected()) {
+            connection.send(frame);
+        }
     }
     
     /**
      * 启动心跳任务
+     * 
+     * 每个周期向所有入站和出站连接发送带序号的探测。连续 max-missed 个周期没有收到
+     * 任何消息的连接视为失联 (例如半开的 TCP 连接) 并断开，出站连接随后由重连监督重新连接。
      */
     private void startHeartbeatTask() {
+        long ticks = heartbeatIntervalSeconds * 20L;
         Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
             if (!running) {
                 return;
             }
             
-            NetworkMessage heartbeat = NetworkMessage.createHeartbeat(serverId, serverName);
-            
-            // 发送心跳到所有连接的服务器
-            for (String serverKey : serverConnections.keySet()) {
-                sendToServer(serverKey, heartbeat);
+            // 探测同时公布本服直接相连的服务器，对端不再向它们转发本服已直接发送的消息
+            String neighbours = router.describeNeighbours(getActiveConnections());
+            for (PeerConnection connection : getAllConnections()) {
+                if (!connection.isConnected()) {
+                    continue;
+                }
+                PeerHealth health = connection.getHealth();
+                int missed = health.tick();
+                if (missed >= heartbeatMaxMissed) {
+                    plugin.getLogger().warning("服务器 " + connection.getPeerName() + " 已有 " + missed
+                        + " 个心跳周期没有响应，断开连接");
+                    connection.disconnect();
+                    continue;
+                }
+                NetworkMessage probe = NetworkMessage.createHeartbeatProbe(serverId, serverName, health.nextProbe());
+                probe.setData(neighbours);
+                connection.send(probe);
             }
             
-        }, 20L * 30, 20L * 30); // 每30秒发送一次心跳
+        }, ticks, ticks);
+    }
+    
+    /**
+     * 连接断开后立即公布直接相连的服务器，对端不必等到下一次心跳才恢复转发
+     */
+    private void announceNeighbours() {
+        if (!running) {
+            return;
+        }
+        List<PeerConnection> connections = getActiveConnections();
+        NetworkMessage update = NetworkMessage.createHeartbeat(serverId, serverName);
+        update.setData(router.describeNeighbours(connections));
+        SerializedFrame frame = transport.serialize(update);
+        for (PeerConnection connection : connections) {
+            connection.send(frame);
+        }
+    }
+    
+    /**
+     * 启动聊天室复制任务，合并后的变更和成员数量按固定间隔发出
+     */
+    private void startReplicationTask() {
+        long ticks = Math.max(1L, replicationFlushMillis / 50);
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            if (running) {
+                replicator.flush();
+            }
+        }, ticks, ticks);
+    }
+    
+    /**
+     * 在异步任务中提前发送一次聊天室复制，不等待下一个合并间隔
+     */
+    void scheduleReplicationFlush() {
+        if (running) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, replicator::flush);
+        }
+    }
+    
+    /**
+     * 获取聊天室复制
+     */
+    RoomReplicator getReplicator() {
+        return replicator;
+    }
+    
+    /**
+     * 获取本服务器名称
+     */
+    public String getServerName() {
+        return serverName;
+    }
+    
+    /**
+     * 是否还有到指定服务器的连接
+     */
+    private boolean hasConnectionTo(String peerServerId) {
+        for (PeerConnection connection : getAllConnections()) {
+            if (peerServerId != null && peerServerId.equals(connection.getPeerServerId())) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
@@ -373,6 +603,146 @@ public class NetworkManager {
         status.put("connectedClients", connectedClients.size());
         status.put("serverConnections", serverConnections.size());
         status.put("connectionsList", new ArrayList<>(serverConnections.keySet()));
+        
+        // 每个服务器选定的连接方向，以及因重复而关闭的连接数
+        status.put("peers", peers.getLinks());
+        status.put("duplicateLinksClosed", peers.getDuplicatesClosed());
+        
+        // 每个配置的服务器的连接状态、重连次数、缓冲消息数和最近的状态变化
+        Map<String, Map<String, Object>> peerStates = new TreeMap<>();
+        for (ReconnectSupervisor supervisor : peers.getSupervisors()) {
+            peerStates.put(supervisor.getServerKey(), supervisor.getStatus());
+        }
+        status.put("peerStates", peerStates);
+        status.put("ioThreads", transport != null ? transport.getIoThreadCount() : 0);
+        
+        // 每个对端的发送队列深度和丢弃数
+        Map<String, Integer> queueDepths = new TreeMap<>();
+        Map<String, Map<String, Object>> compressionStats = new TreeMap<>();
+        Map<String, Map<String, Object>> peerHealth = new TreeMap<>();
+        long dropped = 0;
+        for (PeerConnection connection : getAllConnections()) {
+            queueDepths.put(connection.getPeerName(), connection.getQueueDepth());
+            dropped += connection.getOutboundQueue().getDropped();
+            peerHealth.put(connection.getPeerName(), connection.getHealth().getStatus());
+            
+            // 每个对端的压缩比和压缩/解压耗时
+            if (connection.isCompressed() || connection.getCompressionNanos() > 0) {
+                Map<String, Object> stats = new HashMap<>();
+                stats.put("ratio", connection.getCompressionRatio());
+                stats.put("cpuMillis", connection.getCompressionNanos() / 1_000_000.0);
+                compressionStats.put(connection.getPeerName(), stats);
+            }
+        }
+        status.put("queueDepths", queueDepths);
+        status.put("droppedMessages", dropped);
+        status.put("compression", compressionStats);
+        
+        // 每个对端的平滑往返时间、抖动、丢包率和连续无响应的心跳周期数
+        status.put("peerHealth", peerHealth);
+        
+        // 编码次数 / 消息帧数，广播时每帧每种编码只编码一次
+        status.put("framesSerialized", transport != null ? transport.getFramesCreated() : 0L);
+        status.put("frameEncodes", transport != null ? transport.getEncodeCount() : 0L);
+        
+        // 写操作次数 / 写出的消息数，批处理生效时每次写操作包含多条消息
+        status.put("writeCalls", transport != null ? transport.getWriteCalls() : 0L);
+        status.put("messagesWritten", transport != null ? transport.getMessagesWritten() : 0L);
+        status.put("batchesWritten", transport != null ? transport.getBatchesWritten() : 0L);
+        
+        // 因对端没有该聊天室成员而跳过的消息数和字节数
+        status.put("interestFiltered", interestFiltered.get());
+        status.put("interestBytesSaved", interestBytesSaved.get());
+        
+        // 转发给其他服务器的消息数，以及经多条路径到达而被丢弃的重复消息数
+        status.put("relayedMessages", router.getRelayedMessages());
+        status.put("duplicatesDropped", router.getDuplicatesDropped());
+        
+        // 因来源服务器超出限流而丢弃的跨服聊天消息数
+        status.put("serverRateLimited", serverLimiter.getRejected());
         return status;
     }
+    
+    /**
+     * 获取每个服务器唯一的一条连接，以及尚未完成握手的连接
+     */
+    private List<PeerConnection> getActiveConnections() {
+        return peers.active(getAllConnections());
+    }
+    
+    /**
+     * 获取所有入站和出站连接
+     */
+    private List<PeerConnection> getAllConnections() {
+        List<PeerConnection> connections = new ArrayList<>(connectedClients);
+        connections.addAll(serverConnections.values());
+        return connections;
+    }
+    
+    /**
+     * 传输层事件处理 (在 I/O 线程上执行)
+     */
+    private class Listener implements TransportListener {
+        
+        @Override
+        public void onConnected(PeerConnection connection) {
+            if (connection.getDirection() == PeerConnection.Direction.INBOUND) {
+                connectedClients.add(connection);
+                plugin.debug("新的客户端连接: " + connection.getRemoteAddress());
+                return;
+            }
+            
+            // 先交给重连监督发出缓冲的消息，再加入广播的连接列表：在此之前的广播经监督缓冲或转发，
+            // 之后的广播直接发送且不再缓冲，同一帧不会既直接发送又在缓冲中重发
+            String serverKey = connection.getServerKey();
+            ReconnectSupervisor supervisor = peers.getSupervisor(serverKey);
+            if (supervisor != null) {
+                supervisor.onConnected(connection);
+            }
+            serverConnections.put(serverKey, connection);
+            plugin.getLogger().info("成功连接到服务器: " + serverNames.getOrDefault(serverKey, serverKey)
+                + " (" + connection.getRemoteAddress() + ")");
+        }
+        
+        @Override
+        public void onConnectFailed(String serverKey, String address, IOException cause) {
+            ReconnectSupervisor supervisor = peers.getSupervisor(serverKey);
+            long delay = supervisor != null ? supervisor.onConnectFailed() : -1;
+            String text = "连接服务器失败: " + serverNames.getOrDefault(serverKey, serverKey)
+                + " (" + address + ") - " + cause.getMessage()
+                + (delay >= 0 ? "，" + delay + " 毫秒后重试" : "");
+            // 持续失败时只在调试模式下输出，避免刷屏
+            if (supervisor == null || supervisor.getAttempts() == 1) {
+                plugin.getLogger().warning(text);
+            } else {
+                plugin.debug(text);
+            }
+        }
+        
+        @Override
+        public void onMessage(PeerConnection connection, NetworkMessage message) {
+            handleMessage(connection, message);
+        }
+        
+        @Override
+        public void onDisconnected(PeerConnection connection) {
+            if (connection.getDirection() == PeerConnection.Direction.INBOUND) {
+                connectedClients.remove(connection);
+                plugin.debug("客户端连接断开: " + connection.getRemoteAddress());
+            } else {
+                serverConnections.remove(connection.getServerKey(), connection);
+                ReconnectSupervisor supervisor = peers.getSupervisor(connection.getServerKey());
+                long delay = supervisor != null ? supervisor.onDisconnected(connection) : -1;
+                if (delay >= 0) {
+                    plugin.getLogger().warning("与服务器 " + serverNames.getOrDefault(connection.getServerKey(),
+                        connection.getServerKey()) + " 的连接断开，" + delay + " 毫秒后重连");
+                } else {
+                    plugin.debug("服务器连接断开: " + connection.getServerKey());
+                }
+            }
+            peers.unregister(connection);
+            replicator.onPeerDisconnected(connection, hasConnectionTo(connection.getPeerServerId()));
+            announceNeighbours();
+        }
+    }
 }
\ No newline at end of file
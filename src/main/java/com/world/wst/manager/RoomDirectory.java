@@ -0,0 +1,441 @@
+package com.world.wst.manager;
+
+import com.world.wst.data.ChatRoom;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 聊天室状态核心：聊天室、玩家所在聊天室和每个玩家创建的聊天室数量
+ * 
+ * 三份状态共同构成一个逻辑状态，创建、删除、加入和离开都是原子的：
+ * 每个操作按键 (聊天室名称、玩家UUID) 取分段锁，同时涉及多个键时按分段序号从小到大加锁，不会死锁。
+ * 不同聊天室、不同玩家的操作落在不同分段上并行执行，不会被一把全局锁串行化。
+ * 读取 (查找聊天室、玩家所在聊天室) 不加锁。
+ * 
+ * 聊天室总数和每个玩家的聊天室数量通过 CAS 和 {@link ConcurrentHashMap#compute} 预留，检查和计数不可分割。
+ * 状态变化通过 {@link Changes} 在持有锁时通知，同一聊天室、同一玩家的变化按发生顺序写出。
+ * 
+ * @author World Studio
+ */
+public class RoomDirectory {
+    
+    private static final int STRIPES = 64;
+    
+    /**
+     * 状态变化通知，在持有相关分段锁时调用，不应执行耗时操作
+     */
+    public interface Changes {
+        
+        void roomCreated(ChatRoom room);
+        
+        void roomDeleted(ChatRoom room);
+        
+        void ownerChanged(ChatRoom room);
+        
+        void playerJoined(UUID playerId, String roomName);
+        
+        void playerLeft(UUID playerId);
+        
+        void memberCountChanged(String roomName);
+    }
+    
+    private final Changes changes;
+    private final Map<String, ChatRoom> chatRooms;
+    private final Map<UUID, String> playerRooms; // 玩家当前所在聊天室
+    private final Map<String, Integer> playerRoomCount; // 玩家创建的聊天室数量
+    private final AtomicInteger roomCount; // 已预留的聊天室数量，包括正在创建的聊天室
+    private final ReentrantLock[] stripes;
+    
+    public RoomDirectory(Changes changes) {
+        this.changes = changes;
+        this.chatRooms = new ConcurrentHashMap<>();
+        this.playerRooms = new ConcurrentHashMap<>();
+        this.playerRoomCount = new ConcurrentHashMap<>();
+        this.roomCount = new AtomicInteger();
+        this.stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * 创建聊天室
+     * 
+     * @param room 新聊天室
+     * @param maxRooms 聊天室总数上限
+     * @param maxRoomsPerPlayer 每个玩家创建的聊天室上限，默认聊天室不计入
+     * @return 是否创建成功
+     */
+    public boolean create(ChatRoom room, int maxRooms, int maxRoomsPerPlayer) {
+        int[] locked = lock(room.getName());
+        try {
+            if (chatRooms.containsKey(room.getName()) || !reserveRoom(maxRooms)) {
+                return false;
+            }
+            if (!room.isDefault() && !reserveOwner(room.getOwner(), maxRoomsPerPlayer)) {
+                roomCount.decrementAndGet();
+                return false;
+            }
+            chatRooms.put(room.getName(), room);
+            changes.roomCreated(room);
+            return true;
+        } finally {
+            unlock(locked);
+        }
+    }
+    
+    private boolean reserveRoom(int maxRooms) {
+        while (true) {
+            int current = roomCount.get();
+            if (current >= maxRooms) {
+                return false;
+            }
+            if (roomCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    private boolean reserveOwner(String owner, int maxRoomsPerPlayer) {
+        boolean[] reserved = new boolean[1];
+        playerRoomCount.compute(owner, (key, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= maxRoomsPerPlayer) {
+                return count;
+            }
+            reserved[0] = true;
+            return current + 1;
+        });
+        return reserved[0];
+    }
+    
+    private void releaseOwner(String owner) {
+        playerRoomCount.computeIfPresent(owner, (key, count) -> count > 1 ? count - 1 : null);
+    }
+    
+    /**
+     * 更改聊天室的创建者，不检查新创建者的聊天室上限
+     * 
+     * 用于其他服务器同时创建了同名聊天室、对方的版本较新的情况，所有服务器最终采用同一个创建者。
+     * 
+     * @return 是否更改，聊天室不存在、是默认聊天室或创建者相同时返回 false
+     */
+    public boolean changeOwner(String roomName, String owner) {
+        int[] locked = lock(roomName);
+        try {
+            ChatRoom room = chatRooms.get(roomName);
+            if (room == null || room.isDefault() || room.getOwner().equals(owner)) {
+                return false;
+            }
+            releaseOwner(room.getOwner());
+            playerRoomCount.merge(owner, 1, Integer::sum);
+            room.setOwner(owner);
+            changes.ownerChanged(room);
+            return true;
+        } finally {
+            unlock(locked);
+        }
+    }
+    
+    /**
+     * 持有聊天室和默认聊天室所在的分段锁执行操作
+     * 
+     * 分段锁可重入，操作内可以调用本目录的其他方法；与本服的创建和删除使用同一把锁，
+     * 复制来的变更在锁内比较版本并应用，不会与同名聊天室的其他变更交错。
+     */
+    public void withRoomLock(String roomName, String defaultRoomName, Runnable action) {
+        int[] locked = lock(roomName, defaultRoomName);
+        try {
+            action.run();
+        } finally {
+            unlock(locked);
+        }
+    }
+    
+    /**
+     * 删除聊天室，在线成员移到默认聊天室，离线成员的所在聊天室记录被清除；默认聊天室不能删除
+     * 
+     * 所在聊天室记录的变化都持有原聊天室或新聊天室的分段锁，持有被删除聊天室的分段锁时，
+     * 指向它的记录不会再增减，遍历一次即可全部清除。
+     * 
+     * @param roomName 聊天室名称
+     * @param defaultRoomName 默认聊天室名称
+     * @return 被删除的聊天室，不存在或是默认聊天室时返回 null
+     */
+    public ChatRoom delete(String roomName, String defaultRoomName) {
+        int[] locked = lock(roomName, defaultRoomName);
+        try {
+            ChatRoom room = chatRooms.get(roomName);
+            if (room == null || room.isDefault() || roomName.equals(defaultRoomName)) {
+                return null;
+            }
+            
+            // 先移除聊天室，之后的加入都会失败；成员所在聊天室的变化由聊天室的分段锁保护
+            chatRooms.remove(roomName);
+            ChatRoom defaultRoom = chatRooms.get(defaultRoomName);
+            for (Player member : room.getOnlineMembers()) {
+                UUID playerId = member.getUniqueId();
+                room.removeMember(playerId);
+                if (defaultRoom != null && defaultRoom.addMember(member)) {
+                    playerRooms.put(playerId, defaultRoomName);
+                    changes.playerJoined(playerId, defaultRoomName);
+                } else {
+                    playerRooms.remove(playerId);
+                    changes.playerLeft(playerId);
+                }
+            }
+            for (Map.Entry<UUID, String> entry : playerRooms.entrySet()) {
+                if (roomName.equals(entry.getValue()) && playerRooms.remove(entry.getKey(), roomName)) {
+                    changes.playerLeft(entry.getKey());
+                }
+            }
+            releaseOwner(room.getOwner());
+            roomCount.decrementAndGet();
+            changes.roomDeleted(room);
+            changes.memberCountChanged(defaultRoomName);
+            return room;
+        } finally {
+            unlock(locked);
+        }
+    }
+    
+    /**
+     * 玩家加入聊天室，离开当前聊天室和加入新聊天室一起完成；聊天室已满时留在原聊天室
+     * 
+     * @return 是否加入成功
+     */
+    public boolean join(Player player, String roomName) {
+        UUID playerId = player.getUniqueId();
+        while (true) {
+            String currentRoom = playerRooms.get(playerId);
+            int[] locked = lock(playerId, currentRoom, roomName);
+            try {
+                if (!Objects.equals(playerRooms.get(playerId), currentRoom)) {
+                    continue; // 加锁前所在聊天室已变化，按新的聊天室重新加锁
+                }
+                ChatRoom room = chatRooms.get(roomName);
+                if (room == null || roomName.equals(currentRoom) || !room.addMember(player)) {
+                    return false;
+                }
+                if (currentRoom != null) {
+                    ChatRoom previous = chatRooms.get(currentRoom);
+                    if (previous != null && previous.removeMember(playerId)) {
+                        changes.memberCountChanged(currentRoom);
+                    }
+                }
+                playerRooms.put(playerId, roomName);
+                changes.playerJoined(playerId, roomName);
+                changes.memberCountChanged(roomName);
+                return true;
+            } finally {
+                unlock(locked);
+            }
+        }
+    }
+    
+    /**
+     * 玩家离开当前聊天室
+     * 
+     * @return 离开的聊天室名称，不在任何聊天室时返回 null
+     */
+    public String leave(Player player) {
+        UUID playerId = player.getUniqueId();
+        while (true) {
+            String currentRoom = playerRooms.get(playerId);
+            if (currentRoom == null) {
+                return null;
+            }
+            int[] locked = lock(playerId, currentRoom);
+            try {
+                if (!currentRoom.equals(playerRooms.get(playerId))) {
+                    continue;
+                }
+                ChatRoom room = chatRooms.get(currentRoom);
+                if (room != null) {
+                    room.removeMember(playerId);
+                }
+                playerRooms.remove(playerId);
+                changes.playerLeft(playerId);
+                changes.memberCountChanged(currentRoom);
+                return currentRoom;
+            } finally {
+                unlock(locked);
+            }
+        }
+    }
+    
+    /**
+     * 玩家上线：回到记录中的聊天室
+     * 
+     * @return 是否回到了原聊天室；没有记录、聊天室已删除或已满时返回 false
+     */
+    public boolean rejoin(Player player) {
+        UUID playerId = player.getUniqueId();
+        while (true) {
+            String currentRoom = playerRooms.get(playerId);
+            if (currentRoom == null) {
+                return false;
+            }
+            int[] locked = lock(playerId, currentRoom);
+            try {
+                if (!currentRoom.equals(playerRooms.get(playerId))) {
+                    continue;
+                }
+                ChatRoom room = chatRooms.get(currentRoom);
+                if (room == null || !room.addMember(player)) {
+                    return false;
+                }
+                changes.memberCountChanged(currentRoom);
+                return true;
+            } finally {
+                unlock(locked);
+            }
+        }
+    }
+    
+    /**
+     * 玩家下线：移出在线成员，保留所在聊天室以便下次上线时恢复
+     */
+    public void disconnect(Player player) {
+        UUID playerId = player.getUniqueId();
+        while (true) {
+            String currentRoom = playerRooms.get(playerId);
+            if (currentRoom == null) {
+                return;
+            }
+            int[] locked = lock(playerId, currentRoom);
+            try {
+                if (!currentRoom.equals(playerRooms.get(playerId))) {
+                    continue;
+                }
+                ChatRoom room = chatRooms.get(currentRoom);
+                if (room != null && room.removeMember(playerId)) {
+                    changes.memberCountChanged(currentRoom);
+                }
+                return;
+            } finally {
+                unlock(locked);
+            }
+        }
+    }
+    
+    /**
+     * 恢复已保存的玩家所在聊天室，聊天室不存在时忽略 (只在启动时调用，不通知变化)
+     */
+    public void restoreMembership(UUID playerId, String roomName) {
+        if (chatRooms.containsKey(roomName)) {
+            playerRooms.put(playerId, roomName);
+        }
+    }
+    
+    /**
+     * 获取聊天室
+     */
+    public ChatRoom getRoom(String roomName) {
+        return chatRooms.get(roomName);
+    }
+    
+    /**
+     * 获取玩家当前所在聊天室
+     */
+    public String getPlayerRoom(UUID playerId) {
+        return playerRooms.get(playerId);
+    }
+    
+    /**
+     * 获取所有聊天室 (视图)
+     */
+    public Collection<ChatRoom> getRooms() {
+        return chatRooms.values();
+    }
+    
+    /**
+     * 聊天室数量
+     */
+    public int getRoomCount() {
+        return chatRooms.size();
+    }
+    
+    /**
+     * 有所在聊天室记录的玩家数量
+     */
+    public int getPlayerCount() {
+        return playerRooms.size();
+    }
+    
+    /**
+     * 获取玩家创建的聊天室数量
+     */
+    public int getOwnedRoomCount(String owner) {
+        return playerRoomCount.getOrDefault(owner, 0);
+    }
+    
+    /**
+     * 清空所有状态
+     */
+    public void clear() {
+        int[] locked = lockAll();
+        try {
+            chatRooms.clear();
+            playerRooms.clear();
+            playerRoomCount.clear();
+            roomCount.set(0);
+        } finally {
+            unlock(locked);
+        }
+    }
+    
+    /**
+     * 按分段序号从小到大锁住各个键所在的分段，null 键被忽略
+     */
+    private int[] lock(Object... keys) {
+        int[] indexes = new int[keys.length];
+        int count = 0;
+        for (Object key : keys) {
+            if (key != null) {
+                indexes[count++] = stripe(key);
+            }
+        }
+        Arrays.sort(indexes, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || indexes[unique - 1] != indexes[i]) {
+                indexes[unique++] = indexes[i];
+            }
+        }
+        int[] locked = Arrays.copyOf(indexes, unique);
+        for (int index : locked) {
+            stripes[index].lock();
+        }
+        return locked;
+    }
+    
+    private int[] lockAll() {
+        int[] locked = new int[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locked[i] = i;
+            stripes[i].lock();
+        }
+        return locked;
+    }
+    
+    private void unlock(int[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--) {
+            stripes[locked[i]].unlock();
+        }
+    }
+    
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return (hash * 0x9E3779B9 >>> 26) & (STRIPES - 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,471 @@
+package com.world.wst.manager;
+
+import com.world.wst.WorldStudioTalk;
+import com.world.wst.data.ChatRoom;
+import com.world.wst.network.NetworkMessage;
+import com.world.wst.network.PeerConnection;
+import com.world.wst.network.ReplicationData;
+import com.world.wst.network.ReplicationData.RoomDelta;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 聊天室复制
+ * 
+ * 每个聊天室带有 (版本, 来源服务器) 版本号，本服创建或删除聊天室时版本号取逻辑时钟的下一个值，
+ * 收到更新的版本时覆盖本地状态，旧版本和重复的变更被忽略。删除以删除标记的形式保留一段时间，
+ * 避免重连时被旧版本恢复。逻辑时钟不小于当前时间 (毫秒)，重启后分配的版本仍大于重启前的版本。
+ * 
+ * 变更和本服成员数量只标记为待发送，由定时任务合并后每种类型最多发出一条消息，
+ * 流量与聊天消息数量无关。连接建立时双方在握手中交换版本摘要，只补发对方缺少或不同的聊天室。
+ * 
+ * 各服务器的成员数量同时是它的兴趣集合：聊天消息只发送给在该聊天室有成员的服务器。
+ * 本服聊天室从无人变为有人时提前发送一次 (在异步任务中，不在调用方持有的聊天室锁内编码)，
+ * 避免新成员错过合并间隔内的消息。
+ * 
+ * 复制消息带有消息ID，经中间服务器转发到不直接相连的服务器，成员数量按来源服务器记录。
+ * 每个服务器定期重发全部成员数量，一段时间没有收到来源服务器更新的成员数量过期清除，
+ * 不再有路径到达的服务器 (例如经转发或握手转交得知的服务器) 不会一直保留。
+ * 
+ * @author World Studio
+ */
+public class RoomReplicator {
+    
+    private static final long TOMBSTONE_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final long COUNT_REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long COUNT_TTL_MILLIS = COUNT_REFRESH_MILLIS * 3;
+    
+    private final WorldStudioTalk plugin;
+    private final NetworkManager networkManager;
+    private final String serverId;
+    private final AtomicLong clock;
+    private final Map<String, RoomDelta> versions; // 每个聊天室的最新版本，包括删除标记
+    private final Map<String, Long> tombstoneTimes;
+    private final Set<String> dirtyRooms;
+    private final Set<String> dirtyCounts;
+    private final Set<String> advertised;
+    private final Map<String, Map<String, Integer>> remoteCounts; // 服务器ID -> 聊天室 -> 成员数量
+    private final Map<String, Long> countTimes; // 服务器ID -> 最后一次收到该服务器更新的时间
+    private final Set<PeerConnection> synced;
+    private final AtomicBoolean flushScheduled;
+    private final Object flushLock;
+    private long lastRefresh; // 只在 flushLock 内访问
+    
+    public RoomReplicator(WorldStudioTalk plugin, NetworkManager networkManager, String serverId) {
+        this.plugin = plugin;
+        this.networkManager = networkManager;
+        this.serverId = serverId;
+        this.clock = new AtomicLong();
+        this.versions = new ConcurrentHashMap<>();
+        this.tombstoneTimes = new ConcurrentHashMap<>();
+        this.dirtyRooms = ConcurrentHashMap.newKeySet();
+        this.dirtyCounts = ConcurrentHashMap.newKeySet();
+        this.advertised = ConcurrentHashMap.newKeySet();
+        this.remoteCounts = new ConcurrentHashMap<>();
+        this.countTimes = new ConcurrentHashMap<>();
+        this.synced = ConcurrentHashMap.newKeySet();
+        this.flushScheduled = new AtomicBoolean();
+        this.flushLock = new Object();
+    }
+    
+    /**
+     * 登记已有的聊天室 (例如重启后恢复的聊天室)，版本为聊天室的创建时间
+     * 
+     * 本服离线期间其他服务器删除或重新创建该聊天室时，对方的版本更新，会覆盖恢复的状态。
+     */
+    public void registerExistingRooms() {
+        for (ChatRoom room : plugin.getChatRoomManager().getAllRooms()) {
+            if (!room.isDefault()) {
+                long version = room.getCreatedTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                clock.accumulateAndGet(version, Math::max);
+                versions.putIfAbsent(room.getName(), new RoomDelta(room.getName(), room.getOwner(), serverId, version, false));
+            }
+            dirtyCounts.add(room.getName());
+        }
+    }
+    
+    /**
+     * 本服创建了聊天室，在聊天室的分段锁内调用
+     * 
+     * 已有未删除的版本时 (应用复制来的创建) 不分配新版本。
+     */
+    public synchronized void roomCreated(String roomName, String owner) {
+        RoomDelta current = versions.get(roomName);
+        if (current != null && !current.isDeleted()) {
+            return;
+        }
+        versions.put(roomName, new RoomDelta(roomName, owner, serverId, nextVersion(), false));
+        tombstoneTimes.remove(roomName);
+        dirtyRooms.add(roomName);
+    }
+    
+    /**
+     * 本服删除了聊天室，在聊天室的分段锁内调用
+     * 
+     * 已是删除标记时 (应用复制来的删除) 不分配新版本。
+     */
+    public synchronized void roomDeleted(String roomName, String owner) {
+        RoomDelta current = versions.get(roomName);
+        if (current != null && current.isDeleted()) {
+            return;
+        }
+        versions.put(roomName, new RoomDelta(roomName, owner, serverId, nextVersion(), true));
+        tombstoneTimes.put(roomName, System.currentTimeMillis());
+        dirtyRooms.add(roomName);
+    }
+    
+    /**
+     * 逻辑时钟的下一个值，不小于当前时间 (毫秒)
+     */
+    private long nextVersion() {
+        long now = System.currentTimeMillis();
+        return clock.updateAndGet(current -> Math.max(current + 1, now));
+    }
+    
+    /**
+     * 本服聊天室的成员数量发生变化，聊天室从无人变为有人时安排提前发送
+     * 
+     * 在聊天室锁内调用，只做标记，发送由异步任务完成。
+     */
+    public void memberCountChanged(String roomName) {
+        dirtyCounts.add(roomName);
+        ChatRoom room = plugin.getChatRoomManager().getRoom(roomName);
+        if (room != null && room.getMemberCount() > 0 && !advertised.contains(roomName)
+                && flushScheduled.compareAndSet(false, true)) {
+            networkManager.scheduleReplicationFlush();
+        }
+    }
+    
+    /**
+     * 对端服务器是否需要某个聊天室的消息
+     * 
+     * 尚未收到对端成员数量时视为需要，避免在同步完成前丢失消息。
+     */
+    public boolean isInterested(String peerServerId, String roomName) {
+        Map<String, Integer> counts = peerServerId != null ? remoteCounts.get(peerServerId) : null;
+        return counts == null || counts.containsKey(roomName);
+    }
+    
+    /**
+     * 是否有不直接相连的服务器在某个聊天室有成员，这些服务器的消息需要经对端转发
+     * 
+     * @param directlyConnected 判断服务器是否直接相连
+     */
+    public boolean hasIndirectInterest(String roomName, Predicate<String> directlyConnected) {
+        for (Map.Entry<String, Map<String, Integer>> entry : remoteCounts.entrySet()) {
+            if (entry.getValue().containsKey(roomName) && !directlyConnected.test(entry.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 当前的版本摘要，用于握手
+     */
+    public Map<String, Long> digest() {
+        Map<String, Long> digest = new HashMap<>();
+        for (RoomDelta delta : versions.values()) {
+            digest.put(delta.getName(), delta.fingerprint());
+        }
+        return digest;
+    }
+    
+    /**
+     * 收到对端的版本摘要，补发对端缺少或版本不同的聊天室以及本服的全部成员数量
+     * 
+     * 本服已知的其他服务器的成员数量也一并转交，不带消息ID，只在这条连接上有效。
+     * 同一连接上的多次握手只处理第一次。
+     */
+    public void onPeerDigest(PeerConnection peer, Map<String, Long> peerDigest) {
+        if (!synced.add(peer)) {
+            return;
+        }
+        
+        List<RoomDelta> differing = new ArrayList<>();
+        for (RoomDelta delta : versions.values()) {
+            Long fingerprint = peerDigest.get(delta.getName());
+            if (fingerprint == null || fingerprint != delta.fingerprint()) {
+                differing.add(delta);
+            }
+        }
+        
+        Map<String, Integer> counts = new HashMap<>();
+        for (ChatRoom room : plugin.getChatRoomManager().getAllRooms()) {
+            if (room.getMemberCount() > 0) {
+                counts.put(room.getName(), room.getMemberCount());
+            }
+        }
+        
+        send(peer, differing, counts, true);
+        for (Map.Entry<String, Map<String, Integer>> entry : remoteCounts.entrySet()) {
+            if (!entry.getKey().equals(peer.getPeerServerId())) {
+                ReplicationData known = new ReplicationData();
+                known.getCounts().putAll(entry.getValue());
+                peer.send(NetworkMessage.createReplication(NetworkMessage.Type.PLAYER_JOIN, entry.getKey(), null, known));
+            }
+        }
+        plugin.debug(() -> "与 " + peer.getPeerName() + " 同步聊天室: 补发 " + differing.size() + " 个聊天室, "
+            + counts.size() + " 个成员数量");
+    }
+    
+    /**
+     * 连接断开，最后一条到该服务器的连接断开时清除它的成员数量
+     * 
+     * @param peer 断开的连接
+     * @param stillConnected 是否还有其他到同一服务器的连接
+     */
+    public void onPeerDisconnected(PeerConnection peer, boolean stillConnected) {
+        synced.remove(peer);
+        String peerId = peer.getPeerServerId();
+        if (peerId == null || stillConnected) {
+            return;
+        }
+        removeCounts(peerId);
+    }
+    
+    private void removeCounts(String peerId) {
+        countTimes.remove(peerId);
+        Map<String, Integer> counts = remoteCounts.remove(peerId);
+        if (counts != null) {
+            for (String roomName : counts.keySet()) {
+                updateRemoteCount(roomName);
+            }
+        }
+    }
+    
+    /**
+     * 处理复制消息
+     * 
+     * @param sender 收到消息的连接
+     */
+    public void handleMessage(PeerConnection sender, NetworkMessage message) {
+        ReplicationData data = ReplicationData.parse(message.getData());
+        switch (message.getType()) {
+            case ROOM_CREATE:
+            case ROOM_DELETE:
+                for (RoomDelta delta : data.getRooms()) {
+                    apply(delta);
+                }
+                break;
+            case PLAYER_JOIN:
+            case PLAYER_LEAVE:
+                // 握手时转交的其他服务器成员数量不带消息ID，不代表来源服务器仍然可达
+                boolean handover = message.getSequence() == 0
+                    && !Objects.equals(message.getServerId(), sender.getPeerServerId());
+                applyCounts(message.getServerId(), data.getCounts(), !handover);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * 应用一条聊天室变更，只有更新的版本才会生效
+     * 
+     * 被忽略的旧版本也推进逻辑时钟，本服之后的变更总是比见过的任何版本新。
+     * 版本比较和目录变更在聊天室的同一把分段锁内完成 (与本服的创建和删除相同)，
+     * 同一聊天室在不同 I/O 线程上到达的创建和删除按版本顺序生效。
+     */
+    private void apply(RoomDelta delta) {
+        if (delta.getName() == null) {
+            return;
+        }
+        clock.accumulateAndGet(delta.getVersion(), Math::max);
+        ChatRoomManager chatRoomManager = plugin.getChatRoomManager();
+        chatRoomManager.withReplicationLock(delta.getName(), () -> applyLocked(chatRoomManager, delta));
+    }
+    
+    private void applyLocked(ChatRoomManager chatRoomManager, RoomDelta delta) {
+        synchronized (this) {
+            if (!delta.isNewerThan(versions.get(delta.getName()))) {
+                return;
+            }
+            versions.put(delta.getName(), delta);
+            if (delta.isDeleted()) {
+                tombstoneTimes.put(delta.getName(), System.currentTimeMillis());
+            } else {
+                tombstoneTimes.remove(delta.getName());
+            }
+        }
+        
+        if (delta.isDeleted()) {
+            chatRoomManager.applyReplicatedDelete(delta.getName());
+        } else {
+            chatRoomManager.applyReplicatedCreate(delta.getName(), delta.getOwner());
+        }
+        plugin.debug(() -> "复制聊天室" + (delta.isDeleted() ? "删除: " : "创建: ") + delta.getName()
+            + " (版本 " + delta.getVersion() + "@" + delta.getOrigin() + ")");
+    }
+    
+    /**
+     * 更新某个服务器的成员数量，数量为 0 的聊天室被移除
+     * 
+     * @param refresh 是否是来源服务器自己发出的更新，只有这种更新会延长成员数量的有效期
+     */
+    private void applyCounts(String peerId, Map<String, Integer> counts, boolean refresh) {
+        if (peerId == null || peerId.equals(serverId)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (refresh) {
+            countTimes.put(peerId, now);
+        } else {
+            countTimes.putIfAbsent(peerId, now);
+        }
+        Map<String, Integer> peerCounts = remoteCounts.computeIfAbsent(peerId, id -> new ConcurrentHashMap<>());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                peerCounts.remove(entry.getKey());
+            } else {
+                peerCounts.put(entry.getKey(), entry.getValue());
+            }
+            updateRemoteCount(entry.getKey());
+        }
+    }
+    
+    private void updateRemoteCount(String roomName) {
+        ChatRoom room = plugin.getChatRoomManager().getRoom(roomName);
+        if (room == null) {
+            return;
+        }
+        int total = 0;
+        for (Map<String, Integer> counts : remoteCounts.values()) {
+            total += counts.getOrDefault(roomName, 0);
+        }
+        room.setRemoteMemberCount(total);
+    }
+    
+    /**
+     * 定时任务：合并待发送的变更和成员数量，发送给所有连接
+     * 
+     * 定时任务和提前发送的任务可能同时运行，依次执行，保证同一聊天室的成员数量按顺序发出。
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            flushDirty();
+        }
+    }
+    
+    private void flushDirty() {
+        List<RoomDelta> deltas = new ArrayList<>();
+        for (Iterator<String> it = dirtyRooms.iterator(); it.hasNext();) {
+            RoomDelta delta = versions.get(it.next());
+            it.remove();
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+        
+        Map<String, Integer> counts = new HashMap<>();
+        for (Iterator<String> it = dirtyCounts.iterator(); it.hasNext();) {
+            String roomName = it.next();
+            it.remove();
+            ChatRoom room = plugin.getChatRoomManager().getRoom(roomName);
+            int count = room != null ? room.getMemberCount() : 0;
+            counts.put(roomName, count);
+            if (count > 0) {
+                advertised.add(roomName);
+            } else {
+                advertised.remove(roomName);
+            }
+        }
+        
+        // 定期重发全部成员数量 (为空时也发送)，其他服务器据此延长本服成员数量的有效期
+        long now = System.currentTimeMillis();
+        boolean refresh = now - lastRefresh >= COUNT_REFRESH_MILLIS;
+        if (refresh) {
+            lastRefresh = now;
+            for (ChatRoom room : plugin.getChatRoomManager().getAllRooms()) {
+                if (room.getMemberCount() > 0) {
+                    counts.putIfAbsent(room.getName(), room.getMemberCount());
+                }
+            }
+        }
+        
+        send(null, deltas, counts, refresh);
+        pruneTombstones();
+        pruneCounts(now);
+    }
+    
+    /**
+     * 清除过期的其他服务器成员数量
+     */
+    private void pruneCounts(long now) {
+        long expired = now - COUNT_TTL_MILLIS;
+        for (Map.Entry<String, Long> entry : countTimes.entrySet()) {
+            if (entry.getValue() < expired && countTimes.remove(entry.getKey(), entry.getValue())) {
+                String peerId = entry.getKey();
+                removeCounts(peerId);
+                plugin.debug(() -> "服务器 " + peerId + " 的成员数量已过期");
+            }
+        }
+    }
+    
+    /**
+     * 按类型拆分后发送，每种类型最多一条消息
+     * 
+     * @param peer 目标连接，null 表示所有连接
+     * @param announce 成员数量为空时也发送，对端据此知道本端的兴趣集合为空
+     */
+    private void send(PeerConnection peer, List<RoomDelta> deltas, Map<String, Integer> counts, boolean announce) {
+        ReplicationData created = new ReplicationData();
+        ReplicationData deleted = new ReplicationData();
+        for (RoomDelta delta : deltas) {
+            (delta.isDeleted() ? deleted : created).getRooms().add(delta);
+        }
+        ReplicationData joined = new ReplicationData();
+        ReplicationData left = new ReplicationData();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            (entry.getValue() > 0 ? joined : left).getCounts().put(entry.getKey(), entry.getValue());
+        }
+        
+        send(peer, NetworkMessage.Type.ROOM_CREATE, created);
+        send(peer, NetworkMessage.Type.ROOM_DELETE, deleted);
+        if (announce && joined.isEmpty()) {
+            send(peer, NetworkMessage.createReplication(NetworkMessage.Type.PLAYER_JOIN, serverId,
+                networkManager.getServerName(), joined));
+        }
+        send(peer, NetworkMessage.Type.PLAYER_JOIN, joined);
+        send(peer, NetworkMessage.Type.PLAYER_LEAVE, left);
+    }
+    
+    private void send(PeerConnection peer, NetworkMessage.Type type, ReplicationData data) {
+        if (!data.isEmpty()) {
+            send(peer, NetworkMessage.createReplication(type, serverId, networkManager.getServerName(), data));
+        }
+    }
+    
+    private void send(PeerConnection peer, NetworkMessage message) {
+        if (peer != null) {
+            networkManager.send(peer, message);
+        } else {
+            networkManager.broadcast(message);
+        }
+    }
+    
+    /**
+     * 删除过期的删除标记
+     */
+    private void pruneTombstones() {
+        long expired = System.currentTimeMillis() - TOMBSTONE_TTL_MILLIS;
+        for (Map.Entry<String, Long> entry : tombstoneTimes.entrySet()) {
+            if (entry.getValue() < expired) {
+                synchronized (this) {
+                    RoomDelta delta = versions.get(entry.getKey());
+                    if (delta != null && delta.isDeleted()) {
+                        versions.remove(entry.getKey());
+                    }
+                    tombstoneTimes.remove(entry.getKey());
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
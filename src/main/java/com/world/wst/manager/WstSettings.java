@@ -0,0 +1,240 @@
+package com.world.wst.manager;
+
+import com.world.wst.ratelimit.RateLimit;
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不可变的配置快照
+ * 
+ * 在加载和重载配置时一次性读取所有热路径上用到的配置项，
+ * 由 {@link ConfigManager} 通过 volatile 字段整体替换，任意线程读取到的都是完整的一份配置。
+ * 
+ * @author World Studio
+ */
+public final class WstSettings {
+    
+    private final boolean debug;
+    private final boolean networkEnabled;
+    private final int maxRooms;
+    private final int maxRoomsPerPlayer;
+    private final int maxMembersPerRoom;
+    private final int maxRoomNameLength;
+    private final int minRoomNameLength;
+    private final String defaultRoomName;
+    private final RateLimit playerRateLimit;
+    private final RateLimit roomRateLimit;
+    private final RateLimit serverRateLimit;
+    private final boolean filterEnabled;
+    private final boolean filterBlock;
+    private final char filterReplacement;
+    private final String filterWordsFile;
+    
+    private final String chatMessageFormat;
+    private final String crossServerMessageFormat;
+    private final String systemMessageFormat;
+    private final String errorMessageFormat;
+    private final MessageTemplate chatTemplate;
+    private final MessageTemplate crossServerTemplate;
+    private final MessageTemplate systemTemplate;
+    private final MessageTemplate errorTemplate;
+    private final Map<String, MessageTemplate> messageTemplates;
+    private final List<String> helpMessages;
+    
+    /**
+     * 从配置文件读取快照
+     * 
+     * @param config 配置文件
+     */
+    public WstSettings(FileConfiguration config) {
+        this.debug = config.getBoolean("plugin.debug", false);
+        this.networkEnabled = config.getBoolean("network.enabled", true);
+        this.maxRooms = config.getInt("chatroom.max-rooms", 50);
+        this.maxRoomsPerPlayer = config.getInt("chatroom.max-rooms-per-player", 5);
+        this.maxMembersPerRoom = config.getInt("chatroom.max-members", 100);
+        this.maxRoomNameLength = config.getInt("chatroom.max-name-length", 20);
+        this.minRoomNameLength = config.getInt("chatroom.min-name-length", 3);
+        this.defaultRoomName = config.getString("chatroom.default-room", "全服大厅");
+        
+        boolean rateLimited = config.getBoolean("rate-limit.enabled", true);
+        this.playerRateLimit = rateLimit(config, rateLimited, "player", 2.0, 5);
+        this.roomRateLimit = rateLimit(config, rateLimited, "room", 20.0, 40);
+        this.serverRateLimit = rateLimit(config, rateLimited, "server", 50.0, 100);
+        
+        this.filterEnabled = config.getBoolean("filter.enabled", true);
+        this.filterBlock = "block".equalsIgnoreCase(config.getString("filter.mode", "censor"));
+        String replacement = config.getString("filter.replacement", "*");
+        this.filterReplacement = replacement == null || replacement.isEmpty() ? '*' : replacement.charAt(0);
+        this.filterWordsFile = config.getString("filter.words-file", "filter-words.txt");
+        
+        this.chatMessageFormat = config.getString("message.chat-format", "&7[&b{room}&7] &f{player}&7: &f{message}");
+        this.crossServerMessageFormat = config.getString("message.cross-server-format", "&7[&e{server}&7] &7[&b{room}&7] &f{player}&7: &f{message}");
+        this.systemMessageFormat = config.getString("message.system-format", "&7[&aWST&7] &f{message}");
+        this.errorMessageFormat = config.getString("message.error-format", "&7[&cWST&7] &c{message}");
+        this.chatTemplate = MessageTemplate.compileFormat(chatMessageFormat, "room", "player", "message");
+        this.crossServerTemplate = MessageTemplate.compileFormat(crossServerMessageFormat, "server", "room", "player", "message");
+        this.systemTemplate = MessageTemplate.compileFormat(systemMessageFormat, "message");
+        this.errorTemplate = MessageTemplate.compileFormat(errorMessageFormat, "message");
+        
+        Map<String, MessageTemplate> templates = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("messages");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                if (section.isString(key)) {
+                    templates.put(key, MessageTemplate.compileMessage(section.getString(key)));
+                }
+            }
+        }
+        this.messageTemplates = Collections.unmodifiableMap(templates);
+        this.helpMessages = config.getStringList("messages.help").stream()
+                .map(msg -> ChatColor.translateAlternateColorCodes('&', msg))
+                .toList();
+    }
+    
+    private static RateLimit rateLimit(FileConfiguration config, boolean enabled, String key, double rate, int burst) {
+        if (!enabled) {
+            return RateLimit.UNLIMITED;
+        }
+        return RateLimit.of(config.getDouble("rate-limit." + key + ".rate", rate),
+            config.getInt("rate-limit." + key + ".burst", burst));
+    }
+    
+    /**
+     * 是否启用调试模式
+     */
+    public boolean isDebug() {
+        return debug;
+    }
+    
+    /**
+     * 是否启用跨服务器通信
+     */
+    public boolean isNetworkEnabled() {
+        return networkEnabled;
+    }
+    
+    public int getMaxRooms() {
+        return maxRooms;
+    }
+    
+    public int getMaxRoomsPerPlayer() {
+        return maxRoomsPerPlayer;
+    }
+    
+    public int getMaxMembersPerRoom() {
+        return maxMembersPerRoom;
+    }
+    
+    public int getMaxRoomNameLength() {
+        return maxRoomNameLength;
+    }
+    
+    public int getMinRoomNameLength() {
+        return minRoomNameLength;
+    }
+    
+    public String getDefaultRoomName() {
+        return defaultRoomName;
+    }
+    
+    /**
+     * 每个玩家的发言限流
+     */
+    public RateLimit getPlayerRateLimit() {
+        return playerRateLimit;
+    }
+    
+    /**
+     * 每个聊天室的消息限流 (本服玩家发言)
+     */
+    public RateLimit getRoomRateLimit() {
+        return roomRateLimit;
+    }
+    
+    /**
+     * 每个来源服务器的跨服消息限流
+     */
+    public RateLimit getServerRateLimit() {
+        return serverRateLimit;
+    }
+    
+    /**
+     * 是否启用聊天过滤
+     */
+    public boolean isFilterEnabled() {
+        return filterEnabled;
+    }
+    
+    /**
+     * 命中过滤词时是否拦截整条消息 (否则替换过滤词)
+     */
+    public boolean isFilterBlock() {
+        return filterBlock;
+    }
+    
+    /**
+     * 替换过滤词使用的字符
+     */
+    public char getFilterReplacement() {
+        return filterReplacement;
+    }
+    
+    /**
+     * 过滤词表文件名 (插件目录下)
+     */
+    public String getFilterWordsFile() {
+        return filterWordsFile;
+    }
+    
+    public String getChatMessageFormat() {
+        return chatMessageFormat;
+    }
+    
+    public String getCrossServerMessageFormat() {
+        return crossServerMessageFormat;
+    }
+    
+    public String getSystemMessageFormat() {
+        return systemMessageFormat;
+    }
+    
+    public String getErrorMessageFormat() {
+        return errorMessageFormat;
+    }
+    
+    public MessageTemplate getChatTemplate() {
+        return chatTemplate;
+    }
+    
+    public MessageTemplate getCrossServerTemplate() {
+        return crossServerTemplate;
+    }
+    
+    public MessageTemplate getSystemTemplate() {
+        return systemTemplate;
+    }
+    
+    public MessageTemplate getErrorTemplate() {
+        return errorTemplate;
+    }
+    
+    /**
+     * 获取 messages.* 中的消息模板，不存在时返回 null
+     */
+    public MessageTemplate getMessageTemplate(String key) {
+        return messageTemplates.get(key);
+    }
+    
+    /**
+     * 获取已转换颜色代码的帮助消息
+     */
+    public List<String> getHelpMessages() {
+        return helpMessages;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.world.wst.metrics;
+
+/**
+ * 一条聊天消息在本服经过各阶段的时间点，随 {@link com.world.wst.storage.ChatRecord} 传递
+ * 
+ * 本服消息从聊天事件开始计时；其他服务器的消息从 I/O 线程收到时开始计时，
+ * 并带有从来源服务器发言到本服收到的时间 (已按心跳估计的时钟偏差校正)。
+ * 
+ * @author World Studio
+ */
+public final class ChatTrace {
+    
+    private final long startNanos;
+    private final String origin;
+    private final long arrivalMicros;
+    private long postedNanos; // 投递到聊天事件循环的时间，经队列发布给循环线程
+    
+    private ChatTrace(long startNanos, String origin, long arrivalMicros) {
+        this.startNanos = startNanos;
+        this.origin = origin;
+        this.arrivalMicros = arrivalMicros;
+    }
+    
+    /**
+     * 本服玩家的发言
+     * 
+     * @param eventNanos 聊天事件开始处理的时间 ({@link System#nanoTime()})
+     */
+    public static ChatTrace local(long eventNanos) {
+        return new ChatTrace(eventNanos, null, -1);
+    }
+    
+    /**
+     * 其他服务器的消息
+     * 
+     * @param origin 来源服务器ID
+     * @param arrivalMicros 从来源服务器发言到本服收到的时间，时钟偏差未知时为 -1
+     * @param receivedNanos 本服收到的时间 ({@link System#nanoTime()})
+     */
+    public static ChatTrace remote(String origin, long arrivalMicros, long receivedNanos) {
+        return new ChatTrace(receivedNanos, origin, arrivalMicros);
+    }
+    
+    long getStartNanos() {
+        return startNanos;
+    }
+    
+    /**
+     * 来源服务器ID，本服消息为 null
+     */
+    public String getOrigin() {
+        return origin;
+    }
+    
+    long getArrivalMicros() {
+        return arrivalMicros;
+    }
+    
+    long getPostedNanos() {
+        return postedNanos;
+    }
+    
+    void setPostedNanos(long postedNanos) {
+        this.postedNanos = postedNanos;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package com.world.wst.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图 (微秒)
+ * 
+ * 桶按对数-线性划分 (与 HdrHistogram 相同的思路)：小于 32 微秒时每微秒一个桶，
+ * 之后每个 2 的幂区间分为 16 个桶，相对误差不超过 1/16。最大记录约 35 分钟，更大的值计入最后一个桶。
+ * 记录只是几次原子加，可以在任意线程并发调用；读取时复制一份 {@link Snapshot}，
+ * 两个快照相减得到一段时间内的分布，直方图本身从不清零。
+ * 
+ * @author World Studio
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BITS = 5;
+    private static final int HALF = 1 << (SUB_BITS - 1); // 每个 2 的幂区间的桶数
+    private static final long MAX_VALUE = (1L << 31) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+    
+    private final AtomicLongArray counts;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+    
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+    
+    /**
+     * 记录一次延迟
+     * 
+     * @param micros 延迟 (微秒)，负数按 0 记录
+     */
+    public void record(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        counts.incrementAndGet(index(value));
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 其他线程更新了最大值，重新比较
+        }
+    }
+    
+    /**
+     * 复制当前分布，与并发记录之间不加锁，各项统计之间可能相差正在进行的几次记录
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.get(), max.get());
+    }
+    
+    static int index(long value) {
+        if (value < HALF * 2) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+    
+    /**
+     * 桶的上界 (包含)
+     */
+    static long upperBound(int index) {
+        if (index < HALF * 2) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+    
+    /**
+     * 直方图快照
+     */
+    public static final class Snapshot {
+        
+        /**
+         * 没有任何记录的快照
+         */
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKETS], 0, 0, 0);
+        
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+        
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+        
+        /**
+         * 本快照减去更早的快照，得到两次快照之间的分布
+         * 
+         * 区间内的最大值无法精确得到，取区间内最高的非空桶的上界 (不超过累计最大值)。
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] delta = new long[BUCKETS];
+            long total = 0;
+            int highest = -1;
+            for (int i = 0; i < BUCKETS; i++) {
+                delta[i] = counts[i] - earlier.counts[i];
+                total += delta[i];
+                if (delta[i] > 0) {
+                    highest = i;
+                }
+            }
+            long intervalMax = highest < 0 ? 0 : Math.min(max, upperBound(highest));
+            return new Snapshot(delta, total, sum - earlier.sum, intervalMax);
+        }
+        
+        /**
+         * 分位数 (微秒)，取所在桶的上界；没有记录时返回 0
+         * 
+         * @param quantile 0 到 1 之间
+         */
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+        
+        /**
+         * 记录次数
+         */
+        public long getCount() {
+            return count;
+        }
+        
+        /**
+         * 平均值 (微秒)
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+        
+        /**
+         * 最大值 (微秒)
+         */
+        public long getMax() {
+            return max;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,295 @@
+package com.world.wst.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 聊天消息的分阶段延迟统计
+ * 
+ * 每个阶段有一个全局直方图，另外按聊天室和按服务器 (对端或来源服务器ID) 各记录一份，
+ * 单个聊天室或服务器的直方图在第一次记录该阶段时创建。所有记录都是无锁的，可以在任意线程调用。
+ * 
+ * 跨服阶段用来源服务器的发言时间戳计算，时钟偏差由心跳估计 (见 {@link com.world.wst.network.PeerHealth})；
+ * 偏差未知的消息 (例如来自不直接相连或旧版本的服务器) 不计入跨服阶段，只计数。
+ * 
+ * @author World Studio
+ */
+public class LatencyTracker {
+    
+    /**
+     * 统计的阶段，按消息经过的顺序排列
+     */
+    public enum Stage {
+        CHAT_EVENT("聊天事件"),   // 聊天线程上的限流和过滤，直到投递到聊天事件循环
+        LOOP_QUEUE("事件队列"),   // 在聊天事件循环队列中等待
+        FAN_OUT("本服分发"),      // 格式化、写聊天记录并发送给本服成员
+        ENCODE("编码"),           // 序列化聊天消息帧
+        WRITE("发送"),            // 从进入连接发送队列到写入套接字
+        ARRIVAL("到达"),          // 从来源服务器发言到本服收到
+        END_TO_END("端到端");     // 从来源服务器发言到本服成员收到
+        
+        private final String displayName;
+        
+        Stage(String displayName) {
+            this.displayName = displayName;
+        }
+        
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+    
+    private static final Stage[] STAGES = Stage.values();
+    
+    private final LatencyHistogram[] totals;
+    private final Map<String, Scope> rooms;
+    private final Map<String, Scope> servers;
+    private final AtomicLong unsynced;
+    private LatencyHistogram.Snapshot[] lastSummary; // 只在摘要任务中访问
+    private long lastSummaryNanos;
+    
+    public LatencyTracker() {
+        this.totals = new LatencyHistogram[STAGES.length];
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new LatencyHistogram();
+        }
+        this.rooms = new ConcurrentHashMap<>();
+        this.servers = new ConcurrentHashMap<>();
+        this.unsynced = new AtomicLong();
+        this.lastSummary = new LatencyHistogram.Snapshot[STAGES.length];
+        for (int i = 0; i < lastSummary.length; i++) {
+            lastSummary[i] = LatencyHistogram.Snapshot.EMPTY;
+        }
+        this.lastSummaryNanos = System.nanoTime();
+    }
+    
+    /**
+     * 记录一次延迟
+     * 
+     * @param stage 阶段
+     * @param room 聊天室，不按聊天室记录时为 null
+     * @param server 服务器ID，不按服务器记录时为 null
+     * @param micros 延迟 (微秒)
+     */
+    public void record(Stage stage, String room, String server, long micros) {
+        totals[stage.ordinal()].record(micros);
+        if (room != null) {
+            scope(rooms, room).histogram(stage).record(micros);
+        }
+        if (server != null) {
+            scope(servers, server).histogram(stage).record(micros);
+        }
+    }
+    
+    private static Scope scope(Map<String, Scope> scopes, String key) {
+        Scope scope = scopes.get(key);
+        if (scope == null) {
+            Scope created = new Scope();
+            scope = scopes.putIfAbsent(key, created);
+            if (scope == null) {
+                scope = created;
+            }
+        }
+        return scope;
+    }
+    
+    /**
+     * 消息投递到聊天事件循环，本服消息记录聊天事件阶段
+     */
+    public void posted(ChatTrace trace, String room) {
+        long now = System.nanoTime();
+        trace.setPostedNanos(now);
+        if (trace.getOrigin() == null) {
+            record(Stage.CHAT_EVENT, room, null, micros(now - trace.getStartNanos()));
+        }
+    }
+    
+    /**
+     * 聊天事件循环开始处理消息，记录事件队列阶段
+     * 
+     * @param room 聊天室，聊天室不在本服时为 null
+     * @return 开始处理的时间，传给 {@link #delivered}
+     */
+    public long dispatched(ChatTrace trace, String room) {
+        long now = System.nanoTime();
+        record(Stage.LOOP_QUEUE, room, null, micros(now - trace.getPostedNanos()));
+        return now;
+    }
+    
+    /**
+     * 消息已发送给本服成员，记录本服分发阶段；其他服务器的消息再记录端到端延迟
+     * 
+     * @param dispatchedNanos {@link #dispatched} 的返回值
+     */
+    public void delivered(ChatTrace trace, String room, long dispatchedNanos) {
+        long now = System.nanoTime();
+        record(Stage.FAN_OUT, room, null, micros(now - dispatchedNanos));
+        if (trace.getOrigin() != null && trace.getArrivalMicros() >= 0) {
+            record(Stage.END_TO_END, room, trace.getOrigin(),
+                trace.getArrivalMicros() + micros(now - trace.getStartNanos()));
+        }
+    }
+    
+    /**
+     * 收到其他服务器的聊天消息，记录到达阶段
+     * 
+     * @param origin 来源服务器ID
+     * @param room 聊天室，聊天室不在本服时为 null
+     * @param originMillis 来源服务器上的发言时间 (毫秒)
+     * @param clockOffsetMillis 来源服务器时钟减本服时钟的估计值，未知时为 NaN
+     * @return 随消息传递的跟踪信息
+     */
+    public ChatTrace received(String origin, String room, long originMillis, double clockOffsetMillis) {
+        long receivedNanos = System.nanoTime();
+        long arrival = -1;
+        if (Double.isNaN(clockOffsetMillis) || originMillis <= 0) {
+            unsynced.incrementAndGet();
+        } else {
+            // 来源服务器的时间换算到本服时钟；估计误差可能使结果略小于 0
+            double local = originMillis - clockOffsetMillis;
+            arrival = Math.max(0, Math.round((System.currentTimeMillis() - local) * 1000));
+            record(Stage.ARRIVAL, room, origin, arrival);
+        }
+        return ChatTrace.remote(origin, arrival, receivedNanos);
+    }
+    
+    /**
+     * 聊天室删除后丢弃它的统计
+     */
+    public void removeRoom(String room) {
+        rooms.remove(room);
+    }
+    
+    /**
+     * 所有消息各阶段的累计分布，没有记录的阶段不包括在内
+     */
+    public Map<Stage, LatencyHistogram.Snapshot> getTotals() {
+        Map<Stage, LatencyHistogram.Snapshot> result = new EnumMap<>(Stage.class);
+        for (Stage stage : STAGES) {
+            LatencyHistogram.Snapshot snapshot = totals[stage.ordinal()].snapshot();
+            if (snapshot.getCount() > 0) {
+                result.put(stage, snapshot);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 单个聊天室各阶段的累计分布，没有记录时返回空表
+     */
+    public Map<Stage, LatencyHistogram.Snapshot> getRoom(String room) {
+        Scope scope = rooms.get(room);
+        return scope != null ? scope.snapshot() : Collections.emptyMap();
+    }
+    
+    /**
+     * 单个服务器各阶段的累计分布，没有记录时返回空表
+     */
+    public Map<Stage, LatencyHistogram.Snapshot> getServer(String server) {
+        Scope scope = servers.get(server);
+        return scope != null ? scope.snapshot() : Collections.emptyMap();
+    }
+    
+    /**
+     * 有记录的聊天室
+     */
+    public Set<String> getRoomNames() {
+        return new TreeSet<>(rooms.keySet());
+    }
+    
+    /**
+     * 有记录的服务器
+     */
+    public Set<String> getServerNames() {
+        return new TreeSet<>(servers.keySet());
+    }
+    
+    /**
+     * 因时钟偏差未知而没有计入跨服阶段的消息数
+     */
+    public long getUnsynced() {
+        return unsynced.get();
+    }
+    
+    /**
+     * 生成上次调用以来的延迟摘要，期间没有任何记录时返回 null
+     * 
+     * 由定时任务调用，同一时间只有一个调用方。
+     */
+    public synchronized String summarize() {
+        long now = System.nanoTime();
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(now - lastSummaryNanos);
+        lastSummaryNanos = now;
+        
+        StringBuilder line = new StringBuilder();
+        for (Stage stage : STAGES) {
+            LatencyHistogram.Snapshot current = totals[stage.ordinal()].snapshot();
+            LatencyHistogram.Snapshot interval = current.minus(lastSummary[stage.ordinal()]);
+            lastSummary[stage.ordinal()] = current;
+            if (interval.getCount() == 0) {
+                continue;
+            }
+            line.append(line.length() == 0 ? "" : ", ").append(stage.getDisplayName())
+                .append(" p50=").append(formatMicros(interval.percentile(0.5)))
+                .append(" p99=").append(formatMicros(interval.percentile(0.99)))
+                .append(" (").append(interval.getCount()).append(")");
+        }
+        if (line.length() == 0) {
+            return null;
+        }
+        return "聊天延迟 (最近 " + seconds + " 秒): " + line;
+    }
+    
+    /**
+     * 按数量级格式化延迟
+     */
+    public static String formatMicros(long micros) {
+        if (micros < 1000) {
+            return micros + "µs";
+        }
+        if (micros < 1_000_000) {
+            return String.format("%.1fms", micros / 1000.0);
+        }
+        return String.format("%.2fs", micros / 1_000_000.0);
+    }
+    
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+    
+    /**
+     * 单个聊天室或服务器的直方图，每个阶段第一次记录时创建
+     */
+    private static final class Scope {
+        
+        private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(STAGES.length);
+        
+        LatencyHistogram histogram(Stage stage) {
+            LatencyHistogram histogram = histograms.get(stage.ordinal());
+            if (histogram == null) {
+                LatencyHistogram created = new LatencyHistogram();
+                histogram = histograms.compareAndSet(stage.ordinal(), null, created)
+                    ? created : histograms.get(stage.ordinal());
+            }
+            return histogram;
+        }
+        
+        Map<Stage, LatencyHistogram.Snapshot> snapshot() {
+            Map<Stage, LatencyHistogram.Snapshot> result = new EnumMap<>(Stage.class);
+            for (Stage stage : STAGES) {
+                LatencyHistogram histogram = histograms.get(stage.ordinal());
+                if (histogram != null) {
+                    result.put(stage, histogram.snapshot());
+                }
+            }
+            return result;
+        }
+    }
+}
\ No newline at end of file
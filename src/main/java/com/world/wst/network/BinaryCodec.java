@@ -0,0 +1,548 @@
+package com.world.wst.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑二进制编解码器
+ * 
+ * 帧格式: [varint 长度][varint 标签][内容]
+ * <ul>
+ *   <li>标签 0: 字典定义 [varint id][字符串]</li>
+ *   <li>标签 1: 批量帧，内容为若干个完整的帧，按顺序解码</li>
+ *   <li>标签 2: 压缩帧，内容为 deflate 流的一段 (以 SYNC_FLUSH 结尾)，解压后为若干个完整的帧</li>
+ *   <li>标签 8 + 类型序号: 消息 [varint 字段位][字段...]</li>
+ * </ul>
+ * 字符串为 [varint 字节数][UTF-8]。serverId、serverName、roomName 使用字典引用
+ * [varint id+1]，0 表示后面紧跟字面字符串。消息 ID 的序号与转发跳数写在时间戳之后，
+ * 旧版本解码器读完时间戳即结束，会忽略这部分内容。
+ * 
+ * 字典由发送方统一分配，只增不减；每个连接在发送引用某个 id 的消息前
+ * 先发送对应的字典定义帧，因此同一条消息的编码结果对所有连接都相同。
+ * 
+ * @author World Studio
+ */
+public class BinaryCodec {
+    
+    public static final int MAX_FRAME_LENGTH = 1024 * 1024;
+    public static final int MAX_DICTIONARY_SIZE = 4096;
+    
+    static final int TAG_DICTIONARY = 0;
+    static final int TAG_BATCH = 1;
+    static final int TAG_DEFLATE = 2;
+    static final int TAG_MESSAGE_BASE = 8;
+    
+    private static final int FIELD_SERVER_ID = 1;
+    private static final int FIELD_SERVER_NAME = 1 << 1;
+    private static final int FIELD_ROOM_NAME = 1 << 2;
+    private static final int FIELD_PLAYER_NAME = 1 << 3;
+    private static final int FIELD_MESSAGE = 1 << 4;
+    private static final int FIELD_DATA = 1 << 5;
+    private static final int FIELD_SEQUENCE = 1 << 6;
+    private static final int FIELD_HOPS = 1 << 7;
+    
+    private static final NetworkMessage.Type[] TYPES = NetworkMessage.Type.values();
+    
+    private final Map<String, Integer> dictionary;
+    private final List<ByteBuffer> definitions;
+    private byte[] scratch;
+    private int position;
+    
+    public BinaryCodec() {
+        this.dictionary = new HashMap<>();
+        this.definitions = new ArrayList<>();
+        this.scratch = new byte[512];
+    }
+    
+    /**
+     * 编码一条消息为完整的帧
+     * 
+     * @param message 消息
+     * @return 只读帧缓冲区
+     */
+    public synchronized ByteBuffer encode(NetworkMessage message) {
+        position = 0;
+        writeVarInt(TAG_MESSAGE_BASE + message.getType().ordinal());
+        
+        int fields = 0;
+        if (message.getServerId() != null) {
+            fields |= FIELD_SERVER_ID;
+        }
+        if (message.getServerName() != null) {
+            fields |= FIELD_SERVER_NAME;
+        }
+        if (message.getRoomName() != null) {
+            fields |= FIELD_ROOM_NAME;
+        }
+        if (message.getPlayerName() != null) {
+            fields |= FIELD_PLAYER_NAME;
+        }
+        if (message.getMessage() != null) {
+            fields |= FIELD_MESSAGE;
+        }
+        if (message.getData() != null) {
+            fields |= FIELD_DATA;
+        }
+        if (message.getSequence() != 0) {
+            fields |= FIELD_SEQUENCE;
+        }
+        if (message.getHops() != 0) {
+            fields |= FIELD_HOPS;
+        }
+        writeVarInt(fields);
+        
+        if (message.getServerId() != null) {
+            writeDictionaryRef(message.getServerId());
+        }
+        if (message.getServerName() != null) {
+            writeDictionaryRef(message.getServerName());
+        }
+        if (message.getRoomName() != null) {
+            writeDictionaryRef(message.getRoomName());
+        }
+        if (message.getPlayerName() != null) {
+            writeString(message.getPlayerName());
+        }
+        if (message.getMessage() != null) {
+            writeString(message.getMessage());
+        }
+        if (message.getData() != null) {
+            writeString(message.getData());
+        }
+        writeVarLong(message.getTimestamp());
+        if (message.getSequence() != 0) {
+            writeVarLong(message.getSequence());
+        }
+        if (message.getHops() != 0) {
+            writeVarInt(message.getHops());
+        }
+        
+        return finishFrame();
+    }
+    
+    /**
+     * 当前字典大小，连接据此判断需要补发哪些定义
+     */
+    public synchronized int getDictionarySize() {
+        return definitions.size();
+    }
+    
+    /**
+     * 获取字典定义帧
+     * 
+     * @param id 字典 id
+     * @return 只读帧缓冲区 (每次返回独立的读位置)
+     */
+    public synchronized ByteBuffer getDefinition(int id) {
+        return definitions.get(id).duplicate();
+    }
+    
+    private void writeDictionaryRef(String value) {
+        Integer id = dictionary.get(value);
+        if (id == null && definitions.size() < MAX_DICTIONARY_SIZE) {
+            id = definitions.size();
+            dictionary.put(value, id);
+            definitions.add(encodeDefinition(id, value));
+        }
+        
+        if (id == null) {
+            writeVarInt(0);
+            writeString(value);
+        } else {
+            writeVarInt(id + 1);
+        }
+    }
+    
+    /**
+     * 编码字典定义帧，不影响当前正在编码的消息
+     */
+    private ByteBuffer encodeDefinition(int id, String value) {
+        byte[] saved = scratch;
+        int savedPosition = position;
+        
+        scratch = new byte[16 + value.length() * 3];
+        position = 0;
+        writeVarInt(TAG_DICTIONARY);
+        writeVarInt(id);
+        writeString(value);
+        ByteBuffer frame = finishFrame();
+        
+        scratch = saved;
+        position = savedPosition;
+        return frame;
+    }
+    
+    /**
+     * 在内容前加上长度前缀，复制为大小刚好的只读缓冲区
+     */
+    private ByteBuffer finishFrame() {
+        int length = position;
+        byte[] frame = new byte[varIntSize(length) + length];
+        int offset = putVarInt(frame, 0, length);
+        System.arraycopy(scratch, 0, frame, offset, length);
+        return ByteBuffer.wrap(frame).asReadOnlyBuffer();
+    }
+    
+    private void ensureCapacity(int extra) {
+        if (position + extra > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, position + extra));
+        }
+    }
+    
+    private void writeVarInt(int value) {
+        ensureCapacity(5);
+        position = putVarInt(scratch, position, value);
+    }
+    
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            scratch[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        scratch[position++] = (byte) value;
+    }
+    
+    /**
+     * 直接把字符串按 UTF-8 写入缓冲区，不创建中间字节数组
+     */
+    private void writeString(String value) {
+        int length = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length++;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                utf8Length++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        
+        writeVarInt(utf8Length);
+        ensureCapacity(utf8Length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                scratch[position++] = (byte) c;
+            } else if (c < 0x800) {
+                scratch[position++] = (byte) (0xC0 | (c >> 6));
+                scratch[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                scratch[position++] = (byte) (0xF0 | (codePoint >> 18));
+                scratch[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                scratch[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                scratch[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 孤立的代理字符与 String.getBytes 一样写为 '?'
+                scratch[position++] = '?';
+            } else {
+                scratch[position++] = (byte) (0xE0 | (c >> 12));
+                scratch[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                scratch[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+    
+    static int putVarInt(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+    
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+    
+    /**
+     * 单个连接的入站解码器，保存对端发来的字典
+     */
+    public static class Decoder {
+        
+        private String[] dictionary;
+        private Inflater inflater;
+        private byte[] inflated;
+        private boolean inflating;
+        private boolean batching;
+        private volatile long inflateNanos;
+        private int offset;
+        private int limit;
+        private byte[] buffer;
+        
+        public Decoder() {
+            this.dictionary = new String[64];
+        }
+        
+        /**
+         * 解码缓冲区开头的一个完整帧
+         * 
+         * @param buffer 数据
+         * @param offset 起始位置
+         * @param length 可用字节数
+         * @param sink 解出的消息回调
+         * @return 消耗的字节数，帧不完整时返回 0
+         * @throws IOException 帧格式错误
+         */
+        public int decodeFrame(byte[] buffer, int offset, int length, Consumer<NetworkMessage> sink) throws IOException {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.limit = offset + length;
+            
+            int frameLength = tryReadVarInt();
+            if (frameLength < 0) {
+                return 0;
+            }
+            if (frameLength > MAX_FRAME_LENGTH) {
+                throw new IOException("帧过长: " + frameLength);
+            }
+            if (this.offset + frameLength > limit) {
+                return 0;
+            }
+            
+            int headerLength = this.offset - offset;
+            limit = this.offset + frameLength;
+            decodeBody(sink);
+            this.buffer = null;
+            return headerLength + frameLength;
+        }
+        
+        private void decodeBody(Consumer<NetworkMessage> sink) throws IOException {
+            int tag = readVarInt();
+            if (tag == TAG_DICTIONARY) {
+                define(readVarInt(), readString());
+                return;
+            }
+            if (tag == TAG_BATCH) {
+                // 发送方只合并单个帧，嵌套的批量帧只可能来自恶意对端，不限制时会耗尽 I/O 线程的栈
+                if (batching) {
+                    throw new IOException("批量帧不能嵌套");
+                }
+                decodeBatch(buffer, offset, limit, sink);
+                return;
+            }
+            if (tag == TAG_DEFLATE) {
+                if (inflating) {
+                    throw new IOException("压缩帧不能嵌套");
+                }
+                int length = inflate(buffer, offset, limit - offset);
+                inflating = true;
+                try {
+                    decodeBatch(inflated, 0, length, sink);
+                } finally {
+                    inflating = false;
+                }
+                return;
+            }
+            
+            int typeIndex = tag - TAG_MESSAGE_BASE;
+            if (typeIndex < 0 || typeIndex >= TYPES.length) {
+                // 未知标签，跳过整个帧以兼容新版本
+                return;
+            }
+            
+            NetworkMessage message = new NetworkMessage();
+            message.setType(TYPES[typeIndex]);
+            int fields = readVarInt();
+            if ((fields & FIELD_SERVER_ID) != 0) {
+                message.setServerId(readDictionaryRef());
+            }
+            if ((fields & FIELD_SERVER_NAME) != 0) {
+                message.setServerName(readDictionaryRef());
+            }
+            if ((fields & FIELD_ROOM_NAME) != 0) {
+                message.setRoomName(readDictionaryRef());
+            }
+            if ((fields & FIELD_PLAYER_NAME) != 0) {
+                message.setPlayerName(readString());
+            }
+            if ((fields & FIELD_MESSAGE) != 0) {
+                message.setMessage(readString());
+            }
+            if ((fields & FIELD_DATA) != 0) {
+                message.setData(readString());
+            }
+            message.setTimestamp(readVarLong());
+            if ((fields & FIELD_SEQUENCE) != 0) {
+                message.setSequence(readVarLong());
+            }
+            if ((fields & FIELD_HOPS) != 0) {
+                message.setHops(readVarInt());
+            }
+            sink.accept(message);
+        }
+        
+        /**
+         * 依次解码批量帧 (或解压后的压缩帧) 中的每个帧，其中不能再有批量帧
+         */
+        private void decodeBatch(byte[] data, int start, int end, Consumer<NetworkMessage> sink) throws IOException {
+            boolean outer = batching;
+            batching = true;
+            try {
+                int position = start;
+                while (position < end) {
+                    int consumed = decodeFrame(data, position, end - position, sink);
+                    if (consumed == 0) {
+                        throw new IOException("批量帧内容不完整");
+                    }
+                    position += consumed;
+                }
+            } finally {
+                batching = outer;
+            }
+        }
+        
+        /**
+         * 解压一段 deflate 数据，压缩字典在整个连接内延续
+         * 
+         * @return 解压后的字节数，结果在 inflated 中
+         */
+        private int inflate(byte[] data, int start, int length) throws IOException {
+            long begin = System.nanoTime();
+            if (inflater == null) {
+                inflater = new Inflater();
+                inflated = new byte[4096];
+            }
+            inflater.setInput(data, start, length);
+            int total = 0;
+            try {
+                while (true) {
+                    if (total == inflated.length) {
+                        if (inflated.length >= MAX_FRAME_LENGTH + 16) {
+                            throw new IOException("解压后数据过长");
+                        }
+                        inflated = Arrays.copyOf(inflated, Math.min(MAX_FRAME_LENGTH + 16, inflated.length * 2));
+                    }
+                    int count = inflater.inflate(inflated, total, inflated.length - total);
+                    total += count;
+                    if (count == 0 && (inflater.needsInput() || inflater.finished())) {
+                        break;
+                    }
+                    if (inflater.needsDictionary()) {
+                        throw new IOException("压缩帧需要预设字典");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("压缩帧格式错误: " + e.getMessage(), e);
+            }
+            inflateNanos += System.nanoTime() - begin;
+            return total;
+        }
+        
+        /**
+         * 解压累计耗时 (纳秒)
+         */
+        public long getInflateNanos() {
+            return inflateNanos;
+        }
+        
+        /**
+         * 释放解压器占用的本地内存
+         */
+        public void close() {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+        
+        private void define(int id, String value) throws IOException {
+            if (id < 0 || id >= MAX_DICTIONARY_SIZE) {
+                throw new IOException("字典 id 越界: " + id);
+            }
+            if (id >= dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, Math.min(MAX_DICTIONARY_SIZE, Math.max(dictionary.length * 2, id + 1)));
+            }
+            dictionary[id] = value;
+        }
+        
+        private String readDictionaryRef() throws IOException {
+            int ref = readVarInt();
+            if (ref == 0) {
+                return readString();
+            }
+            int id = ref - 1;
+            if (id >= dictionary.length || dictionary[id] == null) {
+                throw new IOException("未定义的字典 id: " + id);
+            }
+            return dictionary[id];
+        }
+        
+        private String readString() throws IOException {
+            int length = readVarInt();
+            if (length < 0 || offset + length > limit) {
+                throw new IOException("字符串长度错误: " + length);
+            }
+            String value = new String(buffer, offset, length, StandardCharsets.UTF_8);
+            offset += length;
+            return value;
+        }
+        
+        private int readVarInt() throws IOException {
+            int value = tryReadVarInt();
+            if (value < 0) {
+                throw new IOException("帧内容不完整");
+            }
+            return value;
+        }
+        
+        /**
+         * 读取 varint，数据不足时返回 -1
+         */
+        private int tryReadVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (offset >= limit) {
+                    return -1;
+                }
+                byte b = buffer[offset++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        throw new IOException("varint 越界");
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("varint 过长");
+        }
+        
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                if (offset >= limit) {
+                    throw new IOException("帧内容不完整");
+                }
+                byte b = buffer[offset++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("varlong 过长");
+        }
+    }
+}
\ No newline at end of file
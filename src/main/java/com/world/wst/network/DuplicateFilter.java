@@ -0,0 +1,106 @@
+package com.world.wst.network;
+
+import java.util.Arrays;
+
+/**
+ * 消息去重过滤器
+ * 
+ * 以 (来源服务器ID, 序号) 计算 64 位键，保存在两代开放寻址的 long 哈希表中：
+ * 当前代写满或超过时间窗口时，当前代变为上一代，上一代被清空复用。
+ * 查询同时检查两代，因此每个键至少保留一个时间窗口 (或一代容量)，内存占用固定。
+ * 
+ * @author World Studio
+ */
+public class DuplicateFilter {
+    
+    private static final long EMPTY = 0L;
+    
+    private final int capacity;
+    private final long windowNanos;
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+    private long generationStart;
+    
+    /**
+     * 构造函数
+     * 
+     * @param capacity 每一代最多保存的键数量
+     * @param windowMillis 每一代的时间窗口 (毫秒)
+     */
+    public DuplicateFilter(int capacity, long windowMillis) {
+        this.capacity = Math.max(16, capacity);
+        this.windowNanos = Math.max(1, windowMillis) * 1_000_000L;
+        int tableSize = Integer.highestOneBit(this.capacity * 2 - 1) << 1;
+        this.current = new long[tableSize];
+        this.previous = new long[tableSize];
+        this.generationStart = System.nanoTime();
+    }
+    
+    /**
+     * 计算消息ID对应的键
+     * 
+     * @param originId 来源服务器ID
+     * @param sequence 来源服务器分配的序号
+     */
+    public static long key(String originId, long sequence) {
+        long hash = originId.hashCode() * 0x9E3779B97F4A7C15L + sequence;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+    
+    /**
+     * 记录一个键
+     * 
+     * @return 第一次出现时返回 true，重复时返回 false
+     */
+    public synchronized boolean markSeen(long key) {
+        if (key == EMPTY) {
+            key = 1L;
+        }
+        if (contains(current, key) || contains(previous, key)) {
+            return false;
+        }
+        
+        long now = System.nanoTime();
+        if (currentSize >= capacity || now - generationStart > windowNanos) {
+            long[] recycled = previous;
+            Arrays.fill(recycled, EMPTY);
+            previous = current;
+            current = recycled;
+            currentSize = 0;
+            generationStart = now;
+        }
+        insert(current, key);
+        currentSize++;
+        return true;
+    }
+    
+    private static boolean contains(long[] table, long key) {
+        int mask = table.length - 1;
+        int index = (int) key & mask;
+        while (true) {
+            long value = table[index];
+            if (value == key) {
+                return true;
+            }
+            if (value == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+    
+    private static void insert(long[] table, long key) {
+        int mask = table.length - 1;
+        int index = (int) key & mask;
+        while (table[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        table[index] = key;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.world.wst.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SERVER_INFO 消息中携带的握手数据
+ * 
+ * 以 JSON 形式放在 {@link NetworkMessage#getData()} 中。旧版本服务器发送的
+ * 是普通文本，解析失败时视为不支持任何扩展功能。
+ * 
+ * @author World Studio
+ */
+public class HandshakeInfo {
+    
+    public static final String FEATURE_BINARY = "binary";
+    public static final String FEATURE_DEFLATE = "deflate";
+    public static final String FEATURE_INTEREST = "interest";
+    public static final String FEATURE_RELAY = "relay";
+    
+    private static final Gson GSON = new Gson();
+    
+    private String note;
+    private List<String> features;
+    private String codec;
+    private Map<String, Long> rooms;
+    
+    public HandshakeInfo() {
+        this.features = new ArrayList<>();
+    }
+    
+    public HandshakeInfo(String note) {
+        this();
+        this.note = note;
+    }
+    
+    /**
+     * 转换为 JSON 字符串
+     */
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+    
+    /**
+     * 从 SERVER_INFO 的附加数据解析握手信息
+     * 
+     * @param data 附加数据
+     * @return 握手信息，旧版本服务器返回空的握手信息
+     */
+    public static HandshakeInfo parse(String data) {
+        if (data != null && data.startsWith("{")) {
+            try {
+                HandshakeInfo info = GSON.fromJson(data, HandshakeInfo.class);
+                if (info != null) {
+                    if (info.features == null) {
+                        info.features = new ArrayList<>();
+                    }
+                    return info;
+                }
+            } catch (JsonParseException e) {
+                // 按旧版本处理
+            }
+        }
+        return new HandshakeInfo(data);
+    }
+    
+    /**
+     * 是否支持指定功能
+     */
+    public boolean hasFeature(String feature) {
+        return features.contains(feature);
+    }
+    
+    /**
+     * 声明支持的功能
+     */
+    public HandshakeInfo withFeature(String feature) {
+        if (!features.contains(feature)) {
+            features.add(feature);
+        }
+        return this;
+    }
+    
+    public String getNote() {
+        return note;
+    }
+    
+    public List<String> getFeatures() {
+        return features;
+    }
+    
+    /**
+     * 发送方从此消息之后使用的编码，null 表示 JSON
+     */
+    public String getCodec() {
+        return codec;
+    }
+    
+    public HandshakeInfo setCodec(String codec) {
+        this.codec = codec;
+        return this;
+    }
+    
+    /**
+     * 聊天室版本摘要 (聊天室名称 -> 版本指纹)，旧版本服务器为 null
+     */
+    public Map<String, Long> getRoomDigest() {
+        return rooms;
+    }
+    
+    public HandshakeInfo setRoomDigest(Map<String, Long> rooms) {
+        this.rooms = rooms;
+        return this;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.world.wst.network;
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * 注册在 IoLoop 上的通道处理器
+ * 
+ * @author World Studio
+ */
+interface IoHandler {
+    
+    /**
+     * 通道就绪时由所属 IoLoop 线程调用
+     * 
+     * @param key 就绪的选择键
+     */
+    void handleReady(SelectionKey key);
+    
+    /**
+     * 关闭通道，由 IoLoop 在关闭时调用
+     */
+    void close();
+}
\ No newline at end of file
@@ -0,0 +1,245 @@
+package com.world.wst.network;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 基于 Selector 的单线程 I/O 事件循环
+ * 
+ * 每个 IoLoop 独占一个线程，负责若干通道的接受、连接、读写，
+ * 其他线程通过 {@link #execute(Runnable)} 把任务投递到循环线程上执行，
+ * 通过 {@link #schedule(long, TimeUnit, Runnable)} 投递延迟任务。
+ * 
+ * @author World Studio
+ */
+public class IoLoop implements Runnable {
+    
+    private final Logger logger;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks;
+    private final PriorityQueue<Timer> timers;
+    private long timerSequence;
+    private final AtomicBoolean wakeupPending;
+    private volatile boolean running;
+    
+    public IoLoop(String name, Logger logger) throws IOException {
+        this.logger = logger;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.timers = new PriorityQueue<>();
+        this.wakeupPending = new AtomicBoolean(false);
+        this.running = false;
+    }
+    
+    /**
+     * 启动循环线程
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+    
+    /**
+     * 停止循环线程并关闭其上的所有通道
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * 当前线程是否为本循环线程
+     */
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+    
+    /**
+     * 投递任务到循环线程执行
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (!inLoop() && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+    
+    /**
+     * 延迟一段时间后在循环线程上执行任务
+     * 
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @param task 任务
+     */
+    public void schedule(long delay, TimeUnit unit, Runnable task) {
+        long deadline = System.nanoTime() + unit.toNanos(delay);
+        if (inLoop()) {
+            timers.add(new Timer(deadline, timerSequence++, task));
+        } else {
+            execute(() -> timers.add(new Timer(deadline, timerSequence++, task)));
+        }
+    }
+    
+    /**
+     * 在本循环上注册通道，必须在循环线程中调用
+     */
+    SelectionKey register(SelectableChannel channel, int ops, IoHandler handler) throws IOException {
+        return channel.register(selector, ops, handler);
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                select();
+                wakeupPending.set(false);
+                
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        dispatch(key);
+                    }
+                }
+                
+                runTasks();
+                runTimers();
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                logger.warning("I/O 事件循环出错: " + e.getMessage());
+            }
+        }
+        
+        closeAll();
+    }
+    
+    /**
+     * 等待就绪事件，最多等到最近一个延迟任务到期
+     * 
+     * 定时任务在循环线程上投递的任务不会唤醒 Selector，此时不等待。
+     */
+    private void select() throws IOException {
+        if (!tasks.isEmpty()) {
+            selector.selectNow();
+            return;
+        }
+        Timer next = timers.peek();
+        if (next == null) {
+            selector.select();
+            return;
+        }
+        long remaining = next.deadline - System.nanoTime();
+        if (remaining <= 0) {
+            selector.selectNow();
+        } else {
+            selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining + 999_999)));
+        }
+    }
+    
+    /**
+     * 执行所有已到期的延迟任务
+     */
+    private void runTimers() {
+        long now = System.nanoTime();
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.deadline - now <= 0) {
+            timers.poll();
+            try {
+                timer.task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "执行网络定时任务时出错", e);
+            }
+        }
+    }
+    
+    /**
+     * 分发就绪事件，单个处理器的异常不影响循环
+     */
+    private void dispatch(SelectionKey key) {
+        try {
+            ((IoHandler) key.attachment()).handleReady(key);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "处理网络事件时出错", e);
+        }
+    }
+    
+    /**
+     * 执行投递到本循环的任务
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "执行网络任务时出错", e);
+            }
+        }
+    }
+    
+    /**
+     * 关闭所有注册的通道和 Selector
+     */
+    private void closeAll() {
+        runTasks();
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            if (key.attachment() instanceof IoHandler) {
+                ((IoHandler) key.attachment()).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // 忽略关闭错误
+        }
+    }
+    
+    /**
+     * 延迟任务，到期时间相同时按投递顺序执行
+     */
+    private static class Timer implements Comparable<Timer> {
+        
+        private final long deadline;
+        private final long sequence;
+        private final Runnable task;
+        
+        Timer(long deadline, long sequence, Runnable task) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+        }
+        
+        @Override
+        public int compareTo(Timer other) {
+            long diff = deadline - other.deadline;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.world.wst.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 消息ID分配、去重和转发
+ * 
+ * 本服发出的消息带 (来源服务器ID, 序号) 组成的消息ID。收到带ID的消息时先去重，
+ * 第一次收到的消息跳数加一后转发给除来源方向以外的所有支持转发的服务器，超过最大跳数时停止，
+ * 因此在任意拓扑 (包括有环的拓扑) 中每条消息在每个服务器上只处理一次。
+ * 
+ * 每台服务器在心跳中公布与自己直接相连的服务器，来源服务器已经直接发送过的对端不再转发，
+ * 全连接的部署中消息数与不转发时相同。新建立的连接稳定一段时间后才公布，
+ * 避免对端在来源服务器开始直接发送之前就停止转发；断开的连接立即从公布中移除。
+ * 
+ * @author World Studio
+ */
+public class MessageRouter {
+    
+    private static final Gson GSON = new Gson();
+    
+    private final String localServerId;
+    private final DuplicateFilter duplicates;
+    private final AtomicLong sequence;
+    private final boolean relayEnabled;
+    private final int maxHops;
+    private final AtomicLong relayedMessages;
+    private final AtomicLong duplicatesDropped;
+    private final long neighbourSettleMillis;
+    private final Map<String, Long> neighbourSince; // 直接相连的服务器ID -> 第一次看到连接的时间
+    
+    /**
+     * 构造函数
+     * 
+     * @param localServerId 本服务器ID
+     * @param duplicates 去重缓存
+     * @param relayEnabled 是否转发其他服务器的消息
+     * @param maxHops 最大转发跳数
+     * @param neighbourSettleMillis 新连接的服务器经过多久后才公布为直接相连 (毫秒)
+     */
+    public MessageRouter(String localServerId, DuplicateFilter duplicates, boolean relayEnabled, int maxHops,
+            long neighbourSettleMillis) {
+        this.localServerId = localServerId;
+        this.duplicates = duplicates;
+        // 以当前时间为起点，重启后分配的序号不会与对端去重缓存中的旧序号冲突
+        this.sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+        this.relayEnabled = relayEnabled;
+        this.maxHops = maxHops;
+        this.relayedMessages = new AtomicLong();
+        this.duplicatesDropped = new AtomicLong();
+        this.neighbourSettleMillis = neighbourSettleMillis;
+        this.neighbourSince = new HashMap<>();
+    }
+    
+    /**
+     * 为本服发出的消息分配消息ID，并记入去重缓存以便丢弃绕回的副本
+     */
+    public NetworkMessage stamp(NetworkMessage message) {
+        long next = sequence.incrementAndGet();
+        message.setSequence(next);
+        duplicates.markSeen(DuplicateFilter.key(localServerId, next));
+        return message;
+    }
+    
+    /**
+     * 消息是否带消息ID，旧版本服务器发送的消息和只对单个连接有效的消息没有ID
+     */
+    public static boolean hasId(NetworkMessage message) {
+        return message.getSequence() != 0 && message.getServerId() != null;
+    }
+    
+    /**
+     * 记录收到的消息
+     * 
+     * @return 需要处理时返回 true；本服发出的消息绕回或同一条消息再次到达时返回 false。没有消息ID的消息总是需要处理
+     */
+    public boolean accept(NetworkMessage message) {
+        if (localServerId.equals(message.getServerId())) {
+            duplicatesDropped.incrementAndGet();
+            return false;
+        }
+        if (!hasId(message)) {
+            return true;
+        }
+        if (!duplicates.markSeen(DuplicateFilter.key(message.getServerId(), message.getSequence()))) {
+            duplicatesDropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * 把 {@link #accept} 接受的带ID消息转发给除来源方向以外的所有支持转发的服务器，超过最大跳数时停止
+     * 
+     * @param transport 用于序列化消息帧，所有目标共用一个帧
+     * @param sender 消息到达的连接
+     * @param message 消息，跳数在转发前加一
+     * @param connections 当前的连接
+     * @param interested 对端是否需要这条消息，例如按聊天室兴趣过滤
+     * @return 转发的连接数
+     */
+    public int relay(NetworkTransport transport, PeerConnection sender, NetworkMessage message,
+            Collection<PeerConnection> connections, Predicate<PeerConnection> interested) {
+        if (!relayEnabled || message.getHops() >= maxHops || !hasId(message)) {
+            return 0;
+        }
+        message.setHops(message.getHops() + 1);
+        SerializedFrame frame = null;
+        int sent = 0;
+        for (PeerConnection connection : connections) {
+            String peerId = connection.getPeerServerId();
+            if (connection == sender || !connection.isConnected()
+                    || !connection.hasPeerFeature(HandshakeInfo.FEATURE_RELAY)
+                    || message.getServerId().equals(peerId)
+                    || (peerId != null && peerId.equals(sender.getPeerServerId()))
+                    || connection.hasPeerNeighbour(message.getServerId())) {
+                continue;
+            }
+            if (!interested.test(connection)) {
+                continue;
+            }
+            if (frame == null) {
+                frame = transport.serialize(message);
+            }
+            connection.send(frame);
+            sent++;
+        }
+        relayedMessages.addAndGet(sent);
+        return sent;
+    }
+    
+    /**
+     * 生成公布给对端的直接相连服务器列表，放在心跳的附加数据中
+     * 
+     * @param connections 当前的连接
+     * @return JSON 数组
+     */
+    public synchronized String describeNeighbours(Collection<PeerConnection> connections) {
+        long now = System.currentTimeMillis();
+        Set<String> connected = new HashSet<>();
+        for (PeerConnection connection : connections) {
+            if (connection.isConnected() && connection.getPeerServerId() != null) {
+                connected.add(connection.getPeerServerId());
+            }
+        }
+        neighbourSince.keySet().retainAll(connected);
+        List<String> settled = new ArrayList<>();
+        for (String peerId : connected) {
+            long since = neighbourSince.computeIfAbsent(peerId, key -> now);
+            if (now - since >= neighbourSettleMillis) {
+                settled.add(peerId);
+            }
+        }
+        Collections.sort(settled);
+        return GSON.toJson(settled);
+    }
+    
+    /**
+     * 记录对端在心跳中公布的直接相连服务器，心跳回复和旧版本服务器的心跳不带公布
+     */
+    public void onHeartbeat(PeerConnection sender, NetworkMessage message) {
+        String data = message.getData();
+        if (message.isHeartbeatAck() || data == null || !data.startsWith("[")) {
+            return;
+        }
+        try {
+            String[] neighbours = GSON.fromJson(data, String[].class);
+            if (neighbours != null) {
+                sender.setPeerNeighbours(new HashSet<>(Arrays.asList(neighbours)));
+            }
+        } catch (JsonParseException e) {
+            // 格式错误时保留之前的公布
+        }
+    }
+    
+    /**
+     * 转发给其他服务器的消息数
+     */
+    public long getRelayedMessages() {
+        return relayedMessages.get();
+    }
+    
+    /**
+     * 经多条路径到达或绕回本服而被丢弃的重复消息数
+     */
+    public long getDuplicatesDropped() {
+        return duplicatesDropped.get();
+    }
+}
\ No newline at end of file
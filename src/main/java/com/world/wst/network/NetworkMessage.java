@@ -20,6 +20,11 @@ public class NetworkMessage {
         SERVER_INFO      // 服务器信息
     }
     
+    public static final String HEARTBEAT_PROBE = "heartbeat";
+    public static final String HEARTBEAT_ACK = "heartbeat-ack";
+    
+    private static final Gson GSON = new Gson();
+    
     private Type type;
     private String serverId;
     private String serverName;
@@ -28,6 +33,8 @@ public class NetworkMessage {
     private String message;
     private long timestamp;
     private String data; // 额外数据，JSON格式
+    private long sequence; // 来源服务器分配的序号，与 serverId 组成消息ID，0 表示没有
+    private int hops; // 已经被转发的次数
     
     /**
      * 默认构造函数
@@ -53,8 +60,7 @@ public class NetworkMessage {
      * 转换为JSON字符串
      */
     public String toJson() {
-        Gson gson = new Gson();
-        return gson.toJson(this);
+        return GSON.toJson(this);
     }
     
     /**
@@ -62,8 +68,7 @@ public class NetworkMessage {
      */
     public static NetworkMessage fromJson(String json) {
         try {
-            Gson gson = new Gson();
-            return gson.fromJson(json, NetworkMessage.class);
+            return GSON.fromJson(json, NetworkMessage.class);
         } catch (JsonSyntaxException e) {
             return null;
         }
@@ -80,7 +85,48 @@ public class NetworkMessage {
      * 创建心跳包
      */
     public static NetworkMessage createHeartbeat(String serverId, String serverName) {
-        return new NetworkMessage(Type.HEARTBEAT, serverId, serverName, null, null, "heartbeat");
+        return new NetworkMessage(Type.HEARTBEAT, serverId, serverName, null, null, HEARTBEAT_PROBE);
+    }
+    
+    /**
+     * 创建心跳探测，带有发送时间和序号
+     */
+    public static NetworkMessage createHeartbeatProbe(String serverId, String serverName, long sequence) {
+        NetworkMessage msg = createHeartbeat(serverId, serverName);
+        msg.setSequence(sequence);
+        return msg;
+    }
+    
+    /**
+     * 创建心跳回复，原样带回探测的序号和发送时间，额外数据为回复时本服的时钟 (毫秒)
+     */
+    public static NetworkMessage createHeartbeatAck(String serverId, String serverName, NetworkMessage probe) {
+        NetworkMessage msg = new NetworkMessage(Type.HEARTBEAT, serverId, serverName, null, null, HEARTBEAT_ACK);
+        msg.setSequence(probe.getSequence());
+        msg.setTimestamp(probe.getTimestamp());
+        msg.setData(Long.toString(System.currentTimeMillis()));
+        return msg;
+    }
+    
+    /**
+     * 心跳回复中对端回复时的时钟，旧版本服务器不携带，返回 -1
+     */
+    public long getAckClock() {
+        if (data == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(data);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * 是否为心跳回复
+     */
+    public boolean isHeartbeatAck() {
+        return type == Type.HEARTBEAT && HEARTBEAT_ACK.equals(message);
     }
     
     /**
@@ -92,6 +138,15 @@ public class NetworkMessage {
         return msg;
     }
     
+    /**
+     * 创建复制消息 (ROOM_CREATE / ROOM_DELETE / PLAYER_JOIN / PLAYER_LEAVE)
+     */
+    public static NetworkMessage createReplication(Type type, String serverId, String serverName, ReplicationData data) {
+        NetworkMessage msg = new NetworkMessage(type, serverId, serverName, null, null, null);
+        msg.setData(data.toJson());
+        return msg;
+    }
+    
     // Getters and Setters
     
     public Type getType() {
@@ -158,6 +213,22 @@ public class NetworkMessage {
         this.data = data;
     }
     
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+    
+    public int getHops() {
+        return hops;
+    }
+    
+    public void setHops(int hops) {
+        this.hops = hops;
+    }
+    
     @Override
     public String toString() {
         return String.format("NetworkMessage{type=%s, serverId='%s', serverName='%s', roomName='%s', playerName='%s', message='%s'}", 
@@ -0,0 +1,509 @@
+package com.world.wst.network;
+
+import com.world.wst.metrics.LatencyTracker;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * 非阻塞网络传输层
+ * 
+ * 使用固定数量的 IoLoop 线程处理所有入站和出站连接，
+ * 线程数量不随对端数量增长。本类不依赖 Bukkit，可以在同一 JVM 中创建多个实例。
+ * 
+ * @author World Studio
+ */
+public class NetworkTransport {
+    
+    private final String serverId;
+    private final String serverName;
+    private final Logger logger;
+    private final TransportListener listener;
+    private final IoLoop[] loops;
+    private final AtomicInteger nextLoop;
+    private final BinaryCodec codec;
+    private final AtomicLong framesCreated;
+    private final AtomicLong encodes;
+    private final AtomicLong writeCalls;
+    private final AtomicLong messagesWritten;
+    private final AtomicLong batchesWritten;
+    private ServerSocketChannel serverChannel;
+    private int queueCapacity;
+    private OverflowPolicy overflowPolicy;
+    private boolean binaryEnabled;
+    private boolean compressionEnabled;
+    private int compressionThreshold;
+    private long batchWindowMillis;
+    private int batchMaxMessages;
+    private int batchMaxBytes;
+    private volatile Supplier<Map<String, Long>> roomDigest;
+    private boolean relayEnabled;
+    private volatile LatencyTracker latencyTracker;
+    private volatile boolean running;
+    
+    /**
+     * 构造函数
+     * 
+     * @param serverId 本服务器ID，用于握手和线程命名
+     * @param serverName 本服务器名称
+     * @param ioThreads I/O 线程数量
+     * @param logger 日志
+     * @param listener 事件回调
+     */
+    public NetworkTransport(String serverId, String serverName, int ioThreads, Logger logger, TransportListener listener) {
+        this.serverId = serverId;
+        this.serverName = serverName;
+        this.logger = logger;
+        this.listener = listener;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+        this.nextLoop = new AtomicInteger();
+        this.codec = new BinaryCodec();
+        this.framesCreated = new AtomicLong();
+        this.encodes = new AtomicLong();
+        this.writeCalls = new AtomicLong();
+        this.messagesWritten = new AtomicLong();
+        this.batchesWritten = new AtomicLong();
+        this.queueCapacity = 1024;
+        this.overflowPolicy = OverflowPolicy.DROP_OLDEST;
+        this.binaryEnabled = true;
+        this.compressionEnabled = false;
+        this.compressionThreshold = 256;
+        this.batchWindowMillis = 0;
+        this.batchMaxMessages = 64;
+        this.batchMaxBytes = 16 * 1024;
+        this.running = false;
+    }
+    
+    /**
+     * 设置每个连接的发送队列，只影响之后建立的连接
+     * 
+     * @param capacity 队列容量 (消息数)
+     * @param policy 溢出策略
+     */
+    public void setOutboundQueue(int capacity, OverflowPolicy policy) {
+        this.queueCapacity = Math.max(1, capacity);
+        this.overflowPolicy = policy;
+    }
+    
+    /**
+     * 设置是否与支持的对端协商二进制编码
+     */
+    public void setBinaryEnabled(boolean binaryEnabled) {
+        this.binaryEnabled = binaryEnabled;
+    }
+    
+    /**
+     * 设置是否与支持的对端协商 deflate 压缩 (仅在二进制编码下生效)
+     * 
+     * @param enabled 是否启用
+     * @param threshold 一次写出的数据小于该字节数时不压缩
+     */
+    public void setCompression(boolean enabled, int threshold) {
+        this.compressionEnabled = enabled;
+        this.compressionThreshold = Math.max(0, threshold);
+    }
+    
+    /**
+     * 设置发送批处理窗口，只影响之后建立的连接
+     * 
+     * 普通消息入队后最多等待 windowMillis 毫秒再写出，期间积累的消息
+     * 通过一次写操作发出；积累的消息数或字节数达到上限时立即写出。
+     * 
+     * @param windowMillis 等待时间 (毫秒)，0 表示立即写出
+     * @param maxMessages 立即写出的消息数阈值
+     * @param maxBytes 立即写出的字节数阈值
+     */
+    public void setBatching(long windowMillis, int maxMessages, int maxBytes) {
+        this.batchWindowMillis = Math.max(0, windowMillis);
+        this.batchMaxMessages = Math.max(1, maxMessages);
+        this.batchMaxBytes = Math.max(1, maxBytes);
+    }
+    
+    /**
+     * 设置握手时附带的聊天室版本摘要，每次握手时调用一次
+     * 
+     * 设置后握手中同时声明 {@link HandshakeInfo#FEATURE_INTEREST}，表示本端会发布有成员的聊天室，
+     * 对端可以只发送这些聊天室的消息。
+     */
+    public void setRoomDigest(Supplier<Map<String, Long>> roomDigest) {
+        this.roomDigest = roomDigest;
+    }
+    
+    /**
+     * 设置是否在握手中声明 {@link HandshakeInfo#FEATURE_RELAY}
+     * 
+     * 声明后对端会把带消息ID的消息转发给本端，本端负责去重。
+     */
+    public void setRelayEnabled(boolean relayEnabled) {
+        this.relayEnabled = relayEnabled;
+    }
+    
+    /**
+     * 设置延迟统计，记录聊天消息的编码耗时和每个连接的发送延迟；为 null 时不记录
+     */
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+    
+    /**
+     * 启动 I/O 线程
+     */
+    public void start() throws IOException {
+        if (running) {
+            return;
+        }
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop("WST-" + serverId + "-io-" + i, logger);
+        }
+        for (IoLoop loop : loops) {
+            loop.start();
+        }
+        running = true;
+    }
+    
+    /**
+     * 监听指定地址，接受其他服务器的连接
+     */
+    public void bind(String host, int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(host, port), 50);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        serverChannel = channel;
+        
+        IoLoop acceptLoop = loops[0];
+        acceptLoop.execute(() -> {
+            try {
+                acceptLoop.register(channel, SelectionKey.OP_ACCEPT, new Acceptor(channel));
+            } catch (IOException e) {
+                logger.severe("注册监听端口失败: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * 获取实际监听的端口 (绑定端口为 0 时由系统分配)
+     */
+    public int getLocalPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : -1;
+    }
+    
+    /**
+     * 异步连接到指定服务器，结果通过 {@link TransportListener} 回调
+     * 
+     * @param serverKey 配置中的服务器键
+     * @param host 主机
+     * @param port 端口
+     */
+    public void connect(String serverKey, String host, int port) {
+        IoLoop loop = nextLoop();
+        String address = host + ":" + port;
+        loop.execute(() -> {
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                configureSocket(channel);
+                PeerConnection connection = new PeerConnection(this, loop, channel,
+                    PeerConnection.Direction.OUTBOUND, serverKey, address);
+                InetSocketAddress remote = new InetSocketAddress(host, port);
+                if (remote.isUnresolved()) {
+                    throw new UnknownHostException(host);
+                }
+                if (channel.connect(remote)) {
+                    connection.register(SelectionKey.OP_READ);
+                    connection.activate();
+                } else {
+                    connection.register(SelectionKey.OP_CONNECT);
+                }
+            } catch (IOException e) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // 忽略关闭错误
+                    }
+                }
+                listener.onConnectFailed(serverKey, address, e);
+            }
+        });
+    }
+    
+    /**
+     * 延迟一段时间后在某个 I/O 线程上执行任务，等待期间不占用线程
+     * 
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @param task 任务
+     */
+    public void schedule(long delay, TimeUnit unit, Runnable task) {
+        if (running) {
+            nextLoop().schedule(delay, unit, task);
+        }
+    }
+    
+    /**
+     * 停止传输层，关闭所有连接
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // 忽略关闭错误
+            }
+        }
+        
+        for (IoLoop loop : loops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * 启用批处理时由本端合并写出，关闭 Nagle 算法避免再次延迟
+     */
+    private void configureSocket(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, batchWindowMillis > 0);
+    }
+    
+    /**
+     * 轮询选择一个 I/O 线程
+     */
+    private IoLoop nextLoop() {
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+    
+    /**
+     * 获取 I/O 线程数量
+     */
+    public int getIoThreadCount() {
+        return loops.length;
+    }
+    
+    /**
+     * 序列化一条消息，返回的帧可以发送给任意多个连接
+     * 
+     * @param message 消息
+     * @return 共享的消息帧
+     */
+    public SerializedFrame serialize(NetworkMessage message) {
+        framesCreated.incrementAndGet();
+        return new SerializedFrame(this, message);
+    }
+    
+    /**
+     * 已创建的消息帧数量
+     */
+    public long getFramesCreated() {
+        return framesCreated.get();
+    }
+    
+    /**
+     * 实际执行的编码次数，每个帧每种编码最多一次
+     */
+    public long getEncodeCount() {
+        return encodes.get();
+    }
+    
+    void recordEncode(NetworkMessage message, long nanos) {
+        encodes.incrementAndGet();
+        LatencyTracker tracker = latencyTracker;
+        if (tracker != null && message.getType() == NetworkMessage.Type.CHAT_MESSAGE) {
+            tracker.record(LatencyTracker.Stage.ENCODE, null, null, nanos / 1000);
+        }
+    }
+    
+    /**
+     * 写操作 (系统调用) 次数
+     */
+    public long getWriteCalls() {
+        return writeCalls.get();
+    }
+    
+    /**
+     * 已写出的消息数 (包括字典定义等控制帧)
+     */
+    public long getMessagesWritten() {
+        return messagesWritten.get();
+    }
+    
+    /**
+     * 已写出的批量帧数量
+     */
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+    
+    void recordWrite() {
+        writeCalls.incrementAndGet();
+    }
+    
+    void recordMessages(int count, boolean batch) {
+        messagesWritten.addAndGet(count);
+        if (batch) {
+            batchesWritten.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 是否正在运行
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * 创建本端的握手信息
+     * 
+     * @param note 附加说明
+     */
+    HandshakeInfo createHandshake(String note) {
+        HandshakeInfo info = new HandshakeInfo(note);
+        if (binaryEnabled) {
+            info.withFeature(HandshakeInfo.FEATURE_BINARY);
+            if (compressionEnabled) {
+                info.withFeature(HandshakeInfo.FEATURE_DEFLATE);
+            }
+        }
+        Supplier<Map<String, Long>> digest = roomDigest;
+        if (digest != null) {
+            info.withFeature(HandshakeInfo.FEATURE_INTEREST);
+            info.setRoomDigest(digest.get());
+        }
+        if (relayEnabled) {
+            info.withFeature(HandshakeInfo.FEATURE_RELAY);
+        }
+        return info;
+    }
+    
+    String getServerId() {
+        return serverId;
+    }
+    
+    String getServerName() {
+        return serverName;
+    }
+    
+    BinaryCodec getCodec() {
+        return codec;
+    }
+    
+    boolean isBinaryEnabled() {
+        return binaryEnabled;
+    }
+    
+    boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+    
+    int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+    
+    long getBatchWindowMillis() {
+        return batchWindowMillis;
+    }
+    
+    int getBatchMaxMessages() {
+        return batchMaxMessages;
+    }
+    
+    int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+    
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+    
+    LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+    
+    Logger getLogger() {
+        return logger;
+    }
+    
+    TransportListener getListener() {
+        return listener;
+    }
+    
+    /**
+     * 监听通道的接受处理器
+     */
+    private class Acceptor implements IoHandler {
+        
+        private final ServerSocketChannel channel;
+        
+        Acceptor(ServerSocketChannel channel) {
+            this.channel = channel;
+        }
+        
+        @Override
+        public void handleReady(SelectionKey key) {
+            SocketChannel client;
+            try {
+                while ((client = channel.accept()) != null) {
+                    accept(client);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("接受客户端连接时出错: " + e.getMessage());
+                }
+            }
+        }
+        
+        private void accept(SocketChannel client) throws IOException {
+            client.configureBlocking(false);
+            configureSocket(client);
+            String address = String.valueOf(client.getRemoteAddress());
+            IoLoop loop = nextLoop();
+            PeerConnection connection = new PeerConnection(NetworkTransport.this, loop, client,
+                PeerConnection.Direction.INBOUND, null, address);
+            loop.execute(() -> {
+                try {
+                    connection.register(SelectionKey.OP_READ);
+                    connection.activate();
+                } catch (IOException e) {
+                    connection.close();
+                }
+            });
+        }
+        
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // 忽略关闭错误
+            }
+        }
+    }
+}
\ No newline at end of file
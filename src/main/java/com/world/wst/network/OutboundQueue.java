@@ -0,0 +1,259 @@
+package com.world.wst.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 有界发送队列
+ * 
+ * 生产者可以是任意线程，消费者只有连接所属的 IoLoop 线程。
+ * 队列满时按 {@link OverflowPolicy} 处理，并记录深度和丢弃计数。
+ * 标记为 {@link #FLAG_ESSENTIAL} 的条目 (握手、字典定义等) 不计入容量，也不会被丢弃，
+ * 否则对端将无法解析之后的数据。标记为 {@link #FLAG_FRAME} 的条目是完整的二进制帧，
+ * 写出时可以合并为批量帧。每个条目记录入队时间，标记为 {@link #FLAG_CHAT} 的聊天消息写出后用于统计发送延迟。
+ * 
+ * @author World Studio
+ */
+public class OutboundQueue {
+    
+    public static final int FLAG_ESSENTIAL = 1;
+    public static final int FLAG_FRAME = 1 << 1;
+    public static final int FLAG_CHAT = 1 << 2;
+    
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private ByteBuffer[] buffers;
+    private byte[] flags;
+    private long[] times;
+    private int head;
+    private int size;
+    private int essentialCount;
+    private long bytes;
+    private int peakSize;
+    private long dropped;
+    
+    /**
+     * 构造函数
+     * 
+     * @param capacity 最大缓冲消息数
+     * @param policy 溢出策略
+     */
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.buffers = new ByteBuffer[Math.min(this.capacity, 16)];
+        this.flags = new byte[buffers.length];
+        this.times = new long[buffers.length];
+    }
+    
+    /**
+     * 入队普通消息
+     * 
+     * @param buffer 待发送数据
+     * @return 队列已满且策略为 {@link OverflowPolicy#DISCONNECT} 时返回 false，调用方应断开连接
+     */
+    public boolean offer(ByteBuffer buffer) {
+        return offer(buffer, 0);
+    }
+    
+    /**
+     * 入队
+     * 
+     * @param buffer 待发送数据
+     * @param entryFlags 条目标记
+     * @return 队列已满且策略为 {@link OverflowPolicy#DISCONNECT} 时返回 false，调用方应断开连接
+     */
+    public synchronized boolean offer(ByteBuffer buffer, int entryFlags) {
+        boolean essential = (entryFlags & FLAG_ESSENTIAL) != 0;
+        if (!essential && size - essentialCount >= capacity) {
+            switch (policy) {
+                case DROP_NEWEST:
+                    dropped++;
+                    return true;
+                case DROP_OLDEST:
+                    removeOldestDroppable();
+                    dropped++;
+                    break;
+                default:
+                    dropped++;
+                    return false;
+            }
+        }
+        
+        if (size == buffers.length) {
+            grow();
+        }
+        int index = (head + size) % buffers.length;
+        buffers[index] = buffer;
+        flags[index] = (byte) entryFlags;
+        times[index] = System.nanoTime();
+        size++;
+        bytes += buffer.remaining();
+        if (essential) {
+            essentialCount++;
+        }
+        if (size > peakSize) {
+            peakSize = size;
+        }
+        return true;
+    }
+    
+    /**
+     * 取出最多 max 个缓冲区
+     * 
+     * @param out 输出数组
+     * @param offset 输出起始位置
+     * @param max 最多取出数量
+     * @return 实际取出数量
+     */
+    public int drainTo(ByteBuffer[] out, int offset, int max) {
+        return drainTo(out, null, offset, max);
+    }
+    
+    /**
+     * 取出最多 max 个缓冲区及其标记
+     * 
+     * @param out 输出数组
+     * @param outFlags 条目标记输出数组，可以为 null
+     * @param offset 输出起始位置
+     * @param max 最多取出数量
+     * @return 实际取出数量
+     */
+    public int drainTo(ByteBuffer[] out, byte[] outFlags, int offset, int max) {
+        return drainTo(out, outFlags, null, offset, max);
+    }
+    
+    /**
+     * 取出最多 max 个缓冲区及其标记和入队时间
+     * 
+     * @param out 输出数组
+     * @param outFlags 条目标记输出数组，可以为 null
+     * @param outTimes 入队时间 ({@link System#nanoTime()}) 输出数组，可以为 null
+     * @param offset 输出起始位置
+     * @param max 最多取出数量
+     * @return 实际取出数量
+     */
+    public synchronized int drainTo(ByteBuffer[] out, byte[] outFlags, long[] outTimes, int offset, int max) {
+        int count = Math.min(max, size);
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = buffers[head];
+            if (outFlags != null) {
+                outFlags[offset + i] = flags[head];
+            }
+            if (outTimes != null) {
+                outTimes[offset + i] = times[head];
+            }
+            if ((flags[head] & FLAG_ESSENTIAL) != 0) {
+                essentialCount--;
+            }
+            bytes -= buffers[head].remaining();
+            buffers[head] = null;
+            head = (head + 1) % buffers.length;
+        }
+        size -= count;
+        return count;
+    }
+    
+    /**
+     * 清空队列
+     */
+    public synchronized void clear() {
+        while (size > 0) {
+            buffers[head] = null;
+            head = (head + 1) % buffers.length;
+            size--;
+        }
+        essentialCount = 0;
+        bytes = 0;
+    }
+    
+    /**
+     * 丢弃最早的一条普通消息，之前的必要条目整体后移一位
+     */
+    private void removeOldestDroppable() {
+        int length = buffers.length;
+        int i = 0;
+        while (i < size && (flags[(head + i) % length] & FLAG_ESSENTIAL) != 0) {
+            i++;
+        }
+        bytes -= buffers[(head + i) % length].remaining();
+        for (int j = i; j > 0; j--) {
+            int to = (head + j) % length;
+            int from = (head + j - 1) % length;
+            buffers[to] = buffers[from];
+            flags[to] = flags[from];
+            times[to] = times[from];
+        }
+        buffers[head] = null;
+        head = (head + 1) % length;
+        size--;
+    }
+    
+    /**
+     * 扩容环形数组，容量上限由普通消息数量控制
+     */
+    private void grow() {
+        int length = buffers.length * 2;
+        ByteBuffer[] newBuffers = new ByteBuffer[length];
+        byte[] newFlags = new byte[length];
+        long[] newTimes = new long[length];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % buffers.length;
+            newBuffers[i] = buffers[index];
+            newFlags[i] = flags[index];
+            newTimes[i] = times[index];
+        }
+        buffers = newBuffers;
+        flags = newFlags;
+        times = newTimes;
+        head = 0;
+    }
+    
+    /**
+     * 当前队列深度
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * 队列中待发送的字节数
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+    
+    /**
+     * 队列是否为空
+     */
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * 历史最大深度
+     */
+    public synchronized int getPeakSize() {
+        return peakSize;
+    }
+    
+    /**
+     * 因溢出丢弃的消息数
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+    
+    /**
+     * 队列容量
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * 溢出策略
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+}
\ No newline at end of file
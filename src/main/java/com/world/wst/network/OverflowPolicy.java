@@ -0,0 +1,32 @@
+package com.world.wst.network;
+
+import java.util.Locale;
+
+/**
+ * 发送队列溢出策略
+ * 
+ * @author World Studio
+ */
+public enum OverflowPolicy {
+    DROP_OLDEST,   // 丢弃最早的消息
+    DROP_NEWEST,   // 丢弃新消息
+    DISCONNECT;    // 断开慢速对端
+    
+    /**
+     * 从配置值解析策略，例如 "drop-oldest"
+     * 
+     * @param value 配置值
+     * @param def 无法识别时的默认值
+     * @return 溢出策略
+     */
+    public static OverflowPolicy fromConfig(String value, OverflowPolicy def) {
+        if (value == null) {
+            return def;
+        }
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return def;
+        }
+    }
+}
\ No newline at end of file
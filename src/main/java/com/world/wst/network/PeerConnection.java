@@ -0,0 +1,766 @@
+package com.world.wst.network;
+
+import com.world.wst.metrics.LatencyTracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * 单个对端连接 (入站或出站)
+ * 
+ * 读写都在所属 IoLoop 线程上完成，{@link #send(NetworkMessage)} 可以从任意线程调用，
+ * 只负责写入有界发送队列并唤醒循环，不会阻塞调用方。
+ * 
+ * 连接建立时使用换行分隔的 JSON。双方在 SERVER_INFO 握手中声明支持二进制编码后，
+ * 各自在发出带 codec 标记的 SERVER_INFO 之后切换为二进制帧，
+ * 接收方读到该标记后切换解码方式，因此旧版本服务器始终使用 JSON。
+ * 
+ * 启用批处理时，普通消息入队后等待一个短暂的窗口再写出，
+ * 二进制连接把同一次写出的多个帧合并为一个批量帧。
+ * 双方都支持 deflate 时，同一次写出的帧整体压缩为一个压缩帧，
+ * 压缩流在整个连接内延续，每次写出以 SYNC_FLUSH 结束。
+ * 
+ * @author World Studio
+ */
+public class PeerConnection implements IoHandler {
+    
+    public enum Direction {
+        INBOUND,   // 其他服务器连入
+        OUTBOUND   // 本服务器连出
+    }
+    
+    private static final int INITIAL_READ_BUFFER = 16 * 1024;
+    private static final int MAX_READ_BUFFER = BinaryCodec.MAX_FRAME_LENGTH + 16;
+    private static final int MAX_GATHER = 64;
+    
+    private final NetworkTransport transport;
+    private final IoLoop loop;
+    private final SocketChannel channel;
+    private final Direction direction;
+    private final String serverKey;
+    private final String remoteAddress;
+    
+    private byte[] inbound;
+    private ByteBuffer readBuffer;
+    private int scanOffset;
+    private boolean binaryIn;
+    private boolean handshakeSent;
+    private volatile BinaryCodec.Decoder decoder;
+    private final Consumer<NetworkMessage> messageSink;
+    
+    private final Object sendLock;
+    private final OutboundQueue writeQueue;
+    private final ByteBuffer[] gather;
+    private final byte[] gatherFlags;
+    private final long[] gatherTimes;
+    private int drained; // 最近一次从队列取出的条目数，全部写出后统计发送延迟
+    private ByteBuffer batchBuffer;
+    private boolean compressOut;
+    private Deflater deflater;
+    private byte[] plain;
+    private ByteBuffer compressBuffer;
+    private volatile long compressInput;
+    private volatile long compressOutput;
+    private volatile long compressNanos;
+    private int gatherIndex;
+    private int gatherCount;
+    private boolean binaryOut;
+    private int dictionarySent;
+    private final AtomicBoolean flushScheduled;
+    private final AtomicBoolean flushTimerArmed;
+    private final long batchWindowMillis;
+    private final int batchMaxMessages;
+    private final int batchMaxBytes;
+    private final int compressionThreshold;
+    private SelectionKey selectionKey;
+    private volatile boolean connected;
+    private volatile boolean closed;
+    
+    private volatile String peerServerId;
+    private volatile String peerServerName;
+    private volatile List<String> peerFeatures;
+    private volatile Set<String> peerNeighbours; // 对端公布的直接相连的服务器，未公布时为 null
+    private final PeerHealth health;
+    
+    PeerConnection(NetworkTransport transport, IoLoop loop, SocketChannel channel,
+                   Direction direction, String serverKey, String remoteAddress) {
+        this.transport = transport;
+        this.loop = loop;
+        this.channel = channel;
+        this.direction = direction;
+        this.serverKey = serverKey;
+        this.remoteAddress = remoteAddress;
+        this.inbound = new byte[INITIAL_READ_BUFFER];
+        this.readBuffer = ByteBuffer.wrap(inbound);
+        this.messageSink = this::dispatchMessage;
+        this.sendLock = new Object();
+        this.writeQueue = new OutboundQueue(transport.getQueueCapacity(), transport.getOverflowPolicy());
+        this.gather = new ByteBuffer[MAX_GATHER];
+        this.gatherFlags = new byte[MAX_GATHER];
+        this.gatherTimes = new long[MAX_GATHER];
+        this.flushScheduled = new AtomicBoolean(false);
+        this.flushTimerArmed = new AtomicBoolean(false);
+        this.batchWindowMillis = transport.getBatchWindowMillis();
+        this.batchMaxMessages = transport.getBatchMaxMessages();
+        this.batchMaxBytes = transport.getBatchMaxBytes();
+        this.compressionThreshold = transport.getCompressionThreshold();
+        this.health = new PeerHealth();
+        this.connected = false;
+        this.closed = false;
+    }
+    
+    /**
+     * 发送一条消息，按当前协商的编码序列化
+     */
+    public void send(NetworkMessage message) {
+        send(transport.serialize(message));
+    }
+    
+    /**
+     * 发送已序列化的消息帧，同一个帧发送给多个连接时只编码一次
+     */
+    public void send(SerializedFrame frame) {
+        if (closed) {
+            return;
+        }
+        
+        boolean accepted;
+        synchronized (sendLock) {
+            accepted = enqueue(frame, frame.getMessage().getType() == NetworkMessage.Type.CHAT_MESSAGE
+                ? OutboundQueue.FLAG_CHAT : 0);
+        }
+        
+        if (!accepted) {
+            transport.getLogger().warning("对端 " + getPeerName() + " 发送队列已满 ("
+                + writeQueue.getCapacity() + ")，断开慢速连接");
+            disconnect();
+            return;
+        }
+        
+        if (batchWindowMillis == 0 || writeQueue.size() >= batchMaxMessages || writeQueue.getBytes() >= batchMaxBytes) {
+            scheduleFlush();
+        } else {
+            scheduleDelayedFlush();
+        }
+    }
+    
+    /**
+     * 按当前编码入队，调用方需持有 sendLock
+     */
+    private boolean enqueue(SerializedFrame frame, int flags) {
+        if (binaryOut) {
+            ByteBuffer buffer = frame.binary();
+            sendDefinitions();
+            return writeQueue.offer(buffer, flags | OutboundQueue.FLAG_FRAME);
+        }
+        return writeQueue.offer(frame.json(), flags);
+    }
+    
+    /**
+     * 关闭连接，可从任意线程调用
+     */
+    public void disconnect() {
+        if (loop.inLoop()) {
+            close();
+        } else {
+            loop.execute(this::close);
+        }
+    }
+    
+    /**
+     * 在循环线程上注册通道
+     */
+    void register(int ops) throws IOException {
+        selectionKey = loop.register(channel, ops, this);
+    }
+    
+    /**
+     * 标记连接已建立并开始读取，出站连接主动发起握手
+     */
+    void activate() {
+        connected = true;
+        selectionKey.interestOps(SelectionKey.OP_READ);
+        if (direction == Direction.OUTBOUND) {
+            handshakeSent = true;
+            sendEssential(transport.createHandshake("连接建立"));
+        }
+        transport.getListener().onConnected(this);
+        flush();
+    }
+    
+    /**
+     * 发送不会被溢出策略丢弃的 SERVER_INFO 消息
+     */
+    private void sendEssential(HandshakeInfo info) {
+        NetworkMessage message = NetworkMessage.createServerInfo(
+            transport.getServerId(), transport.getServerName(), info.toJson());
+        synchronized (sendLock) {
+            enqueue(transport.serialize(message), OutboundQueue.FLAG_ESSENTIAL);
+        }
+        scheduleFlush();
+    }
+    
+    /**
+     * 补发对端尚未收到的字典定义，调用方需持有 sendLock
+     */
+    private void sendDefinitions() {
+        BinaryCodec codec = transport.getCodec();
+        int size = codec.getDictionarySize();
+        while (dictionarySent < size) {
+            writeQueue.offer(codec.getDefinition(dictionarySent++), OutboundQueue.FLAG_ESSENTIAL | OutboundQueue.FLAG_FRAME);
+        }
+    }
+    
+    /**
+     * 处理握手信息，协商编码
+     */
+    private void handleHandshake(NetworkMessage message) {
+        HandshakeInfo info = HandshakeInfo.parse(message.getData());
+        peerServerId = message.getServerId();
+        peerServerName = message.getServerName();
+        peerFeatures = info.getFeatures();
+        
+        // 对端从这条消息之后改用二进制
+        if (HandshakeInfo.FEATURE_BINARY.equals(info.getCodec()) && !binaryIn) {
+            binaryIn = true;
+            decoder = new BinaryCodec.Decoder();
+        }
+        
+        // 对端能够解析二进制，本端切换编码
+        if (transport.isBinaryEnabled() && info.hasFeature(HandshakeInfo.FEATURE_BINARY)) {
+            synchronized (sendLock) {
+                if (binaryOut) {
+                    return;
+                }
+                HandshakeInfo reply = transport.createHandshake(null).setCodec(HandshakeInfo.FEATURE_BINARY);
+                enqueue(transport.serialize(NetworkMessage.createServerInfo(
+                    transport.getServerId(), transport.getServerName(), reply.toJson())), OutboundQueue.FLAG_ESSENTIAL);
+                binaryOut = true;
+                handshakeSent = true;
+                if (transport.isCompressionEnabled() && info.hasFeature(HandshakeInfo.FEATURE_DEFLATE)) {
+                    compressOut = true;
+                    deflater = new Deflater();
+                }
+            }
+            scheduleFlush();
+        }
+        
+        // 入站连接至少回复一次握手，对端据此获得本端的聊天室摘要
+        if (!handshakeSent) {
+            handshakeSent = true;
+            sendEssential(transport.createHandshake(null));
+        }
+    }
+    
+    @Override
+    public void handleReady(SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                finishConnect();
+                return;
+            }
+            if (key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                writePending();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+    
+    /**
+     * 完成非阻塞连接
+     */
+    private void finishConnect() {
+        try {
+            channel.finishConnect();
+        } catch (IOException e) {
+            closed = true;
+            selectionKey.cancel();
+            closeChannel();
+            transport.getListener().onConnectFailed(serverKey, remoteAddress, e);
+            return;
+        }
+        activate();
+    }
+    
+    /**
+     * 读取数据并解码
+     */
+    private void read() throws IOException {
+        while (!closed) {
+            if (!readBuffer.hasRemaining()) {
+                growReadBuffer();
+            }
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+            decodeInbound();
+        }
+    }
+    
+    /**
+     * 按当前编码从读缓冲区中解析完整的消息，剩余的不完整数据移到缓冲区开头
+     */
+    private void decodeInbound() throws IOException {
+        int end = readBuffer.position();
+        int position = 0;
+        while (position < end && !closed) {
+            int consumed = binaryIn
+                ? decoder.decodeFrame(inbound, position, end - position, messageSink)
+                : decodeLine(position, end);
+            if (consumed == 0) {
+                break;
+            }
+            position += consumed;
+        }
+        
+        if (position > 0) {
+            System.arraycopy(inbound, position, inbound, 0, end - position);
+            readBuffer.position(end - position);
+            scanOffset = Math.max(0, scanOffset - position);
+        }
+    }
+    
+    /**
+     * 解析一行 JSON 消息
+     * 
+     * @return 消耗的字节数，没有完整的行时返回 0
+     */
+    private int decodeLine(int start, int end) {
+        for (int i = Math.max(start, scanOffset); i < end; i++) {
+            if (inbound[i] != '\n') {
+                continue;
+            }
+            scanOffset = i + 1;
+            
+            int length = i - start;
+            if (length > 0 && inbound[i - 1] == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                NetworkMessage message = NetworkMessage.fromJson(new String(inbound, start, length, StandardCharsets.UTF_8));
+                if (message != null) {
+                    dispatchMessage(message);
+                }
+            }
+            return i + 1 - start;
+        }
+        scanOffset = end;
+        return 0;
+    }
+    
+    private void growReadBuffer() throws IOException {
+        if (inbound.length >= MAX_READ_BUFFER) {
+            throw new IOException("消息过长: " + remoteAddress);
+        }
+        int position = readBuffer.position();
+        inbound = Arrays.copyOf(inbound, Math.min(MAX_READ_BUFFER, inbound.length * 2));
+        readBuffer = ByteBuffer.wrap(inbound);
+        readBuffer.position(position);
+    }
+    
+    private void dispatchMessage(NetworkMessage message) {
+        health.onActivity();
+        if (message.getType() == NetworkMessage.Type.SERVER_INFO) {
+            handleHandshake(message);
+        }
+        transport.getListener().onMessage(this, message);
+    }
+    
+    /**
+     * 请求在循环线程上写出队列中的数据
+     */
+    private void scheduleFlush() {
+        if (connected && flushScheduled.compareAndSet(false, true)) {
+            loop.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+    
+    /**
+     * 批处理窗口结束后写出，窗口内的后续消息不再重复设置定时
+     */
+    private void scheduleDelayedFlush() {
+        if (connected && flushTimerArmed.compareAndSet(false, true)) {
+            loop.schedule(batchWindowMillis, TimeUnit.MILLISECONDS, () -> {
+                flushTimerArmed.set(false);
+                flush();
+            });
+        }
+    }
+    
+    /**
+     * 在循环线程上写出队列中的数据，写失败时关闭连接
+     */
+    private void flush() {
+        try {
+            writePending();
+        } catch (IOException e) {
+            close();
+        }
+    }
+    
+    /**
+     * 使用聚集写尽可能多地写出队列中的数据
+     * 
+     * 已从队列取出但未写完的缓冲区保留在 gather 中，
+     * 因此溢出策略丢弃旧消息时不会截断正在写出的消息。
+     */
+    private void writePending() throws IOException {
+        if (closed) {
+            return;
+        }
+        
+        while (true) {
+            if (gatherIndex == gatherCount) {
+                recordWriteLatency();
+                gatherIndex = 0;
+                gatherCount = writeQueue.drainTo(gather, gatherFlags, gatherTimes, 0, MAX_GATHER);
+                drained = gatherCount;
+                if (gatherCount == 0) {
+                    break;
+                }
+                int messages = gatherCount;
+                if (compressOut) {
+                    gatherCount = compressFrames(gatherCount);
+                } else if (batchWindowMillis > 0) {
+                    gatherCount = combineBatch(gatherCount);
+                }
+                transport.recordMessages(messages, gatherCount < messages);
+            }
+            
+            channel.write(gather, gatherIndex, gatherCount - gatherIndex);
+            transport.recordWrite();
+            
+            while (gatherIndex < gatherCount && !gather[gatherIndex].hasRemaining()) {
+                gather[gatherIndex++] = null;
+            }
+            
+            if (gatherIndex < gatherCount) {
+                // 套接字缓冲区已满，等待可写事件
+                selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        selectionKey.interestOps(SelectionKey.OP_READ);
+    }
+    
+    /**
+     * 上一次取出的条目已全部写出，按各自的入队时间记录聊天消息的发送延迟
+     * 
+     * 与编码阶段相同只统计聊天消息，心跳、复制等消息不计入。
+     */
+    private void recordWriteLatency() {
+        LatencyTracker tracker = transport.getLatencyTracker();
+        if (tracker != null && drained > 0) {
+            long now = System.nanoTime();
+            String peer = peerServerId != null ? peerServerId : getPeerName();
+            for (int i = 0; i < drained; i++) {
+                if ((gatherFlags[i] & OutboundQueue.FLAG_CHAT) != 0) {
+                    tracker.record(LatencyTracker.Stage.WRITE, null, peer, (now - gatherTimes[i]) / 1000);
+                }
+            }
+        }
+        drained = 0;
+    }
+    
+    /**
+     * 把取出的多个二进制帧合并为一个批量帧，复用连接自己的批量缓冲区
+     * 
+     * 只有取出的条目全部是二进制帧时才合并，合并前的 gather 中一定没有正在写出的数据。
+     * 
+     * @param count 取出的条目数
+     * @return 合并后的条目数
+     */
+    private int combineBatch(int count) {
+        if (count < 2) {
+            return count;
+        }
+        int payload = 0;
+        for (int i = 0; i < count; i++) {
+            if ((gatherFlags[i] & OutboundQueue.FLAG_FRAME) == 0) {
+                return count;
+            }
+            payload += gather[i].remaining();
+        }
+        int bodyLength = BinaryCodec.varIntSize(BinaryCodec.TAG_BATCH) + payload;
+        if (bodyLength > BinaryCodec.MAX_FRAME_LENGTH) {
+            return count;
+        }
+        
+        int total = BinaryCodec.varIntSize(bodyLength) + bodyLength;
+        if (batchBuffer == null || batchBuffer.capacity() < total) {
+            batchBuffer = ByteBuffer.allocate(Math.max(total, 4096));
+        }
+        byte[] array = batchBuffer.array();
+        int offset = BinaryCodec.putVarInt(array, 0, bodyLength);
+        offset = BinaryCodec.putVarInt(array, offset, BinaryCodec.TAG_BATCH);
+        batchBuffer.clear();
+        batchBuffer.position(offset);
+        for (int i = 0; i < count; i++) {
+            batchBuffer.put(gather[i]);
+            gather[i] = null;
+        }
+        batchBuffer.flip();
+        gather[0] = batchBuffer;
+        return 1;
+    }
+    
+    /**
+     * 把取出的多个二进制帧压缩为一个压缩帧，数据量低于阈值时按普通批量处理
+     * 
+     * @param count 取出的条目数
+     * @return 压缩后的条目数
+     */
+    private int compressFrames(int count) {
+        int payload = 0;
+        for (int i = 0; i < count; i++) {
+            if ((gatherFlags[i] & OutboundQueue.FLAG_FRAME) == 0) {
+                return count;
+            }
+            payload += gather[i].remaining();
+        }
+        // 过大的数据压缩后可能略微膨胀，留出余量保证不超过最大帧长度
+        if (payload < compressionThreshold || payload > BinaryCodec.MAX_FRAME_LENGTH / 2) {
+            return batchWindowMillis > 0 ? combineBatch(count) : count;
+        }
+        
+        long begin = System.nanoTime();
+        if (plain == null || plain.length < payload) {
+            plain = new byte[Math.max(payload, 4096)];
+        }
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int length = gather[i].remaining();
+            gather[i].get(plain, offset, length);
+            offset += length;
+            gather[i] = null;
+        }
+        
+        // 预留最大长度的帧头，压缩完成后把实际帧头写在数据之前
+        int reserved = BinaryCodec.varIntSize(BinaryCodec.MAX_FRAME_LENGTH) + BinaryCodec.varIntSize(BinaryCodec.TAG_DEFLATE);
+        if (compressBuffer == null || compressBuffer.capacity() < reserved + payload / 2 + 64) {
+            compressBuffer = ByteBuffer.allocate(Math.max(reserved + payload / 2 + 64, 4096));
+        }
+        deflater.setInput(plain, 0, payload);
+        byte[] out = compressBuffer.array();
+        int end = reserved;
+        while (true) {
+            end += deflater.deflate(out, end, out.length - end, Deflater.SYNC_FLUSH);
+            if (end < out.length) {
+                break;
+            }
+            out = Arrays.copyOf(out, out.length * 2);
+            compressBuffer = ByteBuffer.wrap(out);
+        }
+        
+        int bodyLength = BinaryCodec.varIntSize(BinaryCodec.TAG_DEFLATE) + end - reserved;
+        int start = reserved - BinaryCodec.varIntSize(bodyLength) - BinaryCodec.varIntSize(BinaryCodec.TAG_DEFLATE);
+        BinaryCodec.putVarInt(out, BinaryCodec.putVarInt(out, start, bodyLength), BinaryCodec.TAG_DEFLATE);
+        compressBuffer.clear();
+        compressBuffer.position(start);
+        compressBuffer.limit(end);
+        gather[0] = compressBuffer;
+        
+        compressInput += payload;
+        compressOutput += end - start;
+        compressNanos += System.nanoTime() - begin;
+        return 1;
+    }
+    
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean wasConnected = connected;
+        connected = false;
+        if (selectionKey != null) {
+            selectionKey.cancel();
+        }
+        closeChannel();
+        writeQueue.clear();
+        Arrays.fill(gather, null);
+        gatherIndex = 0;
+        gatherCount = 0;
+        drained = 0;
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (decoder != null) {
+            decoder.close();
+        }
+        if (wasConnected) {
+            transport.getListener().onDisconnected(this);
+        }
+    }
+    
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 忽略关闭错误
+        }
+    }
+    
+    /**
+     * 获取存活检测和往返时间统计
+     */
+    public PeerHealth getHealth() {
+        return health;
+    }
+    
+    /**
+     * 获取连接方向
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+    
+    /**
+     * 获取配置中的服务器键 (仅出站连接)
+     */
+    public String getServerKey() {
+        return serverKey;
+    }
+    
+    /**
+     * 获取对端地址
+     */
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+    
+    /**
+     * 获取握手中声明的对端服务器ID，握手前为 null
+     */
+    public String getPeerServerId() {
+        return peerServerId;
+    }
+    
+    /**
+     * 获取握手中声明的对端服务器名称，握手前为 null
+     */
+    public String getPeerServerName() {
+        return peerServerName;
+    }
+    
+    /**
+     * 对端是否在握手中声明了指定功能，握手前为 false
+     */
+    public boolean hasPeerFeature(String feature) {
+        List<String> features = peerFeatures;
+        return features != null && features.contains(feature);
+    }
+    
+    /**
+     * 对端是否公布了与指定服务器直接相连，旧版本服务器和公布之前为 false
+     */
+    public boolean hasPeerNeighbour(String serverId) {
+        Set<String> neighbours = peerNeighbours;
+        return neighbours != null && neighbours.contains(serverId);
+    }
+    
+    void setPeerNeighbours(Set<String> peerNeighbours) {
+        this.peerNeighbours = peerNeighbours;
+    }
+    
+    /**
+     * 消息帧按本连接当前编码的字节数，用于统计；该编码尚未生成时返回 -1，不会为统计而编码
+     */
+    public int getEncodedSize(SerializedFrame frame) {
+        return frame.getEncodedSize(isBinary());
+    }
+    
+    /**
+     * 获取对端名称，用于日志和统计
+     */
+    public String getPeerName() {
+        if (serverKey != null) {
+            return serverKey;
+        }
+        return peerServerId != null ? peerServerId : remoteAddress;
+    }
+    
+    /**
+     * 当前发送是否使用二进制编码
+     */
+    public boolean isBinary() {
+        synchronized (sendLock) {
+            return binaryOut;
+        }
+    }
+    
+    /**
+     * 发送是否启用了压缩
+     */
+    public boolean isCompressed() {
+        synchronized (sendLock) {
+            return compressOut;
+        }
+    }
+    
+    /**
+     * 压缩比 (压缩后 / 压缩前)，尚未压缩过数据时返回 1
+     */
+    public double getCompressionRatio() {
+        long input = compressInput;
+        return input == 0 ? 1.0 : (double) compressOutput / input;
+    }
+    
+    /**
+     * 压缩和解压累计耗时 (纳秒)，均在 I/O 线程上执行
+     */
+    public long getCompressionNanos() {
+        BinaryCodec.Decoder inbound = decoder;
+        return compressNanos + (inbound != null ? inbound.getInflateNanos() : 0);
+    }
+    
+    /**
+     * 连接是否可用
+     */
+    public boolean isConnected() {
+        return connected && !closed;
+    }
+    
+    /**
+     * 获取发送队列深度
+     */
+    public int getQueueDepth() {
+        return writeQueue.size() + (gatherCount - gatherIndex);
+    }
+    
+    /**
+     * 获取发送队列
+     */
+    public OutboundQueue getOutboundQueue() {
+        return writeQueue;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("PeerConnection{direction=%s, serverKey='%s', remote='%s'}",
+                           direction, serverKey, remoteAddress);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,185 @@
+package com.world.wst.network;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单个连接的存活检测和往返时间统计
+ * 
+ * 心跳探测带有序号，对端回复时原样带回，本端据此计算往返时间：
+ * 平滑往返时间按 1/8 的权重做指数加权移动平均，抖动按 RFC 3550 的方式以 1/16 的权重平滑相邻两次往返时间之差，
+ * 丢包率为最近若干次已过期探测中没有收到回复的比例。
+ * 
+ * 任何入站消息都说明连接仍然存活；连续若干个心跳间隔没有收到任何消息时，调用方应断开连接。
+ * 不回复带序号心跳的旧版本服务器只影响往返时间统计，不会被误判为失联。
+ * 
+ * 回复中还带有对端回复时的时钟，按 NTP 的方式估计时钟偏差：假设去程和回程耗时相同，
+ * 偏差 = 对端时钟 - (探测发出时间 + 收到回复时间) / 2。往返时间越短，不对称造成的误差越小，
+ * 因此取最近若干次样本中往返时间最短的一次。
+ * 
+ * @author World Studio
+ */
+public class PeerHealth {
+    
+    private static final int WINDOW = 16;
+    private static final double RTT_GAIN = 0.125;
+    private static final double JITTER_GAIN = 0.0625;
+    
+    private final long[] probeSequences;
+    private final long[] probeNanos;
+    private final boolean[] probeAcked;
+    private long nextSequence;
+    private volatile boolean activity;
+    private int missed;
+    private long probesSent;
+    private long acksReceived;
+    private double smoothedRtt;
+    private double jitter;
+    private double lastRtt;
+    private final double[] sampleRtt;
+    private final double[] sampleOffset;
+    private int samples;
+    
+    public PeerHealth() {
+        this.probeSequences = new long[WINDOW];
+        this.probeNanos = new long[WINDOW];
+        this.probeAcked = new boolean[WINDOW];
+        this.smoothedRtt = -1;
+        this.lastRtt = -1;
+        this.sampleRtt = new double[WINDOW];
+        this.sampleOffset = new double[WINDOW];
+    }
+    
+    /**
+     * 收到任意入站消息
+     */
+    public void onActivity() {
+        activity = true;
+    }
+    
+    /**
+     * 心跳周期开始：统计上一个周期内是否收到过消息
+     * 
+     * @return 连续没有收到任何消息的周期数
+     */
+    public synchronized int tick() {
+        if (activity) {
+            missed = 0;
+        } else {
+            missed++;
+        }
+        activity = false;
+        return missed;
+    }
+    
+    /**
+     * 登记一次探测
+     * 
+     * @return 探测序号 (从 1 开始)
+     */
+    public synchronized long nextProbe() {
+        long sequence = ++nextSequence;
+        int slot = (int) (sequence % WINDOW);
+        probeSequences[slot] = sequence;
+        probeNanos[slot] = System.nanoTime();
+        probeAcked[slot] = false;
+        probesSent++;
+        return sequence;
+    }
+    
+    /**
+     * 收到探测的回复，超出统计窗口或重复的回复被忽略
+     * 
+     * @param sequence 回复中带回的探测序号
+     * @return 本次往返时间 (毫秒)，回复无效时返回 -1
+     */
+    public synchronized double onAck(long sequence) {
+        int slot = (int) (sequence % WINDOW);
+        if (sequence <= 0 || probeSequences[slot] != sequence || probeAcked[slot]) {
+            return -1;
+        }
+        probeAcked[slot] = true;
+        acksReceived++;
+        double rtt = (System.nanoTime() - probeNanos[slot]) / 1_000_000.0;
+        if (smoothedRtt < 0) {
+            smoothedRtt = rtt;
+        } else {
+            smoothedRtt += RTT_GAIN * (rtt - smoothedRtt);
+        }
+        if (lastRtt >= 0) {
+            jitter += JITTER_GAIN * (Math.abs(rtt - lastRtt) - jitter);
+        }
+        lastRtt = rtt;
+        return rtt;
+    }
+    
+    /**
+     * 记录一次时钟样本
+     * 
+     * @param sentMillis 探测发出时本端的时钟 (毫秒)
+     * @param remoteMillis 对端回复时的时钟 (毫秒)
+     * @param rtt 本次往返时间 (毫秒)
+     */
+    public synchronized void onClockSample(long sentMillis, long remoteMillis, double rtt) {
+        int slot = samples++ % WINDOW;
+        sampleRtt[slot] = rtt;
+        sampleOffset[slot] = remoteMillis - (sentMillis + System.currentTimeMillis()) / 2.0;
+    }
+    
+    /**
+     * 对端时钟减本端时钟的估计值 (毫秒)，旧版本服务器不带时钟，返回 NaN
+     */
+    public synchronized double getClockOffset() {
+        int count = Math.min(samples, WINDOW);
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            if (best < 0 || sampleRtt[i] < sampleRtt[best]) {
+                best = i;
+            }
+        }
+        return best < 0 ? Double.NaN : sampleOffset[best];
+    }
+    
+    /**
+     * 平滑往返时间 (毫秒)，尚未收到回复时返回 -1
+     */
+    public synchronized double getSmoothedRtt() {
+        return smoothedRtt;
+    }
+    
+    /**
+     * 最近的探测中没有收到回复的比例，不包括最新一次尚未过期的探测；对端从未回复时返回 -1
+     */
+    public synchronized double getLossRate() {
+        if (acksReceived == 0) {
+            return -1;
+        }
+        int expired = 0;
+        int lost = 0;
+        for (int i = 0; i < WINDOW; i++) {
+            long sequence = probeSequences[i];
+            if (sequence > 0 && sequence < nextSequence && sequence > nextSequence - WINDOW) {
+                expired++;
+                if (!probeAcked[i]) {
+                    lost++;
+                }
+            }
+        }
+        return expired == 0 ? 0 : (double) lost / expired;
+    }
+    
+    /**
+     * 获取统计信息
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("rttMillis", smoothedRtt);
+        status.put("jitterMillis", jitter);
+        status.put("loss", getLossRate());
+        status.put("missed", missed);
+        status.put("probes", probesSent);
+        status.put("acks", acksReceived);
+        status.put("clockOffsetMillis", getClockOffset());
+        return status;
+    }
+}
\ No newline at end of file
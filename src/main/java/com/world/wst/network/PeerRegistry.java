@@ -0,0 +1,199 @@
+package com.world.wst.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 对端登记表，保证每对服务器之间只使用一条连接
+ * 
+ * 双方互相配置时会各建立一条连接。握手得到对端服务器ID后，两端按同样的规则选择保留哪一条：
+ * 由服务器ID较小的一方发起的连接，因此双方关闭的是同一条连接。
+ * 本服应当等待对端发起连接时，对应的重连监督进入待命状态；保留的连接断开后再恢复重连。
+ * 
+ * @author World Studio
+ */
+public class PeerRegistry {
+    
+    private final String localServerId;
+    private final Consumer<String> debug;
+    private final Map<String, ReconnectSupervisor> supervisors; // 配置中的服务器键 -> 重连监督
+    private final Map<String, PeerConnection> peers; // 服务器ID -> 选定的连接
+    private final AtomicLong duplicatesClosed;
+    
+    /**
+     * 构造函数
+     * 
+     * @param localServerId 本服务器ID
+     * @param debug 调试日志输出
+     */
+    public PeerRegistry(String localServerId, Consumer<String> debug) {
+        this.localServerId = localServerId;
+        this.debug = debug;
+        this.supervisors = new ConcurrentHashMap<>();
+        this.peers = new ConcurrentHashMap<>();
+        this.duplicatesClosed = new AtomicLong();
+    }
+    
+    /**
+     * 登记配置的出站服务器的重连监督
+     */
+    public void addSupervisor(ReconnectSupervisor supervisor) {
+        supervisors.put(supervisor.getServerKey(), supervisor);
+    }
+    
+    /**
+     * 按配置中的服务器键获取重连监督
+     */
+    public ReconnectSupervisor getSupervisor(String serverKey) {
+        return serverKey != null ? supervisors.get(serverKey) : null;
+    }
+    
+    /**
+     * 获取所有重连监督
+     */
+    public Collection<ReconnectSupervisor> getSupervisors() {
+        return supervisors.values();
+    }
+    
+    /**
+     * 握手完成后登记连接，同一服务器已有连接时按规则关闭其中一条
+     * 
+     * 同一连接上的多次握手只有第一次会改变登记表。
+     * 
+     * @return 连接是否被保留
+     */
+    public synchronized boolean register(PeerConnection connection) {
+        String peerId = connection.getPeerServerId();
+        if (peerId == null || !connection.isConnected()) {
+            return false;
+        }
+        ReconnectSupervisor supervisor = findSupervisor(connection, peerId);
+        if (connection.getDirection() == PeerConnection.Direction.OUTBOUND && supervisor != null) {
+            supervisor.setPeerServerId(peerId);
+        }
+        
+        PeerConnection.Direction preferred = localServerId.compareTo(peerId) < 0
+            ? PeerConnection.Direction.OUTBOUND : PeerConnection.Direction.INBOUND;
+        PeerConnection existing = peers.get(peerId);
+        PeerConnection kept = connection;
+        PeerConnection dropped = null;
+        if (existing != null && existing != connection && existing.isConnected()) {
+            // 方向相同时 (例如对端重连) 保留新的连接
+            if (existing.getDirection() != connection.getDirection() && existing.getDirection() == preferred) {
+                kept = existing;
+                dropped = connection;
+            } else {
+                dropped = existing;
+            }
+        }
+        peers.put(peerId, kept);
+        
+        // 应由对端发起连接时停止本服的重连；应由本服发起时继续重连，连上后替换对端发起的连接
+        if (kept.getDirection() == PeerConnection.Direction.INBOUND && preferred == PeerConnection.Direction.INBOUND
+                && supervisor != null) {
+            supervisor.standby();
+        }
+        if (dropped != null) {
+            duplicatesClosed.incrementAndGet();
+            debug.accept("与服务器 " + peerId + " 存在重复连接，保留"
+                + (kept.getDirection() == PeerConnection.Direction.OUTBOUND ? "本服发起" : "对端发起")
+                + "的连接 (" + kept.getRemoteAddress() + ")");
+            dropped.disconnect();
+        }
+        return kept == connection;
+    }
+    
+    /**
+     * 连接断开，选定的对端发起的连接断开时恢复待命中的重连监督
+     */
+    public void unregister(PeerConnection connection) {
+        String peerId = connection.getPeerServerId();
+        if (peerId == null || !peers.remove(peerId, connection)) {
+            return;
+        }
+        if (connection.getDirection() == PeerConnection.Direction.INBOUND) {
+            ReconnectSupervisor supervisor = findSupervisor(connection, peerId);
+            long delay = supervisor != null ? supervisor.resume() : -1;
+            if (delay >= 0) {
+                debug.accept("服务器 " + peerId + " 连入的连接断开，" + delay + " 毫秒后由本服重新连接");
+            }
+        }
+    }
+    
+    /**
+     * 查找连接对应的重连监督，入站连接按对端服务器ID匹配
+     */
+    private ReconnectSupervisor findSupervisor(PeerConnection connection, String peerId) {
+        if (connection.getDirection() == PeerConnection.Direction.OUTBOUND) {
+            return supervisors.get(connection.getServerKey());
+        }
+        for (ReconnectSupervisor supervisor : supervisors.values()) {
+            if (peerId.equals(supervisor.getPeerServerId())) {
+                return supervisor;
+            }
+        }
+        return supervisors.get(peerId);
+    }
+    
+    /**
+     * 从连接列表中选出每个服务器选定的连接，以及尚未完成握手的连接
+     * 
+     * 同一服务器的重复连接在握手后被关闭，关闭前也不再发送消息。
+     */
+    public List<PeerConnection> active(Collection<PeerConnection> connections) {
+        List<PeerConnection> active = new ArrayList<>(connections.size());
+        for (PeerConnection connection : connections) {
+            if (!connection.isConnected()) {
+                continue;
+            }
+            String peerId = connection.getPeerServerId();
+            PeerConnection selected = peerId != null ? peers.get(peerId) : null;
+            if (selected == null || selected == connection) {
+                active.add(connection);
+            }
+        }
+        return active;
+    }
+    
+    /**
+     * 是否已有到指定服务器的选定连接
+     */
+    public boolean isConnected(String peerServerId) {
+        return peerServerId != null && peers.containsKey(peerServerId);
+    }
+    
+    /**
+     * 每个服务器选定的连接方向
+     */
+    public Map<String, String> getLinks() {
+        Map<String, String> links = new TreeMap<>();
+        for (Map.Entry<String, PeerConnection> entry : peers.entrySet()) {
+            links.put(entry.getKey(), entry.getValue().getDirection().name());
+        }
+        return links;
+    }
+    
+    /**
+     * 因重复而关闭的连接数
+     */
+    public long getDuplicatesClosed() {
+        return duplicatesClosed.get();
+    }
+    
+    /**
+     * 停止所有重连监督并清空登记表
+     */
+    public void clear() {
+        for (ReconnectSupervisor supervisor : supervisors.values()) {
+            supervisor.stop();
+        }
+        supervisors.clear();
+        peers.clear();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,350 @@
+package com.world.wst.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站连接的重连监督
+ * 
+ * 每个配置的服务器一个实例。连接失败或断开后按指数退避加随机抖动等待，
+ * 等待通过 I/O 线程的定时任务完成，不占用任何线程。
+ * 断开期间发送的消息保存在有界缓冲区中，超过容量时丢弃最早的消息，
+ * 重连成功后按原顺序发出，超过最长保留时间的消息不再发送。
+ * 
+ * 对端已经通过另一条连接 (对端连入本服) 相连时进入待命状态，不重连也不缓冲，
+ * 那条连接断开后再按退避时间恢复重连。
+ * 
+ * @author World Studio
+ */
+public class ReconnectSupervisor {
+    
+    public enum State {
+        IDLE,        // 尚未启动
+        CONNECTING,  // 正在连接
+        CONNECTED,   // 已连接
+        BACKOFF,     // 等待重连
+        STANDBY,     // 对端已通过其他连接相连
+        STOPPED      // 已停止
+    }
+    
+    private static final int HISTORY_SIZE = 8;
+    
+    private final NetworkTransport transport;
+    private final String serverKey;
+    private final String host;
+    private final int port;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final int bufferCapacity;
+    private final long bufferMaxAgeMillis;
+    
+    private final ArrayDeque<Pending> buffer;
+    private final ArrayDeque<String> history;
+    private State state;
+    private long stateSince;
+    private int attempts;
+    private long nextAttemptAt;
+    private long reconnects;
+    private boolean everConnected;
+    private long bufferDropped;
+    private PeerConnection connection;
+    private volatile String peerServerId;
+    
+    /**
+     * 构造函数
+     * 
+     * @param transport 传输层
+     * @param serverKey 配置中的服务器键
+     * @param host 主机
+     * @param port 端口
+     * @param settings 退避和缓冲设置
+     */
+    public ReconnectSupervisor(NetworkTransport transport, String serverKey, String host, int port, Settings settings) {
+        this.transport = transport;
+        this.serverKey = serverKey;
+        this.host = host;
+        this.port = port;
+        this.initialDelayMillis = Math.max(1, settings.initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, settings.maxDelayMillis);
+        this.multiplier = Math.max(1.0, settings.multiplier);
+        this.jitter = Math.min(1.0, Math.max(0.0, settings.jitter));
+        this.bufferCapacity = Math.max(0, settings.bufferCapacity);
+        this.bufferMaxAgeMillis = settings.bufferMaxAgeMillis;
+        this.buffer = new ArrayDeque<>();
+        this.history = new ArrayDeque<>();
+        this.state = State.IDLE;
+        this.stateSince = System.currentTimeMillis();
+    }
+    
+    /**
+     * 发起第一次连接
+     */
+    public synchronized void start() {
+        if (state == State.IDLE) {
+            connectNow();
+        }
+    }
+    
+    /**
+     * 停止重连并丢弃缓冲的消息，已建立的连接由传输层关闭
+     */
+    public synchronized void stop() {
+        transition(State.STOPPED);
+        buffer.clear();
+        connection = null;
+    }
+    
+    /**
+     * 发送消息帧，未连接时放入缓冲区
+     */
+    public void send(SerializedFrame frame) {
+        PeerConnection current;
+        synchronized (this) {
+            current = connection;
+            if (current == null || !current.isConnected()) {
+                if (state != State.STOPPED && state != State.STANDBY && bufferCapacity > 0) {
+                    if (buffer.size() >= bufferCapacity) {
+                        buffer.pollFirst();
+                        bufferDropped++;
+                    }
+                    buffer.addLast(new Pending(frame, System.currentTimeMillis()));
+                }
+                return;
+            }
+        }
+        current.send(frame);
+    }
+    
+    /**
+     * 连接建立，按顺序发出断开期间缓冲的消息 (在 I/O 线程上调用)
+     */
+    public synchronized void onConnected(PeerConnection connection) {
+        if (state == State.STOPPED || state == State.STANDBY) {
+            connection.disconnect();
+            return;
+        }
+        if (everConnected) {
+            reconnects++;
+        }
+        everConnected = true;
+        this.connection = connection;
+        attempts = 0;
+        transition(State.CONNECTED);
+        
+        long expired = System.currentTimeMillis() - bufferMaxAgeMillis;
+        Pending pending;
+        while ((pending = buffer.pollFirst()) != null) {
+            if (bufferMaxAgeMillis > 0 && pending.queuedAt < expired) {
+                bufferDropped++;
+            } else {
+                connection.send(pending.frame);
+            }
+        }
+    }
+    
+    /**
+     * 连接失败，安排下一次重连 (在 I/O 线程上调用)
+     * 
+     * @return 距离下一次重连的毫秒数，已停止或待命时返回 -1
+     */
+    public synchronized long onConnectFailed() {
+        if (state == State.STANDBY) {
+            return -1;
+        }
+        return scheduleRetry();
+    }
+    
+    /**
+     * 连接断开，安排重连 (在 I/O 线程上调用)
+     * 
+     * @return 距离下一次重连的毫秒数，不是当前连接或已停止时返回 -1
+     */
+    public synchronized long onDisconnected(PeerConnection connection) {
+        if (connection != this.connection) {
+            return -1;
+        }
+        this.connection = null;
+        return scheduleRetry();
+    }
+    
+    /**
+     * 对端已通过其他连接相连：放弃当前连接和待发送的重连，清空缓冲区
+     * 
+     * 当前连接由调用方关闭。
+     */
+    public synchronized void standby() {
+        if (state == State.STOPPED) {
+            return;
+        }
+        transition(State.STANDBY);
+        connection = null;
+        attempts = 0;
+        buffer.clear();
+    }
+    
+    /**
+     * 对端的其他连接已断开，从待命状态恢复，按退避时间重连
+     * 
+     * 等待一个退避时间而不是立即连接，让对端优先重建选定的那条连接。
+     * 
+     * @return 距离下一次重连的毫秒数，不在待命状态时返回 -1
+     */
+    public synchronized long resume() {
+        if (state != State.STANDBY) {
+            return -1;
+        }
+        return scheduleRetry();
+    }
+    
+    private long scheduleRetry() {
+        if (state == State.STOPPED) {
+            return -1;
+        }
+        long delay = nextDelay();
+        attempts++;
+        nextAttemptAt = System.currentTimeMillis() + delay;
+        transition(State.BACKOFF);
+        transport.schedule(delay, TimeUnit.MILLISECONDS, this::retry);
+        return delay;
+    }
+    
+    /**
+     * 第 n 次重连的等待时间: initial * multiplier^n，不超过上限，再随机减少最多 jitter 比例
+     */
+    private long nextDelay() {
+        double base = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, Math.min(attempts, 62)));
+        double factor = 1.0 - jitter * ThreadLocalRandom.current().nextDouble();
+        return Math.max(1, (long) (base * factor));
+    }
+    
+    private synchronized void retry() {
+        if (state == State.BACKOFF) {
+            connectNow();
+        }
+    }
+    
+    private void connectNow() {
+        transition(State.CONNECTING);
+        transport.connect(serverKey, host, port);
+    }
+    
+    private void transition(State next) {
+        if (state == next) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (history.size() >= HISTORY_SIZE) {
+            history.pollFirst();
+        }
+        history.addLast(state + " -> " + next + " @" + now);
+        state = next;
+        stateSince = now;
+    }
+    
+    /**
+     * 获取配置中的服务器键
+     */
+    public String getServerKey() {
+        return serverKey;
+    }
+    
+    /**
+     * 获取对端的服务器ID，握手完成前为 null
+     */
+    public String getPeerServerId() {
+        return peerServerId;
+    }
+    
+    /**
+     * 记录握手中得到的对端服务器ID
+     */
+    public void setPeerServerId(String peerServerId) {
+        this.peerServerId = peerServerId;
+    }
+    
+    /**
+     * 获取当前连接，未连接时返回 null
+     */
+    public synchronized PeerConnection getConnection() {
+        return connection;
+    }
+    
+    /**
+     * 获取当前状态
+     */
+    public synchronized State getState() {
+        return state;
+    }
+    
+    /**
+     * 获取连续失败的次数，连接成功后清零
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+    
+    /**
+     * 获取状态信息: 当前状态、持续时间、重试次数、缓冲消息数和最近的状态变化
+     */
+    public synchronized Map<String, Object> getStatus() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> status = new HashMap<>();
+        status.put("state", state.name());
+        status.put("stateMillis", now - stateSince);
+        status.put("attempts", attempts);
+        status.put("reconnects", reconnects);
+        status.put("nextAttemptMillis", state == State.BACKOFF ? Math.max(0, nextAttemptAt - now) : -1L);
+        status.put("buffered", buffer.size());
+        status.put("bufferDropped", bufferDropped);
+        status.put("transitions", new ArrayList<>(history));
+        return status;
+    }
+    
+    /**
+     * 退避和缓冲设置
+     */
+    public static class Settings {
+        
+        private final long initialDelayMillis;
+        private final long maxDelayMillis;
+        private final double multiplier;
+        private final double jitter;
+        private final int bufferCapacity;
+        private final long bufferMaxAgeMillis;
+        
+        /**
+         * @param initialDelayMillis 第一次重连前的等待时间 (毫秒)
+         * @param maxDelayMillis 最长等待时间 (毫秒)
+         * @param multiplier 每次失败后等待时间的倍数
+         * @param jitter 随机减少的最大比例 (0 ~ 1)
+         * @param bufferCapacity 断开期间最多缓冲的消息数，0 表示不缓冲
+         * @param bufferMaxAgeMillis 缓冲消息的最长保留时间 (毫秒)，0 表示不限
+         */
+        public Settings(long initialDelayMillis, long maxDelayMillis, double multiplier, double jitter,
+                        int bufferCapacity, long bufferMaxAgeMillis) {
+            this.initialDelayMillis = initialDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            this.multiplier = multiplier;
+            this.jitter = jitter;
+            this.bufferCapacity = bufferCapacity;
+            this.bufferMaxAgeMillis = bufferMaxAgeMillis;
+        }
+    }
+    
+    private static class Pending {
+        
+        private final SerializedFrame frame;
+        private final long queuedAt;
+        
+        Pending(SerializedFrame frame, long queuedAt) {
+            this.frame = frame;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.world.wst.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ROOM_CREATE / ROOM_DELETE / PLAYER_JOIN / PLAYER_LEAVE 消息中携带的复制数据
+ * 
+ * 以 JSON 形式放在 {@link NetworkMessage#getData()} 中。聊天室变更带有版本号，
+ * 成员数量是发送方的绝对值，重复接收或乱序接收都不会改变结果。
+ * 
+ * @author World Studio
+ */
+public class ReplicationData {
+    
+    private static final Gson GSON = new Gson();
+    
+    private List<RoomDelta> rooms;
+    private Map<String, Integer> counts;
+    
+    public ReplicationData() {
+        this.rooms = new ArrayList<>();
+        this.counts = new HashMap<>();
+    }
+    
+    /**
+     * 转换为 JSON 字符串
+     */
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+    
+    /**
+     * 从消息的附加数据解析
+     * 
+     * @param data 附加数据
+     * @return 复制数据，格式错误时返回空数据
+     */
+    public static ReplicationData parse(String data) {
+        ReplicationData result = null;
+        if (data != null) {
+            try {
+                result = GSON.fromJson(data, ReplicationData.class);
+            } catch (JsonParseException e) {
+                // 按空数据处理
+            }
+        }
+        if (result == null) {
+            result = new ReplicationData();
+        }
+        if (result.rooms == null) {
+            result.rooms = new ArrayList<>();
+        }
+        if (result.counts == null) {
+            result.counts = new HashMap<>();
+        }
+        return result;
+    }
+    
+    public List<RoomDelta> getRooms() {
+        return rooms;
+    }
+    
+    /**
+     * 发送方每个聊天室的本服成员数量
+     */
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+    
+    public boolean isEmpty() {
+        return rooms.isEmpty() && counts.isEmpty();
+    }
+    
+    /**
+     * 一个聊天室的版本化状态
+     * 
+     * 版本按 (version, origin) 比较，较大的一方获胜；deleted 为 true 时表示删除标记。
+     */
+    public static class RoomDelta {
+        
+        private String name;
+        private String owner;
+        private String origin;
+        private long version;
+        private boolean deleted;
+        
+        public RoomDelta() {
+        }
+        
+        public RoomDelta(String name, String owner, String origin, long version, boolean deleted) {
+            this.name = name;
+            this.owner = owner;
+            this.origin = origin;
+            this.version = version;
+            this.deleted = deleted;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getOwner() {
+            return owner;
+        }
+        
+        /**
+         * 产生该版本的服务器ID
+         */
+        public String getOrigin() {
+            return origin;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+        
+        public boolean isDeleted() {
+            return deleted;
+        }
+        
+        /**
+         * 是否比另一个版本新
+         */
+        public boolean isNewerThan(RoomDelta other) {
+            if (other == null) {
+                return true;
+            }
+            if (version != other.version) {
+                return version > other.version;
+            }
+            return String.valueOf(origin).compareTo(String.valueOf(other.origin)) > 0;
+        }
+        
+        /**
+         * 版本指纹，用于握手时的摘要比较
+         */
+        public long fingerprint() {
+            long hash = version * 0x9E3779B97F4A7C15L;
+            hash ^= String.valueOf(origin).hashCode() * 0xC2B2AE3D27D4EB4FL;
+            hash ^= deleted ? 0x165667B19E3779F9L : 0;
+            return hash ^ (hash >>> 31);
+        }
+    }
+}
\ No newline at end of file
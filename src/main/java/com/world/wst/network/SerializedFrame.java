@@ -0,0 +1,71 @@
+package com.world.wst.network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 已序列化的消息帧
+ * 
+ * 广播时每条消息只创建一个实例，JSON 和二进制两种编码各自在第一次使用时生成一次，
+ * 之后所有连接共享同一份只读字节，每个连接只持有独立读位置的视图。
+ * 
+ * @author World Studio
+ */
+public class SerializedFrame {
+    
+    private final NetworkTransport transport;
+    private final NetworkMessage message;
+    private ByteBuffer json;
+    private ByteBuffer binary;
+    
+    SerializedFrame(NetworkTransport transport, NetworkMessage message) {
+        this.transport = transport;
+        this.message = message;
+    }
+    
+    /**
+     * 获取 JSON 行编码 (以换行结尾)
+     * 
+     * @return 共享字节的只读视图
+     */
+    synchronized ByteBuffer json() {
+        if (json == null) {
+            long start = System.nanoTime();
+            json = ByteBuffer.wrap((message.toJson() + "\n").getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+            transport.recordEncode(message, System.nanoTime() - start);
+        }
+        return json.duplicate();
+    }
+    
+    /**
+     * 获取二进制帧编码，连接需在发送前补发字典定义
+     * 
+     * @return 共享字节的只读视图
+     */
+    synchronized ByteBuffer binary() {
+        if (binary == null) {
+            long start = System.nanoTime();
+            binary = transport.getCodec().encode(message);
+            transport.recordEncode(message, System.nanoTime() - start);
+        }
+        return binary.duplicate();
+    }
+    
+    /**
+     * 已生成的编码的字节数，用于统计，不会为此生成编码
+     * 
+     * @param binary 二进制编码或 JSON 行编码
+     * @return 字节数，该编码尚未生成时返回 -1
+     */
+    public synchronized int getEncodedSize(boolean binary) {
+        ByteBuffer encoded = binary ? this.binary : json;
+        return encoded != null ? encoded.remaining() : -1;
+    }
+    
+    /**
+     * 获取原始消息
+     */
+    public NetworkMessage getMessage() {
+        return message;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.world.wst.network;
+
+import java.io.IOException;
+
+/**
+ * 网络传输层事件回调
+ * 
+ * 所有回调都在 IoLoop 线程上执行，实现方不应在回调中执行阻塞操作。
+ * 
+ * @author World Studio
+ */
+public interface TransportListener {
+    
+    /**
+     * 连接建立 (入站连接被接受或出站连接完成)
+     */
+    void onConnected(PeerConnection connection);
+    
+    /**
+     * 出站连接失败
+     * 
+     * @param serverKey 配置中的服务器键
+     * @param address 目标地址
+     * @param cause 失败原因
+     */
+    void onConnectFailed(String serverKey, String address, IOException cause);
+    
+    /**
+     * 收到一条完整的网络消息
+     */
+    void onMessage(PeerConnection connection, NetworkMessage message);
+    
+    /**
+     * 连接断开
+     */
+    void onDisconnected(PeerConnection connection);
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.world.wst.ratelimit;
+
+/**
+ * 限流参数：每秒补充的令牌数和桶容量
+ * 
+ * @author World Studio
+ */
+public final class RateLimit {
+    
+    /**
+     * 不限流
+     */
+    public static final RateLimit UNLIMITED = new RateLimit(0, 0);
+    
+    private final double ratePerSecond;
+    private final int burst;
+    
+    private RateLimit(double ratePerSecond, int burst) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+    }
+    
+    /**
+     * 创建限流参数，速率不大于 0 时表示不限流
+     * 
+     * @param ratePerSecond 每秒允许的消息数
+     * @param burst 允许连续发送的消息数
+     */
+    public static RateLimit of(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0) {
+            return UNLIMITED;
+        }
+        return new RateLimit(ratePerSecond, Math.max(1, burst));
+    }
+    
+    public boolean isUnlimited() {
+        return ratePerSecond <= 0;
+    }
+    
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+    
+    public int getBurst() {
+        return burst;
+    }
+    
+    @Override
+    public String toString() {
+        return isUnlimited() ? "unlimited" : ratePerSecond + "/s (burst " + burst + ")";
+    }
+}
\ No newline at end of file
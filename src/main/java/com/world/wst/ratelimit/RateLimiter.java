@@ -0,0 +1,89 @@
+package com.world.wst.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按键 (玩家、聊天室、服务器) 分别限流
+ * 
+ * 每个键一个 {@link TokenBucket}，第一次出现时创建为装满的桶。
+ * 检查路径只有一次哈希表查找和一次 CAS，可以在任意线程并发调用。
+ * 
+ * @param <K> 键类型
+ * @author World Studio
+ */
+public class RateLimiter<K> {
+    
+    private final Map<K, TokenBucket> buckets;
+    private final LongAdder rejected;
+    
+    public RateLimiter() {
+        this.buckets = new ConcurrentHashMap<>();
+        this.rejected = new LongAdder();
+    }
+    
+    /**
+     * 尝试为某个键取出一个令牌
+     * 
+     * @param key 键
+     * @param limit 限流参数
+     * @return 是否允许
+     */
+    public boolean tryAcquire(K key, RateLimit limit) {
+        if (limit.isUnlimited()) {
+            return true;
+        }
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(limit.getBurst()));
+        }
+        if (bucket.tryAcquire(TokenBucket.now(), limit.getRatePerSecond(), limit.getBurst())) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+    
+    /**
+     * 移除某个键的令牌桶 (聊天室删除时)
+     */
+    public void remove(K key) {
+        buckets.remove(key);
+    }
+    
+    /**
+     * 移除已经补满的令牌桶
+     * 
+     * 补满的桶与下次第一次出现时新建的桶相同，移除后限流结果不变，只回收空闲键占用的内存；
+     * 尚未补满的桶保留，玩家退出后立即重新进入也不会得到新的突发额度。
+     * 与检查并发执行时，正在移除的桶上最多多放行一条消息。
+     * 
+     * @param limit 限流参数，不限流时移除所有令牌桶
+     * @return 移除的令牌桶数量
+     */
+    public int evictFull(RateLimit limit) {
+        int before = buckets.size();
+        if (limit.isUnlimited()) {
+            buckets.clear();
+        } else {
+            int now = TokenBucket.now();
+            buckets.values().removeIf(bucket -> bucket.isFull(now, limit.getRatePerSecond(), limit.getBurst()));
+        }
+        return Math.max(0, before - buckets.size());
+    }
+    
+    /**
+     * 被拒绝的次数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+    
+    /**
+     * 当前的令牌桶数量
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.world.wst.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * 
+ * 全部状态压缩在一个 long 中：高 32 位为上次补充令牌的时间 (毫秒)，低 32 位为剩余令牌数 (千分之一个令牌为单位)，
+ * 通过 CAS 整体更新，不加锁也不分配对象。速率和容量由调用方每次传入，重载配置后立即生效。
+ * 
+ * 时间使用 {@link #now()} 的 32 位毫秒计数，相邻两次调用的间隔按有符号差计算，
+ * 因此其他线程先写入了更晚的时间时不会被误认为经过了很长时间。
+ * 空闲超过约 24.8 天 (2^31 毫秒) 后有符号差变为负数，负得超过 {@link #MAX_SKEW_MILLIS}
+ * 时不可能来自并发调用，按空闲了很久处理，直接补满。
+ * 
+ * @author World Studio
+ */
+public final class TokenBucket {
+    
+    private static final long UNIT = 1000;
+    private static final long TOKEN_MASK = 0xFFFFFFFFL;
+    private static final long MAX_TOKENS = TOKEN_MASK;
+    private static final long BASE_NANOS = System.nanoTime();
+    private static final int MAX_SKEW_MILLIS = 60_000; // 并发调用之间时间先后颠倒的上限
+    
+    private final AtomicLong state;
+    
+    /**
+     * 创建一个装满的令牌桶
+     * 
+     * @param burst 容量 (令牌数)
+     */
+    public TokenBucket(int burst) {
+        this.state = new AtomicLong(pack(now(), capacity(burst)));
+    }
+    
+    /**
+     * 当前时间 (毫秒)，只用于计算间隔
+     */
+    public static int now() {
+        return (int) ((System.nanoTime() - BASE_NANOS) / 1_000_000L);
+    }
+    
+    /**
+     * 尝试取出一个令牌
+     * 
+     * @param now 当前时间，见 {@link #now()}
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst 容量 (令牌数)
+     * @return 是否取到令牌
+     */
+    public boolean tryAcquire(int now, double ratePerSecond, int burst) {
+        long capacity = capacity(burst);
+        while (true) {
+            long current = state.get();
+            int last = (int) (current >>> 32);
+            long tokens = current & TOKEN_MASK;
+            
+            int elapsed = now - last;
+            int tick = last;
+            if (elapsed < -MAX_SKEW_MILLIS) {
+                // 32 位毫秒计数回绕：上次补充是很久以前
+                tokens = capacity;
+                tick = now;
+            } else if (elapsed > 0) {
+                long refill = (long) (elapsed * ratePerSecond);
+                // 不足千分之一个令牌时不推进时间，避免低速率下补充量被截断为 0
+                if (refill > 0 || tokens >= capacity) {
+                    tokens = Math.min(capacity, tokens + refill);
+                    tick = now;
+                }
+            }
+            if (tokens > capacity) {
+                tokens = capacity;
+            }
+            
+            if (tokens < UNIT) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(tick, tokens - UNIT))) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * 按经过的时间补充后是否已装满，装满的桶与新建的桶没有区别，可以移除
+     * 
+     * @param now 当前时间，见 {@link #now()}
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst 容量 (令牌数)
+     */
+    public boolean isFull(int now, double ratePerSecond, int burst) {
+        long current = state.get();
+        long tokens = current & TOKEN_MASK;
+        int elapsed = now - (int) (current >>> 32);
+        if (elapsed < -MAX_SKEW_MILLIS) {
+            return true;
+        }
+        if (elapsed > 0) {
+            tokens += (long) (elapsed * ratePerSecond);
+        }
+        return tokens >= capacity(burst);
+    }
+    
+    /**
+     * 当前剩余的令牌数 (不补充)
+     */
+    public double getTokens() {
+        return (state.get() & TOKEN_MASK) / (double) UNIT;
+    }
+    
+    private static long capacity(int burst) {
+        return Math.min(MAX_TOKENS, Math.max(1, burst) * UNIT);
+    }
+    
+    private static long pack(int tick, long tokens) {
+        return ((long) tick << 32) | (tokens & TOKEN_MASK);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,524 @@
+package com.world.wst.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 聊天记录日志
+ * 
+ * 所有聊天室的消息按顺序追加到 history 目录下的分段文件中，每条记录格式为
+ * [长度 int][CRC32 int][时间戳 long][聊天室][服务器][玩家][消息] (见 {@link RecordCodec})。
+ * 写入由单独的线程完成，每次取出队列中积累的所有记录，一次写入、最多一次 force (组提交)。
+ * 
+ * 每个聊天室在内存中保存最近若干条记录的位置 (分段编号 + 偏移)，回放时按位置直接读取，
+ * 不需要扫描文件；启动时顺序扫描一次所有分段重建索引，并截断崩溃时写了一半的记录。
+ * 本类不依赖 Bukkit。
+ * 
+ * @author World Studio
+ */
+public class ChatHistoryJournal {
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_LENGTH = RecordCodec.HEADER_LENGTH;
+    private static final int MAX_RECORD_LENGTH = RecordCodec.MAX_RECORD_LENGTH;
+    private static final int MAX_BATCH = 1024;
+    private static final int MAX_PENDING = 65536;
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+    private static final long PRUNE_INTERVAL_MILLIS = 60_000;
+    private static final long MAX_SEGMENT_SIZE = 0xFFFFFFFFL; // 位置的低 32 位是分段内偏移
+    
+    private final Path directory;
+    private final Logger logger;
+    private final int indexDepth;
+    private final long segmentSize;
+    private final long maxTotalSize;
+    private final long maxAgeMillis;
+    private final boolean fsync;
+    private final ConcurrentSkipListMap<Long, Segment> segments;
+    private final Map<String, RoomIndex> indexes;
+    private final BlockingQueue<ChatRecord> pending;
+    private final AtomicLong appended;
+    private final AtomicLong dropped;
+    private final ByteBuffer writeBuffer;
+    private Segment active;
+    private long lastPrune;
+    private Thread writer;
+    private volatile boolean running;
+    
+    /**
+     * 构造函数
+     * 
+     * @param directory 分段文件目录
+     * @param indexDepth 每个聊天室索引的最近记录数，即最多回放的行数
+     * @param segmentSize 单个分段的最大字节数，不超过 4 GB
+     * @param maxTotalSize 所有分段的最大总字节数
+     * @param maxAgeMillis 分段中最新记录的最大保留时间 (毫秒)，0 表示不按时间清理
+     * @param fsync 每次组提交后是否 force 到磁盘
+     * @param logger 日志
+     */
+    public ChatHistoryJournal(Path directory, int indexDepth, long segmentSize, long maxTotalSize,
+                              long maxAgeMillis, boolean fsync, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        this.indexDepth = Math.max(0, indexDepth);
+        this.segmentSize = Math.min(MAX_SEGMENT_SIZE, Math.max(MAX_RECORD_LENGTH, segmentSize));
+        this.maxTotalSize = Math.max(this.segmentSize, maxTotalSize);
+        this.maxAgeMillis = Math.max(0, maxAgeMillis);
+        this.fsync = fsync;
+        this.segments = new ConcurrentSkipListMap<>();
+        this.indexes = new ConcurrentHashMap<>();
+        this.pending = new LinkedBlockingQueue<>(MAX_PENDING);
+        this.appended = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.writeBuffer = ByteBuffer.allocateDirect(256 * 1024);
+        this.running = false;
+    }
+    
+    /**
+     * 打开日志：扫描已有分段重建索引，然后启动写入线程
+     * 
+     * @return 恢复的记录数
+     */
+    public long open() throws IOException {
+        Files.createDirectories(directory);
+        
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warning("忽略无法识别的聊天记录文件: " + name);
+                }
+            }
+        }
+        Collections.sort(ids);
+        
+        long recovered = 0;
+        for (long id : ids) {
+            Segment segment = openSegment(id);
+            segments.put(id, segment);
+            recovered += recover(segment);
+        }
+        
+        if (segments.isEmpty()) {
+            Segment segment = openSegment(1);
+            segments.put(segment.id, segment);
+        }
+        active = segments.lastEntry().getValue();
+        prune(System.currentTimeMillis());
+        
+        running = true;
+        writer = new Thread(this::runWriter, "WST-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return recovered;
+    }
+    
+    /**
+     * 追加一条记录，只入队不阻塞；队列已满时丢弃并计数
+     */
+    public void append(ChatRecord record) {
+        if (!running) {
+            return;
+        }
+        if (!pending.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 读取聊天室最近的记录
+     * 
+     * @param roomName 聊天室名称
+     * @param limit 最多条数
+     * @return 按时间从旧到新排列的记录
+     */
+    public List<ChatRecord> replay(String roomName, int limit) {
+        RoomIndex index = indexes.get(roomName);
+        if (index == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        
+        long[] locations = index.latest(Math.min(limit, indexDepth));
+        List<ChatRecord> records = new ArrayList<>(locations.length);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        for (long location : locations) {
+            Segment segment = segments.get(location >>> 32);
+            if (segment == null) {
+                continue;
+            }
+            try {
+                ChatRecord record = read(segment, location & 0xFFFFFFFFL, header);
+                if (record != null) {
+                    records.add(record);
+                }
+            } catch (IOException e) {
+                // 分段在读取时被清理
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * 关闭日志，写完队列中剩余的记录
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        indexes.clear();
+    }
+    
+    /**
+     * 每个聊天室最多回放的行数
+     */
+    public int getIndexDepth() {
+        return indexDepth;
+    }
+    
+    /**
+     * 当前分段数量
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+    
+    /**
+     * 已写入的记录数
+     */
+    public long getAppendedCount() {
+        return appended.get();
+    }
+    
+    /**
+     * 因队列已满而丢弃的记录数
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    /**
+     * 写入线程：取出积累的记录后一次写入
+     */
+    private void runWriter() {
+        List<ChatRecord> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !pending.isEmpty()) {
+            try {
+                ChatRecord first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                
+                long now = System.currentTimeMillis();
+                if (now - lastPrune >= PRUNE_INTERVAL_MILLIS) {
+                    prune(now);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                logger.warning("写入聊天记录失败: " + e.getMessage());
+                batch.clear();
+            }
+        }
+    }
+    
+    /**
+     * 组提交：编码整批记录，一次写入当前分段，写满时滚动到新分段
+     */
+    private void writeBatch(List<ChatRecord> batch) throws IOException {
+        String[] rooms = new String[batch.size()];
+        long[] locations = new long[batch.size()];
+        int count = 0;
+        
+        writeBuffer.clear();
+        for (ChatRecord record : batch) {
+            byte[] payload = encode(record);
+            if (payload.length > MAX_RECORD_LENGTH) {
+                continue;
+            }
+            int length = HEADER_LENGTH + payload.length;
+            if (active.size + writeBuffer.position() + length > segmentSize && active.size + writeBuffer.position() > 0) {
+                flush();
+                roll();
+            }
+            if (writeBuffer.remaining() < length) {
+                flush();
+            }
+            
+            rooms[count] = record.getRoomName();
+            locations[count] = (active.id << 32) | (active.size + writeBuffer.position());
+            count++;
+            
+            RecordCodec.putRecord(writeBuffer, payload);
+            active.lastTimestamp = Math.max(active.lastTimestamp, record.getTimestamp());
+        }
+        flush();
+        if (fsync) {
+            active.channel.force(false);
+        }
+        
+        for (int i = 0; i < count; i++) {
+            index(rooms[i], locations[i]);
+        }
+        appended.addAndGet(count);
+    }
+    
+    /**
+     * 把缓冲区写入当前分段末尾
+     */
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        active.size += RecordCodec.writeFully(active.channel, writeBuffer, active.size);
+        writeBuffer.clear();
+    }
+    
+    /**
+     * 滚动到新分段，旧分段在滚动前已经 force
+     */
+    private void roll() throws IOException {
+        active.channel.force(false);
+        Segment segment = openSegment(active.id + 1);
+        segments.put(segment.id, segment);
+        active = segment;
+        prune(System.currentTimeMillis());
+    }
+    
+    /**
+     * 按总大小和保留时间删除最旧的分段，当前写入的分段不会被删除
+     */
+    private void prune(long now) {
+        lastPrune = now;
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+        
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            boolean oversize = total > maxTotalSize;
+            boolean expired = maxAgeMillis > 0 && now - oldest.lastTimestamp > maxAgeMillis;
+            if (!oversize && !expired) {
+                break;
+            }
+            segments.remove(oldest.id);
+            oldest.close();
+            total -= oldest.size;
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                logger.warning("删除聊天记录分段失败: " + oldest.path.getFileName() + " - " + e.getMessage());
+            }
+        }
+    }
+    
+    private void index(String roomName, long location) {
+        if (indexDepth == 0) {
+            return;
+        }
+        indexes.computeIfAbsent(roomName, name -> new RoomIndex(indexDepth)).add(location);
+    }
+    
+    /**
+     * 顺序扫描分段重建索引，遇到不完整或校验失败的记录时截断
+     * 
+     * @return 有效记录数
+     */
+    private long recover(Segment segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long fileSize = segment.channel.size();
+        long bufferStart = 0;
+        long position = 0;
+        long records = 0;
+        
+        buffer.limit(0);
+        while (position < fileSize) {
+            int offset = (int) (position - bufferStart);
+            int available = buffer.limit() - offset;
+            if (available < HEADER_LENGTH || available < HEADER_LENGTH + buffer.getInt(offset)) {
+                buffer.position(offset);
+                buffer.compact();
+                bufferStart = position;
+                int read = segment.channel.read(buffer, bufferStart + buffer.position());
+                buffer.flip();
+                if (read <= 0) {
+                    break;
+                }
+                continue;
+            }
+            
+            buffer.position(offset);
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > MAX_RECORD_LENGTH) {
+                break;
+            }
+            if (RecordCodec.checksum(buffer.slice(buffer.position(), length)) != checksum) {
+                break;
+            }
+            
+            long timestamp = buffer.getLong();
+            String roomName = RecordCodec.getString(buffer);
+            index(roomName, (segment.id << 32) | position);
+            segment.lastTimestamp = Math.max(segment.lastTimestamp, timestamp);
+            records++;
+            position += HEADER_LENGTH + length;
+        }
+        
+        if (position < fileSize) {
+            logger.warning("聊天记录分段 " + segment.path.getFileName() + " 在 " + position + " 字节处损坏，已截断");
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+        return records;
+    }
+    
+    /**
+     * 按位置读取一条记录，校验失败时返回 null
+     */
+    private ChatRecord read(Segment segment, long position, ByteBuffer header) throws IOException {
+        header.clear();
+        RecordCodec.readFully(segment.channel, header, position);
+        header.flip();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || length > MAX_RECORD_LENGTH) {
+            return null;
+        }
+        
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        RecordCodec.readFully(segment.channel, payload, position + HEADER_LENGTH);
+        payload.flip();
+        if (RecordCodec.checksum(payload) != checksum) {
+            return null;
+        }
+        return decode(payload);
+    }
+    
+    private static byte[] encode(ChatRecord record) {
+        byte[] room = RecordCodec.utf8(record.getRoomName());
+        byte[] server = RecordCodec.utf8(record.getServerName());
+        byte[] player = RecordCodec.utf8(record.getPlayerName());
+        byte[] message = RecordCodec.utf8(record.getMessage());
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 20 + room.length + server.length + player.length + message.length);
+        buffer.putLong(record.getTimestamp());
+        RecordCodec.putBytes(buffer, room);
+        RecordCodec.putBytes(buffer, server);
+        RecordCodec.putBytes(buffer, player);
+        RecordCodec.putBytes(buffer, message);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+    
+    private static ChatRecord decode(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        String room = RecordCodec.getString(buffer);
+        String server = RecordCodec.getString(buffer);
+        String player = RecordCodec.getString(buffer);
+        String message = RecordCodec.getString(buffer);
+        return new ChatRecord(timestamp, room, server.isEmpty() ? null : server, player, message);
+    }
+    
+    private Segment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel);
+        segment.size = channel.size();
+        return segment;
+    }
+    
+    /**
+     * 日志分段
+     */
+    private static final class Segment {
+        
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private volatile long size;
+        private volatile long lastTimestamp;
+        
+        Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+        
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // 忽略关闭错误
+            }
+        }
+    }
+    
+    /**
+     * 聊天室最近记录位置的环形索引
+     */
+    private static final class RoomIndex {
+        
+        private final long[] locations;
+        private int head;
+        private int count;
+        
+        RoomIndex(int capacity) {
+            this.locations = new long[capacity];
+        }
+        
+        synchronized void add(long location) {
+            locations[head] = location;
+            head = (head + 1) % locations.length;
+            if (count < locations.length) {
+                count++;
+            }
+        }
+        
+        /**
+         * 最近的 limit 个位置，从旧到新
+         */
+        synchronized long[] latest(int limit) {
+            int size = Math.min(limit, count);
+            long[] result = new long[size];
+            int start = head - size;
+            for (int i = 0; i < size; i++) {
+                result[i] = locations[Math.floorMod(start + i, locations.length)];
+            }
+            return result;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.world.wst.storage;
+
+import com.world.wst.metrics.ChatTrace;
+
+/**
+ * 一条聊天记录
+ * 
+ * @author World Studio
+ */
+public class ChatRecord {
+    
+    private final long timestamp;
+    private final String roomName;
+    private final String serverName;
+    private final String playerName;
+    private final String message;
+    private final ChatTrace trace;
+    
+    /**
+     * 构造函数
+     * 
+     * @param timestamp 时间戳 (毫秒)
+     * @param roomName 聊天室名称
+     * @param serverName 来源服务器名称，本服消息为 null
+     * @param playerName 玩家名称
+     * @param message 消息内容
+     */
+    public ChatRecord(long timestamp, String roomName, String serverName, String playerName, String message) {
+        this(timestamp, roomName, serverName, playerName, message, null);
+    }
+    
+    /**
+     * 构造函数，附带延迟跟踪信息 (不写入聊天记录)
+     * 
+     * @param trace 延迟跟踪，未启用延迟统计时为 null
+     */
+    public ChatRecord(long timestamp, String roomName, String serverName, String playerName, String message,
+                      ChatTrace trace) {
+        this.timestamp = timestamp;
+        this.roomName = roomName;
+        this.serverName = serverName;
+        this.playerName = playerName;
+        this.message = message;
+        this.trace = trace;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public String getRoomName() {
+        return roomName;
+    }
+    
+    /**
+     * 来源服务器名称，本服消息为 null
+     */
+    public String getServerName() {
+        return serverName;
+    }
+    
+    /**
+     * 是否来自其他服务器
+     */
+    public boolean isRemote() {
+        return serverName != null;
+    }
+    
+    public String getPlayerName() {
+        return playerName;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    /**
+     * 延迟跟踪信息，未启用延迟统计或从聊天记录读出时为 null
+     */
+    public ChatTrace getTrace() {
+        return trace;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ChatRecord{room='%s', server='%s', player='%s', message='%s', timestamp=%d}",
+                           roomName, serverName, playerName, message, timestamp);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.world.wst.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 存储文件的记录格式
+ * 
+ * 每条记录为 [长度 int][CRC32 int][内容]，内容中的字符串为 varint 长度 + UTF-8。
+ * 
+ * @author World Studio
+ */
+final class RecordCodec {
+    
+    static final int HEADER_LENGTH = 8;
+    static final int MAX_RECORD_LENGTH = 64 * 1024;
+    
+    private static final byte[] EMPTY = new byte[0];
+    
+    private RecordCodec() {
+    }
+    
+    /**
+     * 字符串的 UTF-8 字节，null 视为空字符串
+     */
+    static byte[] utf8(String value) {
+        return value == null ? EMPTY : value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 写入 varint 长度和字节
+     */
+    static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        int value = bytes.length;
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        buffer.put(bytes);
+    }
+    
+    /**
+     * 读取 varint 长度前缀的字符串，buffer 必须是堆缓冲区
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+    
+    /**
+     * 把一条记录 (头部 + 内容) 写入缓冲区
+     */
+    static void putRecord(ByteBuffer buffer, byte[] payload) {
+        buffer.putInt(payload.length);
+        buffer.putInt(checksum(ByteBuffer.wrap(payload)));
+        buffer.put(payload);
+    }
+    
+    /**
+     * 计算剩余字节的 CRC32，不改变缓冲区位置
+     */
+    static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * 依次解析缓冲区中的完整记录，遇到不完整或校验失败的记录时停止
+     * 
+     * @param buffer 文件内容 (堆缓冲区)
+     * @param consumer 接收每条记录的内容
+     * @return 最后一条有效记录之后的偏移
+     */
+    static int forEachRecord(ByteBuffer buffer, Consumer<ByteBuffer> consumer) {
+        int position = buffer.position();
+        while (buffer.limit() - position >= HEADER_LENGTH) {
+            int length = buffer.getInt(position);
+            int checksum = buffer.getInt(position + 4);
+            if (length < 0 || length > MAX_RECORD_LENGTH || buffer.limit() - position - HEADER_LENGTH < length) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(position + HEADER_LENGTH, length);
+            if (checksum(payload) != checksum) {
+                break;
+            }
+            consumer.accept(payload);
+            position += HEADER_LENGTH + length;
+        }
+        return position;
+    }
+    
+    /**
+     * 从指定位置读满缓冲区
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("记录不完整");
+            }
+            position += read;
+        }
+    }
+    
+    /**
+     * 从指定位置写出缓冲区的全部剩余字节
+     * 
+     * @return 写出的字节数
+     */
+    static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,395 @@
+package com.world.wst.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 聊天室状态存储
+ * 
+ * 聊天室的创建、删除以及玩家所在聊天室的变化作为变更记录追加到 rooms.wal，
+ * 累积一定数量后把完整状态写入 rooms.snapshot 并清空日志。启动时先读取快照，再重放日志。
+ * 
+ * 调用方只把变更放入队列，由单独的线程批量写入 (一次写入、最多一次 force)，
+ * 写入线程同时维护一份状态副本用于生成快照，不需要访问调用方的数据结构。
+ * 每条变更都是"设置"或"删除"语义，快照替换后、日志清空前崩溃时重放日志得到的状态不变。
+ * 本类不依赖 Bukkit。
+ * 
+ * @author World Studio
+ */
+public class RoomStateStore {
+    
+    private static final String SNAPSHOT_FILE = "rooms.snapshot";
+    private static final String WAL_FILE = "rooms.wal";
+    private static final byte OP_CREATE = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_JOIN = 3;
+    private static final byte OP_LEAVE = 4;
+    private static final int MAX_BATCH = 1024;
+    
+    private final Path directory;
+    private final Logger logger;
+    private final int snapshotInterval;
+    private final boolean fsync;
+    private final Map<String, StoredRoom> rooms;
+    private final Map<UUID, String> memberships;
+    private final BlockingQueue<byte[]> pending;
+    private FileChannel wal;
+    private long walSize;
+    private int walRecords;
+    private int snapshotRecords;
+    private int replayedRecords;
+    private Thread writer;
+    private volatile boolean running;
+    
+    /**
+     * 构造函数
+     * 
+     * @param directory 存储目录
+     * @param snapshotInterval 日志累积多少条变更后生成快照
+     * @param fsync 每次批量写入后是否 force 到磁盘
+     * @param logger 日志
+     */
+    public RoomStateStore(Path directory, int snapshotInterval, boolean fsync, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.fsync = fsync;
+        this.rooms = new LinkedHashMap<>();
+        this.memberships = new HashMap<>();
+        this.pending = new LinkedBlockingQueue<>();
+        this.running = false;
+    }
+    
+    /**
+     * 读取快照并重放日志，然后启动写入线程
+     * 
+     * 返回后可以通过 {@link #getRooms()} 和 {@link #getMemberships()} 获取恢复的状态。
+     */
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+            int end = RecordCodec.forEachRecord(buffer, payload -> {
+                apply(payload);
+                snapshotRecords++;
+            });
+            if (end < buffer.limit()) {
+                logger.warning("聊天室状态快照在 " + end + " 字节处损坏，之后的内容已忽略");
+            }
+        }
+        
+        wal = FileChannel.open(directory.resolve(WAL_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buffer = ByteBuffer.allocate((int) wal.size());
+        RecordCodec.readFully(wal, buffer, 0);
+        buffer.flip();
+        int end = RecordCodec.forEachRecord(buffer, payload -> {
+            apply(payload);
+            replayedRecords++;
+        });
+        if (end < buffer.limit()) {
+            logger.warning("聊天室状态日志在 " + end + " 字节处不完整，已截断");
+            wal.truncate(end);
+        }
+        walSize = end;
+        walRecords = replayedRecords;
+        
+        running = true;
+        writer = new Thread(this::runWriter, "WST-room-state-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * 关闭存储，写完队列中剩余的变更并生成最终快照
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            logger.warning("写入聊天室状态快照失败: " + e.getMessage());
+        }
+        try {
+            wal.close();
+        } catch (IOException e) {
+            // 忽略关闭错误
+        }
+    }
+    
+    /**
+     * 记录聊天室创建
+     */
+    public void roomCreated(String name, String owner, boolean isDefault, long createdTime) {
+        submit(encodeCreate(name, owner, isDefault, createdTime));
+    }
+    
+    /**
+     * 记录聊天室删除
+     */
+    public void roomDeleted(String name) {
+        byte[] nameBytes = RecordCodec.utf8(name);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 5 + nameBytes.length);
+        buffer.put(OP_DELETE);
+        RecordCodec.putBytes(buffer, nameBytes);
+        submit(toArray(buffer));
+    }
+    
+    /**
+     * 记录玩家加入聊天室
+     */
+    public void playerJoined(UUID playerId, String roomName) {
+        submit(encodeJoin(playerId, roomName));
+    }
+    
+    /**
+     * 记录玩家离开聊天室
+     */
+    public void playerLeft(UUID playerId) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 16);
+        buffer.put(OP_LEAVE);
+        buffer.putLong(playerId.getMostSignificantBits());
+        buffer.putLong(playerId.getLeastSignificantBits());
+        submit(toArray(buffer));
+    }
+    
+    /**
+     * 恢复的聊天室，只应在 {@link #open()} 之后、修改状态之前读取
+     */
+    public Collection<StoredRoom> getRooms() {
+        return new ArrayList<>(rooms.values());
+    }
+    
+    /**
+     * 恢复的玩家所在聊天室，只应在 {@link #open()} 之后、修改状态之前读取
+     */
+    public Map<UUID, String> getMemberships() {
+        return new HashMap<>(memberships);
+    }
+    
+    /**
+     * 启动时从快照读取的记录数
+     */
+    public int getSnapshotRecords() {
+        return snapshotRecords;
+    }
+    
+    /**
+     * 启动时从日志重放的记录数
+     */
+    public int getReplayedRecords() {
+        return replayedRecords;
+    }
+    
+    private void submit(byte[] payload) {
+        if (running) {
+            pending.add(payload);
+        }
+    }
+    
+    private static byte[] encodeCreate(String name, String owner, boolean isDefault, long createdTime) {
+        byte[] nameBytes = RecordCodec.utf8(name);
+        byte[] ownerBytes = RecordCodec.utf8(owner);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 10 + nameBytes.length + ownerBytes.length + 1 + 8);
+        buffer.put(OP_CREATE);
+        RecordCodec.putBytes(buffer, nameBytes);
+        RecordCodec.putBytes(buffer, ownerBytes);
+        buffer.put((byte) (isDefault ? 1 : 0));
+        buffer.putLong(createdTime);
+        return toArray(buffer);
+    }
+    
+    private static byte[] encodeJoin(UUID playerId, String roomName) {
+        byte[] nameBytes = RecordCodec.utf8(roomName);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 16 + 5 + nameBytes.length);
+        buffer.put(OP_JOIN);
+        buffer.putLong(playerId.getMostSignificantBits());
+        buffer.putLong(playerId.getLeastSignificantBits());
+        RecordCodec.putBytes(buffer, nameBytes);
+        return toArray(buffer);
+    }
+    
+    private static byte[] toArray(ByteBuffer buffer) {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+    
+    /**
+     * 写入线程：取出积累的变更后一次写入日志，累积足够多时生成快照
+     */
+    private void runWriter() {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !pending.isEmpty()) {
+            try {
+                byte[] first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, MAX_BATCH - 1);
+                writeBatch(batch);
+                batch.clear();
+                
+                if (walRecords >= snapshotInterval) {
+                    writeSnapshot();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                logger.warning("写入聊天室状态失败: " + e.getMessage());
+                batch.clear();
+            }
+        }
+    }
+    
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        int size = 0;
+        for (byte[] payload : batch) {
+            size += RecordCodec.HEADER_LENGTH + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] payload : batch) {
+            RecordCodec.putRecord(buffer, payload);
+            apply(ByteBuffer.wrap(payload));
+        }
+        buffer.flip();
+        walSize += RecordCodec.writeFully(wal, buffer, walSize);
+        if (fsync) {
+            wal.force(false);
+        }
+        walRecords += batch.size();
+    }
+    
+    /**
+     * 把状态副本写入临时文件后原子替换快照，然后清空日志
+     */
+    private void writeSnapshot() throws IOException {
+        List<byte[]> records = new ArrayList<>(rooms.size() + memberships.size());
+        int size = 0;
+        for (StoredRoom room : rooms.values()) {
+            records.add(encodeCreate(room.getName(), room.getOwner(), room.isDefault(), room.getCreatedTime()));
+        }
+        for (Map.Entry<UUID, String> entry : memberships.entrySet()) {
+            records.add(encodeJoin(entry.getKey(), entry.getValue()));
+        }
+        for (byte[] record : records) {
+            size += RecordCodec.HEADER_LENGTH + record.length;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] record : records) {
+            RecordCodec.putRecord(buffer, record);
+        }
+        buffer.flip();
+        
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordCodec.writeFully(channel, buffer, 0);
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        
+        wal.truncate(0);
+        wal.force(true);
+        walSize = 0;
+        walRecords = 0;
+    }
+    
+    /**
+     * 把一条变更应用到状态副本
+     */
+    private void apply(ByteBuffer payload) {
+        byte op = payload.get();
+        switch (op) {
+            case OP_CREATE: {
+                String name = RecordCodec.getString(payload);
+                String owner = RecordCodec.getString(payload);
+                boolean isDefault = payload.get() != 0;
+                long createdTime = payload.getLong();
+                rooms.put(name, new StoredRoom(name, owner, isDefault, createdTime));
+                break;
+            }
+            case OP_DELETE:
+                rooms.remove(RecordCodec.getString(payload));
+                break;
+            case OP_JOIN: {
+                UUID playerId = new UUID(payload.getLong(), payload.getLong());
+                memberships.put(playerId, RecordCodec.getString(payload));
+                break;
+            }
+            case OP_LEAVE:
+                memberships.remove(new UUID(payload.getLong(), payload.getLong()));
+                break;
+            default:
+                logger.warning("未知的聊天室状态记录类型: " + op);
+        }
+    }
+    
+    /**
+     * 已保存的聊天室定义
+     */
+    public static final class StoredRoom {
+        
+        private final String name;
+        private final String owner;
+        private final boolean isDefault;
+        private final long createdTime;
+        
+        StoredRoom(String name, String owner, boolean isDefault, long createdTime) {
+            this.name = name;
+            this.owner = owner;
+            this.isDefault = isDefault;
+            this.createdTime = createdTime;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getOwner() {
+            return owner;
+        }
+        
+        public boolean isDefault() {
+            return isDefault;
+        }
+        
+        /**
+         * 创建时间 (毫秒时间戳)
+         */
+        public long getCreatedTime() {
+            return createdTime;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.world.wst.manager;
+
+import com.world.wst.data.ChatRoom;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RoomDirectory} 的并发压力测试
+ * 
+ * 多个线程随机创建、删除聊天室，加入、离开、下线和重新上线，结束后检查聊天室、成员、
+ * 玩家所在聊天室记录和变化通知之间的一致性。
+ * 
+ * @author World Studio
+ */
+class RoomDirectoryStressTest {
+    
+    private static final String DEFAULT_ROOM = "lobby";
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 300_000;
+    private static final int PLAYERS = 300;
+    private static final int ROOM_NAMES = 30;
+    private static final int OWNERS = 5;
+    private static final int MAX_ROOMS = 20;
+    private static final int MAX_ROOMS_PER_PLAYER = 3;
+    
+    @Test
+    void deleteClearsOfflineMembers() {
+        Recorder recorder = new Recorder();
+        RoomDirectory directory = new RoomDirectory(recorder);
+        directory.create(defaultRoom(), MAX_ROOMS, MAX_ROOMS_PER_PLAYER);
+        assertTrue(directory.create(new ChatRoom("build", "owner0", false), MAX_ROOMS, MAX_ROOMS_PER_PLAYER));
+        
+        Player online = player(1);
+        Player offline = player(2);
+        assertTrue(directory.join(online, "build"));
+        assertTrue(directory.join(offline, "build"));
+        directory.disconnect(offline);
+        
+        assertNotNull(directory.delete("build", DEFAULT_ROOM));
+        // 在线成员移到默认聊天室，下线的成员不再指向已删除的聊天室
+        assertEquals(DEFAULT_ROOM, directory.getPlayerRoom(online.getUniqueId()));
+        assertNull(directory.getPlayerRoom(offline.getUniqueId()));
+        assertNull(recorder.playerRooms.get(offline.getUniqueId()));
+        assertFalse(directory.rejoin(offline));
+        assertEquals(0, directory.getOwnedRoomCount("owner0"));
+    }
+    
+    @Test
+    void changeOwnerKeepsMembersAndMovesOwnedCount() {
+        RoomDirectory directory = new RoomDirectory(new Recorder());
+        directory.create(defaultRoom(), MAX_ROOMS, MAX_ROOMS_PER_PLAYER);
+        assertTrue(directory.create(new ChatRoom("build", "owner0", false), MAX_ROOMS, MAX_ROOMS_PER_PLAYER));
+        Player member = player(1);
+        assertTrue(directory.join(member, "build"));
+        
+        // 其他服务器同名聊天室的版本较新：保留聊天室和成员，创建者改为对方的
+        assertTrue(directory.changeOwner("build", "owner1"));
+        assertFalse(directory.changeOwner("build", "owner1"));
+        assertFalse(directory.changeOwner(DEFAULT_ROOM, "owner1"));
+        assertEquals("owner1", directory.getRoom("build").getOwner());
+        assertEquals("build", directory.getPlayerRoom(member.getUniqueId()));
+        assertEquals(0, directory.getOwnedRoomCount("owner0"));
+        assertEquals(1, directory.getOwnedRoomCount("owner1"));
+        
+        assertNotNull(directory.delete("build", DEFAULT_ROOM));
+        assertEquals(0, directory.getOwnedRoomCount("owner1"));
+    }
+    
+    @Test
+    void concurrentOperationsKeepDirectoryConsistent() throws Exception {
+        Recorder recorder = new Recorder();
+        RoomDirectory directory = new RoomDirectory(recorder);
+        directory.create(defaultRoom(), MAX_ROOMS, MAX_ROOMS_PER_PLAYER);
+        Player[] players = new Player[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = player(i);
+        }
+        
+        AtomicLong overLimit = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    Player player = players[random.nextInt(PLAYERS)];
+                    String name = "room" + random.nextInt(ROOM_NAMES);
+                    int operation = random.nextInt(100);
+                    if (operation < 10) {
+                        ChatRoom room = new ChatRoom(name, "owner" + random.nextInt(OWNERS), false);
+                        room.setMaxMembers(10);
+                        directory.create(room, MAX_ROOMS, MAX_ROOMS_PER_PLAYER);
+                    } else if (operation < 18) {
+                        directory.delete(name, DEFAULT_ROOM);
+                    } else if (operation < 70) {
+                        directory.join(player, random.nextInt(4) == 0 ? DEFAULT_ROOM : name);
+                    } else if (operation < 80) {
+                        directory.leave(player);
+                    } else if (operation < 90) {
+                        directory.disconnect(player);
+                    } else {
+                        directory.rejoin(player);
+                    }
+                    if (directory.getRoomCount() > MAX_ROOMS) {
+                        overLimit.incrementAndGet();
+                    }
+                }
+            }, "RoomDirectoryStress-" + t);
+            thread.setUncaughtExceptionHandler((ignored, e) -> failure.compareAndSet(null, e));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("工作线程异常", failure.get());
+        }
+        assertEquals(0, overLimit.get(), "聊天室数量超过上限");
+        
+        // 每个在线成员只在一个聊天室，在线数组与成员表一致，且与所在聊天室记录相符
+        Set<UUID> online = new HashSet<>();
+        Map<String, Integer> owned = new HashMap<>();
+        for (ChatRoom room : directory.getRooms()) {
+            assertTrue(room.getMemberCount() <= room.getMaxMembers(), room.getName() + " 超过人数上限");
+            Player[] members = room.getOnlineMembers();
+            assertEquals(room.getMemberCount(), members.length, room.getName() + " 在线数组与成员表不一致");
+            for (Player member : members) {
+                UUID playerId = member.getUniqueId();
+                assertTrue(online.add(playerId), playerId + " 出现在多个聊天室或重复出现");
+                assertTrue(room.isMember(playerId), room.getName());
+                assertEquals(room.getName(), directory.getPlayerRoom(playerId));
+            }
+            if (!room.isDefault()) {
+                owned.merge(room.getOwner(), 1, Integer::sum);
+            }
+        }
+        
+        // 所在聊天室记录都指向存在的聊天室 (包括已下线的玩家)，并与变化通知一致
+        for (Player player : players) {
+            UUID playerId = player.getUniqueId();
+            String roomName = directory.getPlayerRoom(playerId);
+            if (roomName != null) {
+                assertNotNull(directory.getRoom(roomName), playerId + " 指向已删除的聊天室 " + roomName);
+            }
+            assertEquals(roomName, recorder.playerRooms.get(playerId), playerId + " 的变化通知与记录不一致");
+        }
+        
+        // 聊天室数量、每个创建者的聊天室数量与创建、删除通知一致
+        assertEquals(directory.getRooms().size(), directory.getRoomCount());
+        assertEquals(recorder.created.get() - recorder.deleted.get(), directory.getRoomCount());
+        for (int i = 0; i < OWNERS; i++) {
+            String owner = "owner" + i;
+            int count = owned.getOrDefault(owner, 0);
+            assertEquals(count, directory.getOwnedRoomCount(owner), owner);
+            assertTrue(count <= MAX_ROOMS_PER_PLAYER, owner);
+        }
+    }
+    
+    private static ChatRoom defaultRoom() {
+        ChatRoom room = new ChatRoom(DEFAULT_ROOM, "server", true);
+        room.setMaxMembers(PLAYERS);
+        return room;
+    }
+    
+    /**
+     * 只实现 {@link Player#getUniqueId()} 的玩家
+     */
+    private static Player player(int index) {
+        UUID playerId = new UUID(0, index);
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] {Player.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getUniqueId":
+                        return playerId;
+                    case "hashCode":
+                        return playerId.hashCode();
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "Player" + index;
+                    default:
+                        return null;
+                }
+            });
+    }
+    
+    /**
+     * 按变化通知重建玩家所在聊天室，并统计创建和删除
+     */
+    private static class Recorder implements RoomDirectory.Changes {
+        
+        final Map<UUID, String> playerRooms = new ConcurrentHashMap<>();
+        final AtomicLong created = new AtomicLong();
+        final AtomicLong deleted = new AtomicLong();
+        
+        @Override
+        public void roomCreated(ChatRoom room) {
+            created.incrementAndGet();
+        }
+        
+        @Override
+        public void roomDeleted(ChatRoom room) {
+            deleted.incrementAndGet();
+        }
+        
+        @Override
+        public void ownerChanged(ChatRoom room) {
+            // 压力测试不更改创建者
+        }
+        
+        @Override
+        public void playerJoined(UUID playerId, String roomName) {
+            playerRooms.put(playerId, roomName);
+        }
+        
+        @Override
+        public void playerLeft(UUID playerId) {
+            playerRooms.remove(playerId);
+        }
+        
+        @Override
+        public void memberCountChanged(String roomName) {
+            // 成员数量由聊天室本身检查
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,297 @@
+package com.world.wst.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 二进制编解码与 JSON 编码的往返和大小比较，覆盖 {@link NetworkMessage.Type} 的所有类型
+ * 
+ * @author World Studio
+ */
+class BinaryCodecTest {
+    
+    @Test
+    void binaryRoundTripForEveryType() throws IOException {
+        BinaryCodec codec = new BinaryCodec();
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        int definitionsSent = 0;
+        
+        for (NetworkMessage.Type type : NetworkMessage.Type.values()) {
+            for (NetworkMessage message : samples(type)) {
+                ByteBuffer frame = codec.encode(message);
+                // 与连接相同：发送引用新字典 id 的消息前先发送定义
+                while (definitionsSent < codec.getDictionarySize()) {
+                    assertTrue(decode(decoder, codec.getDefinition(definitionsSent++)).isEmpty());
+                }
+                List<NetworkMessage> decoded = decode(decoder, frame);
+                assertEquals(1, decoded.size(), type.name());
+                assertSameMessage(message, decoded.get(0));
+            }
+        }
+    }
+    
+    @Test
+    void jsonRoundTripForEveryType() {
+        for (NetworkMessage.Type type : NetworkMessage.Type.values()) {
+            for (NetworkMessage message : samples(type)) {
+                assertSameMessage(message, NetworkMessage.fromJson(message.toJson()));
+            }
+        }
+    }
+    
+    @Test
+    void decodesStreamSplitAtEveryByte() throws IOException {
+        BinaryCodec codec = new BinaryCodec();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        List<NetworkMessage> sent = new ArrayList<>();
+        int definitionsSent = 0;
+        for (NetworkMessage.Type type : NetworkMessage.Type.values()) {
+            for (NetworkMessage message : samples(type)) {
+                ByteBuffer frame = codec.encode(message);
+                while (definitionsSent < codec.getDictionarySize()) {
+                    write(stream, codec.getDefinition(definitionsSent++));
+                }
+                write(stream, frame);
+                sent.add(message);
+            }
+        }
+        
+        // 每次只多到达一个字节，不完整的帧返回 0 并等待更多数据
+        byte[] bytes = stream.toByteArray();
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        List<NetworkMessage> received = new ArrayList<>();
+        int start = 0;
+        for (int end = 1; end <= bytes.length; end++) {
+            int consumed;
+            while (start < end && (consumed = decoder.decodeFrame(bytes, start, end - start, received::add)) > 0) {
+                start += consumed;
+            }
+        }
+        assertEquals(bytes.length, start);
+        assertEquals(sent.size(), received.size());
+        for (int i = 0; i < sent.size(); i++) {
+            assertSameMessage(sent.get(i), received.get(i));
+        }
+    }
+    
+    @Test
+    void binaryIsSmallerThanJsonForEveryType() {
+        BinaryCodec codec = new BinaryCodec();
+        for (NetworkMessage.Type type : NetworkMessage.Type.values()) {
+            NetworkMessage message = samples(type).get(0);
+            int first = codec.encode(message).remaining();
+            // 字典建立后同一服务器、同一聊天室的后续消息只写字典引用
+            int steady = codec.encode(message).remaining();
+            int json = (message.toJson() + "\n").getBytes(StandardCharsets.UTF_8).length;
+            
+            assertTrue(steady <= first, type.name());
+            assertTrue(steady < json, type + ": binary " + steady + " >= json " + json);
+        }
+    }
+    
+    @Test
+    void decodesBatchAndDeflateFrames() throws IOException {
+        BinaryCodec codec = new BinaryCodec();
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        List<NetworkMessage> sent = new ArrayList<>();
+        int definitionsSent = 0;
+        for (NetworkMessage.Type type : NetworkMessage.Type.values()) {
+            for (NetworkMessage message : samples(type)) {
+                ByteBuffer frame = codec.encode(message);
+                while (definitionsSent < codec.getDictionarySize()) {
+                    write(frames, codec.getDefinition(definitionsSent++));
+                }
+                write(frames, frame);
+                sent.add(message);
+            }
+        }
+        byte[] plain = frames.toByteArray();
+        
+        // 与连接相同：批量帧直接拼接多个帧，压缩帧是多个帧拼接后的 deflate 数据
+        assertDecodes(sent, wrap(BinaryCodec.TAG_BATCH, plain));
+        assertDecodes(sent, wrap(BinaryCodec.TAG_DEFLATE, deflate(plain)));
+    }
+    
+    @Test
+    void rejectsNestedBatchAndDeflateFrames() {
+        byte[] message = toBytes(new BinaryCodec().encode(NetworkMessage.createHeartbeat("lobby-1", null)));
+        byte[] batch = wrap(BinaryCodec.TAG_BATCH, message);
+        byte[] compressed = wrap(BinaryCodec.TAG_DEFLATE, deflate(message));
+        
+        assertRejected(wrap(BinaryCodec.TAG_BATCH, batch));
+        assertRejected(wrap(BinaryCodec.TAG_DEFLATE, deflate(batch)));
+        assertRejected(wrap(BinaryCodec.TAG_DEFLATE, deflate(compressed)));
+        
+        // 不足最大帧长度的几十万层空批量帧：必须以 IOException 拒绝，而不是耗尽栈
+        byte[] deep = nestedEmptyBatches(200_000);
+        assertTrue(deep.length <= BinaryCodec.MAX_FRAME_LENGTH + 4, "测试帧长度 " + deep.length);
+        assertRejected(deep);
+    }
+    
+    /**
+     * 每种类型的样例消息，包括带消息ID和转发跳数、含非 ASCII 字符以及可选字段为空的情况
+     */
+    private static List<NetworkMessage> samples(NetworkMessage.Type type) {
+        List<NetworkMessage> samples = new ArrayList<>();
+        switch (type) {
+            case CHAT_MESSAGE: {
+                samples.add(NetworkMessage.createChatMessage("lobby-1", "大厅服务器", "全服大厅", "Steve",
+                    "&a大家好&r，今天晚上八点在主城广场集合！"));
+                NetworkMessage relayed = NetworkMessage.createChatMessage("lobby-1", "大厅服务器", "全服大厅", "Alex", "");
+                relayed.setSequence(1_700_000_000_000_000L);
+                relayed.setHops(3);
+                samples.add(relayed);
+                break;
+            }
+            case ROOM_CREATE:
+            case ROOM_DELETE: {
+                ReplicationData data = new ReplicationData();
+                data.getRooms().add(new ReplicationData.RoomDelta("建筑交流", "Steve", "lobby-1",
+                    1_700_000_000_123L, type == NetworkMessage.Type.ROOM_DELETE));
+                NetworkMessage message = NetworkMessage.createReplication(type, "lobby-1", "大厅服务器", data);
+                message.setSequence(42);
+                samples.add(message);
+                break;
+            }
+            case PLAYER_JOIN:
+            case PLAYER_LEAVE: {
+                ReplicationData data = new ReplicationData();
+                data.getCounts().put("全服大厅", type == NetworkMessage.Type.PLAYER_JOIN ? 12 : 0);
+                samples.add(NetworkMessage.createReplication(type, "lobby-1", "大厅服务器", data));
+                // 握手时转交的其他服务器成员数量不带服务器名称
+                samples.add(NetworkMessage.createReplication(type, "survival", null, data));
+                break;
+            }
+            case HEARTBEAT: {
+                NetworkMessage probe = NetworkMessage.createHeartbeatProbe("lobby-1", "大厅服务器", 7);
+                samples.add(probe);
+                samples.add(NetworkMessage.createHeartbeatAck("survival", "生存服务器", probe));
+                samples.add(NetworkMessage.createHeartbeat("lobby-1", "大厅服务器"));
+                break;
+            }
+            case SERVER_INFO: {
+                Map<String, Long> digest = new HashMap<>();
+                digest.put("建筑交流", 0x1234_5678_9ABCL);
+                HandshakeInfo info = new HandshakeInfo("连接建立")
+                    .withFeature(HandshakeInfo.FEATURE_BINARY)
+                    .withFeature(HandshakeInfo.FEATURE_RELAY)
+                    .setRoomDigest(digest);
+                samples.add(NetworkMessage.createServerInfo("lobby-1", "大厅服务器", info.toJson()));
+                break;
+            }
+            default:
+                fail("缺少消息类型 " + type + " 的样例");
+        }
+        return samples;
+    }
+    
+    private static List<NetworkMessage> decode(BinaryCodec.Decoder decoder, ByteBuffer frame) throws IOException {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        List<NetworkMessage> messages = new ArrayList<>();
+        assertEquals(bytes.length, decoder.decodeFrame(bytes, 0, bytes.length, messages::add));
+        return messages;
+    }
+    
+    private static void write(ByteArrayOutputStream stream, ByteBuffer frame) {
+        byte[] bytes = toBytes(frame);
+        stream.write(bytes, 0, bytes.length);
+    }
+    
+    private static byte[] toBytes(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return bytes;
+    }
+    
+    /**
+     * 在内容前加上标签和帧长度
+     */
+    private static byte[] wrap(int tag, byte[] payload) {
+        int bodyLength = BinaryCodec.varIntSize(tag) + payload.length;
+        byte[] frame = new byte[BinaryCodec.varIntSize(bodyLength) + bodyLength];
+        int offset = BinaryCodec.putVarInt(frame, BinaryCodec.putVarInt(frame, 0, bodyLength), tag);
+        System.arraycopy(payload, 0, frame, offset, payload.length);
+        return frame;
+    }
+    
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            byte[] out = new byte[data.length + 64];
+            int length = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * 从内向外逐层包装的空批量帧
+     */
+    private static byte[] nestedEmptyBatches(int depth) {
+        byte[] frame = new byte[depth * 4];
+        byte[] header = new byte[8];
+        int start = frame.length;
+        for (int i = 0; i < depth; i++) {
+            int bodyLength = BinaryCodec.varIntSize(BinaryCodec.TAG_BATCH) + frame.length - start;
+            int headerLength = BinaryCodec.putVarInt(header, BinaryCodec.putVarInt(header, 0, bodyLength), BinaryCodec.TAG_BATCH);
+            start -= headerLength;
+            System.arraycopy(header, 0, frame, start, headerLength);
+        }
+        return Arrays.copyOfRange(frame, start, frame.length);
+    }
+    
+    private static void assertDecodes(List<NetworkMessage> expected, byte[] frame) throws IOException {
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        try {
+            List<NetworkMessage> received = new ArrayList<>();
+            assertEquals(frame.length, decoder.decodeFrame(frame, 0, frame.length, received::add));
+            assertEquals(expected.size(), received.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameMessage(expected.get(i), received.get(i));
+            }
+        } finally {
+            decoder.close();
+        }
+    }
+    
+    private static void assertRejected(byte[] frame) {
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        try {
+            assertThrows(IOException.class, () -> decoder.decodeFrame(frame, 0, frame.length, message -> { }));
+        } finally {
+            decoder.close();
+        }
+    }
+    
+    private static void assertSameMessage(NetworkMessage expected, NetworkMessage actual) {
+        String type = String.valueOf(expected.getType());
+        assertEquals(expected.getType(), actual.getType(), type);
+        assertEquals(expected.getServerId(), actual.getServerId(), type);
+        assertEquals(expected.getServerName(), actual.getServerName(), type);
+        assertEquals(expected.getRoomName(), actual.getRoomName(), type);
+        assertEquals(expected.getPlayerName(), actual.getPlayerName(), type);
+        assertEquals(expected.getMessage(), actual.getMessage(), type);
+        assertEquals(expected.getData(), actual.getData(), type);
+        assertEquals(expected.getTimestamp(), actual.getTimestamp(), type);
+        assertEquals(expected.getSequence(), actual.getSequence(), type);
+        assertEquals(expected.getHops(), actual.getHops(), type);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,371 @@
+package com.world.wst.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 在链、环、星形和全连接拓扑上模拟多台服务器，通过回环地址上的 {@link NetworkTransport} 相连
+ * 
+ * 每台服务器用 {@link MessageRouter} 去重并转发，并像心跳一样公布直接相连的服务器。
+ * 验证每条消息到达所有服务器且只处理一次，有环的拓扑中重复副本被丢弃，
+ * 全连接时不产生转发，以及最大跳数限制转发范围。
+ * 
+ * @author World Studio
+ */
+class MessageRouterTopologyTest {
+    
+    private static final Logger LOGGER = Logger.getLogger("WST-test");
+    private static final long TIMEOUT_MILLIS = 20_000;
+    private static final long SETTLE_MILLIS = 300;
+    private static final int MESSAGES_PER_NODE = 50;
+    
+    static {
+        LOGGER.setLevel(Level.SEVERE);
+    }
+    
+    private final List<NetworkTransport> transports = new ArrayList<>();
+    
+    @AfterEach
+    void closeTransports() {
+        for (NetworkTransport transport : transports) {
+            transport.close();
+        }
+    }
+    
+    @Test
+    void chainRelaysAlongEveryLink() throws Exception {
+        int nodeCount = 8;
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i + 1 < nodeCount; i++) {
+            edges.add(new int[] {i, i + 1});
+        }
+        List<Node> nodes = build("chain", nodeCount, edges, 8);
+        
+        broadcastAndAwait(nodes);
+        // 树形拓扑中每条消息在每条链路上只经过一次，没有重复副本
+        assertEquals(0, duplicatesDropped(nodes));
+        assertEquals(expectedTreeRelays(nodes), relayed(nodes));
+    }
+    
+    @Test
+    void ringDropsCopiesArrivingFromBothDirections() throws Exception {
+        int nodeCount = 8;
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            edges.add(new int[] {i, (i + 1) % nodeCount});
+        }
+        List<Node> nodes = build("ring", nodeCount, edges, 8);
+        
+        broadcastAndAwait(nodes);
+        assertTrue(duplicatesDropped(nodes) >= (long) nodeCount * MESSAGES_PER_NODE,
+            "每条消息沿两个方向到达，至少在一处相遇");
+    }
+    
+    @Test
+    void starRelaysThroughHub() throws Exception {
+        int nodeCount = 13;
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 1; i < nodeCount; i++) {
+            edges.add(new int[] {i, 0});
+        }
+        List<Node> nodes = build("star", nodeCount, edges, 8);
+        
+        broadcastAndAwait(nodes);
+        assertEquals(0, duplicatesDropped(nodes));
+        // 只有中心转发，每条叶子消息转发给其他所有叶子
+        assertEquals((long) (nodeCount - 1) * MESSAGES_PER_NODE * (nodeCount - 2), nodes.get(0).router.getRelayedMessages());
+        assertEquals(expectedTreeRelays(nodes), relayed(nodes));
+    }
+    
+    @Test
+    void meshDoesNotRelayToDirectPeersOfOrigin() throws Exception {
+        int nodeCount = 6;
+        List<Node> nodes = build("mesh", nodeCount, mesh(nodeCount, false), 8);
+        
+        broadcastAndAwait(nodes);
+        // 来源服务器已直接发给所有服务器，每条消息只有 k - 1 个帧
+        assertEquals(0, relayed(nodes));
+        assertEquals(0, duplicatesDropped(nodes));
+    }
+    
+    @Test
+    void meshWithMissingLinkRelaysOnlyAcrossIt() throws Exception {
+        int nodeCount = 6;
+        List<Node> nodes = build("partial", nodeCount, mesh(nodeCount, true), 8);
+        
+        broadcastAndAwait(nodes);
+        // 只有 0 和 1 之间的消息需要转发：其余每台服务器各转发一次，多出的副本被丢弃
+        int intermediates = nodeCount - 2;
+        assertEquals(2L * intermediates * MESSAGES_PER_NODE, relayed(nodes));
+        assertEquals(2L * (intermediates - 1) * MESSAGES_PER_NODE, duplicatesDropped(nodes));
+    }
+    
+    @Test
+    void meshWithoutNeighbourListsStillDeliversOnce() throws Exception {
+        int nodeCount = 6;
+        List<Node> nodes = build("legacy", nodeCount, mesh(nodeCount, false), 8, false);
+        
+        broadcastAndAwait(nodes);
+        // 不公布直接相连服务器的对端 (旧版本) 仍会收到转发，这些副本全部被去重丢弃
+        assertEquals(relayed(nodes), duplicatesDropped(nodes));
+    }
+    
+    @Test
+    void maxHopsLimitsRelayDistance() throws Exception {
+        int nodeCount = 6;
+        int maxHops = 2;
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i + 1 < nodeCount; i++) {
+            edges.add(new int[] {i, i + 1});
+        }
+        List<Node> nodes = build("hops", nodeCount, edges, maxHops);
+        
+        Node origin = nodes.get(0);
+        origin.broadcast(MESSAGES_PER_NODE);
+        // 直接相连的服务器收到跳数 0，之后每转发一次加一，跳数达到上限的服务器不再转发
+        for (int i = 1; i <= maxHops + 1; i++) {
+            Node node = nodes.get(i);
+            await(node.id + " receives", () -> node.count(origin.id) == MESSAGES_PER_NODE);
+        }
+        Thread.sleep(SETTLE_MILLIS);
+        for (int i = maxHops + 2; i < nodeCount; i++) {
+            assertEquals(0, nodes.get(i).count(origin.id), nodes.get(i).id);
+        }
+        for (Node node : nodes) {
+            assertEquals(0, node.redelivered.get(), node.id);
+        }
+    }
+    
+    /**
+     * 全连接拓扑的边
+     * 
+     * @param withoutFirstLink 是否去掉 0 和 1 之间的连接
+     */
+    private static List<int[]> mesh(int nodeCount, boolean withoutFirstLink) {
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            for (int j = i + 1; j < nodeCount; j++) {
+                if (!(withoutFirstLink && i == 0 && j == 1)) {
+                    edges.add(new int[] {i, j});
+                }
+            }
+        }
+        return edges;
+    }
+    
+    private List<Node> build(String name, int nodeCount, List<int[]> edges, int maxHops) throws Exception {
+        return build(name, nodeCount, edges, maxHops, true);
+    }
+    
+    /**
+     * 启动所有服务器并按边建立连接，等待所有连接完成握手
+     * 
+     * @param announce 握手后是否公布直接相连的服务器
+     */
+    private List<Node> build(String name, int nodeCount, List<int[]> edges, int maxHops, boolean announce) throws Exception {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = new Node(name + i, maxHops);
+            node.transport = new NetworkTransport(node.id, node.id, 1, LOGGER, node);
+            node.transport.setRelayEnabled(true);
+            node.transport.setBinaryEnabled(i % 2 == 0);
+            node.transport.start();
+            transports.add(node.transport);
+            node.transport.bind("127.0.0.1", 0);
+            nodes.add(node);
+        }
+        int[] degree = new int[nodeCount];
+        for (int[] edge : edges) {
+            Node to = nodes.get(edge[1]);
+            nodes.get(edge[0]).transport.connect(to.id, "127.0.0.1", to.transport.getLocalPort());
+            degree[edge[0]]++;
+            degree[edge[1]]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = nodes.get(i);
+            int expected = degree[i];
+            await(node.id + " handshakes", () -> node.ready() == expected);
+        }
+        if (announce) {
+            for (Node node : nodes) {
+                node.announce();
+            }
+            // 每个对端公布的列表中都有本服，说明已经收到
+            for (Node node : nodes) {
+                for (PeerConnection connection : node.connections) {
+                    await(node.id + " learns neighbours", () -> connection.hasPeerNeighbour(node.id));
+                }
+            }
+        }
+        return nodes;
+    }
+    
+    /**
+     * 每台服务器发出相同数量的消息，等待所有服务器收到其他所有服务器的全部消息
+     */
+    private static void broadcastAndAwait(List<Node> nodes) throws Exception {
+        for (Node node : nodes) {
+            node.broadcast(MESSAGES_PER_NODE);
+        }
+        for (Node node : nodes) {
+            for (Node origin : nodes) {
+                if (origin != node) {
+                    await(node.id + " receives " + origin.id, () -> node.count(origin.id) == MESSAGES_PER_NODE);
+                }
+            }
+        }
+        // 等待仍在路上的重复副本，确认它们不会被再次处理
+        Thread.sleep(SETTLE_MILLIS);
+        for (Node node : nodes) {
+            assertEquals(0, node.count(node.id), node.id + " 处理了自己发出的消息");
+            assertEquals(0, node.redelivered.get(), node.id);
+            for (Node origin : nodes) {
+                if (origin != node) {
+                    assertEquals(MESSAGES_PER_NODE, node.count(origin.id), node.id + " <- " + origin.id);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 树形拓扑中每条消息经过每条边一次：来源服务器直接发给相邻服务器，其余的边都是转发
+     */
+    private static long expectedTreeRelays(List<Node> nodes) {
+        long total = 0;
+        for (Node node : nodes) {
+            total += (long) MESSAGES_PER_NODE * (nodes.size() - 1 - node.connections.size());
+        }
+        return total;
+    }
+    
+    private static long relayed(List<Node> nodes) {
+        long total = 0;
+        for (Node node : nodes) {
+            total += node.router.getRelayedMessages();
+        }
+        return total;
+    }
+    
+    private static long duplicatesDropped(List<Node> nodes) {
+        long total = 0;
+        for (Node node : nodes) {
+            total += node.router.getDuplicatesDropped();
+        }
+        return total;
+    }
+    
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("等待超时: " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+    
+    /**
+     * 一台模拟的服务器，按 NetworkManager 的规则去重并转发聊天消息
+     */
+    private static class Node implements TransportListener {
+        
+        final String id;
+        final MessageRouter router;
+        final List<PeerConnection> connections = new CopyOnWriteArrayList<>();
+        final Map<String, Set<Long>> delivered = new ConcurrentHashMap<>();
+        final AtomicInteger redelivered = new AtomicInteger();
+        NetworkTransport transport;
+        
+        Node(String id, int maxHops) {
+            this.id = id;
+            this.router = new MessageRouter(id, new DuplicateFilter(65536, 60_000), true, maxHops, 0);
+        }
+        
+        /**
+         * 已完成握手并声明支持转发的连接数
+         */
+        int ready() {
+            int count = 0;
+            for (PeerConnection connection : connections) {
+                if (connection.getPeerServerId() != null && connection.hasPeerFeature(HandshakeInfo.FEATURE_RELAY)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        
+        int count(String origin) {
+            Set<Long> sequences = delivered.get(origin);
+            return sequences != null ? sequences.size() : 0;
+        }
+        
+        void broadcast(int messages) {
+            for (int i = 0; i < messages; i++) {
+                NetworkMessage message = NetworkMessage.createChatMessage(id, id, "lobby", "player", "message " + i);
+                SerializedFrame frame = transport.serialize(router.stamp(message));
+                for (PeerConnection connection : connections) {
+                    connection.send(frame);
+                }
+            }
+        }
+        
+        /**
+         * 与 NetworkManager 的心跳相同，公布直接相连的服务器
+         */
+        void announce() {
+            NetworkMessage update = NetworkMessage.createHeartbeat(id, id);
+            update.setData(router.describeNeighbours(connections));
+            for (PeerConnection connection : connections) {
+                connection.send(update);
+            }
+        }
+        
+        @Override
+        public void onConnected(PeerConnection connection) {
+            connections.add(connection);
+        }
+        
+        @Override
+        public void onConnectFailed(String serverKey, String address, IOException cause) {
+            LOGGER.severe(id + " 连接 " + address + " 失败: " + cause);
+        }
+        
+        @Override
+        public void onMessage(PeerConnection connection, NetworkMessage message) {
+            if (message.getType() == NetworkMessage.Type.HEARTBEAT) {
+                router.onHeartbeat(connection, message);
+                return;
+            }
+            if (message.getType() != NetworkMessage.Type.CHAT_MESSAGE || !router.accept(message)) {
+                return;
+            }
+            Set<Long> sequences = delivered.computeIfAbsent(message.getServerId(), key -> ConcurrentHashMap.newKeySet());
+            if (!sequences.add(message.getSequence())) {
+                redelivered.incrementAndGet();
+            }
+            router.relay(transport, connection, message, connections, peer -> true);
+        }
+        
+        @Override
+        public void onDisconnected(PeerConnection connection) {
+            connections.remove(connection);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,240 @@
+package com.world.wst.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 在同一个 JVM 中通过回环地址运行几十个 {@link NetworkTransport}
+ * 
+ * 验证大量对端连接时 I/O 线程数固定、消息按连接有序送达，以及 JSON 和二进制编码混合时的协商。
+ * {@link com.world.wst.manager.NetworkManager} 需要运行中的 Bukkit 插件 (配置、调度器、事件)，
+ * 不能在测试中创建几十个实例，因此直接运行它使用的传输层；它的 broadcastMessage/sendToServer
+ * 只是把消息序列化一次后交给这里的 {@link PeerConnection#send(SerializedFrame)}，
+ * 对外接口的签名单独检查。
+ * 
+ * @author World Studio
+ */
+class NetworkTransportLoopbackTest {
+    
+    private static final Logger LOGGER = Logger.getLogger("WST-test");
+    private static final long TIMEOUT_MILLIS = 20_000;
+    
+    static {
+        LOGGER.setLevel(Level.SEVERE);
+    }
+    
+    private final List<NetworkTransport> transports = new ArrayList<>();
+    
+    @AfterEach
+    void closeTransports() {
+        for (NetworkTransport transport : transports) {
+            transport.close();
+        }
+    }
+    
+    @Test
+    void hubServesDozensOfPeersOnFixedIoThreads() throws Exception {
+        int peerCount = 40;
+        int messagesPerPeer = 100;
+        
+        Node hub = start("hub", 2, true);
+        hub.transport.bind("127.0.0.1", 0);
+        List<Node> peers = new ArrayList<>();
+        for (int i = 0; i < peerCount; i++) {
+            Node peer = start("peer" + i, 1, i % 2 == 0);
+            peer.transport.connect("hub", "127.0.0.1", hub.transport.getLocalPort());
+            peers.add(peer);
+        }
+        for (Node peer : peers) {
+            await("peer handshake", () -> peer.outbound() != null && peer.outbound().getPeerServerId() != null);
+        }
+        await("hub accepts all peers", () -> hub.inbound.size() == peerCount);
+        
+        for (Node peer : peers) {
+            PeerConnection connection = peer.outbound();
+            for (int i = 0; i < messagesPerPeer; i++) {
+                connection.send(chat(peer.id, i));
+            }
+        }
+        await("hub receives every message", () -> hub.received.get() == peerCount * messagesPerPeer);
+        for (Node peer : peers) {
+            assertEquals(messagesPerPeer, hub.count(peer.id), peer.id);
+        }
+        assertEquals(0, hub.outOfOrder.get());
+        
+        // 同一个帧发给所有入站连接，只编码一次
+        SerializedFrame frame = hub.transport.serialize(chat("hub", 0));
+        for (PeerConnection connection : hub.inbound) {
+            connection.send(frame);
+        }
+        for (Node peer : peers) {
+            await("peer receives broadcast", () -> peer.count("hub") == 1);
+        }
+        
+        // I/O 线程数与连接数无关
+        assertEquals(2, countThreads("WST-hub-io-"));
+        assertEquals(peerCount, countThreads("WST-peer"));
+    }
+    
+    @Test
+    void networkManagerKeepsSendApi() throws Exception {
+        // 其他插件和本插件的调用方使用的接口保持不变
+        Class<?> manager = Class.forName("com.world.wst.manager.NetworkManager", false, getClass().getClassLoader());
+        assertPublicVoid(manager.getMethod("broadcastMessage", String.class, String.class, String.class));
+        assertPublicVoid(manager.getMethod("broadcastMessage", String.class, String.class, String.class, long.class));
+        assertPublicVoid(manager.getMethod("sendToServer", String.class, NetworkMessage.class));
+    }
+    
+    @Test
+    void ringOfMixedCodecsDeliversInOrder() throws Exception {
+        int nodeCount = 24;
+        int messagesPerNode = 200;
+        
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = start("ring" + i, 1, i % 3 != 0);
+            node.transport.bind("127.0.0.1", 0);
+            nodes.add(node);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            Node next = nodes.get((i + 1) % nodeCount);
+            nodes.get(i).transport.connect(next.id, "127.0.0.1", next.transport.getLocalPort());
+        }
+        for (Node node : nodes) {
+            await("ring handshake", () -> node.outbound() != null && node.outbound().getPeerServerId() != null);
+        }
+        
+        for (Node node : nodes) {
+            PeerConnection connection = node.outbound();
+            for (int i = 0; i < messagesPerNode; i++) {
+                connection.send(chat(node.id, i));
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = nodes.get(i);
+            Node previous = nodes.get((i + nodeCount - 1) % nodeCount);
+            await("ring delivery", () -> node.count(previous.id) == messagesPerNode);
+            assertEquals(messagesPerNode, node.received.get(), node.id);
+        }
+        for (Node node : nodes) {
+            assertEquals(0, node.outOfOrder.get(), node.id);
+            // 双方都启用二进制时协商为二进制，否则回退到 JSON
+            Node next = nodes.get((nodes.indexOf(node) + 1) % nodeCount);
+            assertEquals(node.binary && next.binary, node.outbound().isBinary(), node.id + " -> " + next.id);
+        }
+    }
+    
+    private Node start(String id, int ioThreads, boolean binary) throws IOException {
+        Node node = new Node(id, binary);
+        node.transport = new NetworkTransport(id, id, ioThreads, LOGGER, node);
+        node.transport.setBinaryEnabled(binary);
+        node.transport.start();
+        transports.add(node.transport);
+        return node;
+    }
+    
+    private static NetworkMessage chat(String serverId, int index) {
+        return NetworkMessage.createChatMessage(serverId, serverId, "lobby", "player", "message " + index);
+    }
+    
+    private static void assertPublicVoid(Method method) {
+        assertTrue(Modifier.isPublic(method.getModifiers()), method.toString());
+        assertEquals(void.class, method.getReturnType(), method.toString());
+    }
+    
+    private static int countThreads(String prefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("等待超时: " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+    
+    /**
+     * 一个传输层实例，记录连接和收到的聊天消息
+     */
+    private static class Node implements TransportListener {
+        
+        final String id;
+        final boolean binary;
+        final List<PeerConnection> inbound = new CopyOnWriteArrayList<>();
+        final List<PeerConnection> outbound = new CopyOnWriteArrayList<>();
+        final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+        final AtomicInteger received = new AtomicInteger();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        NetworkTransport transport;
+        
+        Node(String id, boolean binary) {
+            this.id = id;
+            this.binary = binary;
+        }
+        
+        PeerConnection outbound() {
+            return outbound.isEmpty() ? null : outbound.get(0);
+        }
+        
+        int count(String origin) {
+            AtomicInteger count = counts.get(origin);
+            return count != null ? count.get() : 0;
+        }
+        
+        @Override
+        public void onConnected(PeerConnection connection) {
+            (connection.getDirection() == PeerConnection.Direction.INBOUND ? inbound : outbound).add(connection);
+        }
+        
+        @Override
+        public void onConnectFailed(String serverKey, String address, IOException cause) {
+            LOGGER.severe(id + " 连接 " + address + " 失败: " + cause);
+        }
+        
+        @Override
+        public void onMessage(PeerConnection connection, NetworkMessage message) {
+            if (message.getType() != NetworkMessage.Type.CHAT_MESSAGE) {
+                return;
+            }
+            // 同一连接上的消息按发送顺序到达
+            int index = counts.computeIfAbsent(message.getServerId(), key -> new AtomicInteger()).getAndIncrement();
+            if (!("message " + index).equals(message.getMessage())) {
+                outOfOrder.incrementAndGet();
+            }
+            received.incrementAndGet();
+        }
+        
+        @Override
+        public void onDisconnected(PeerConnection connection) {
+            inbound.remove(connection);
+            outbound.remove(connection);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.world.wst.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RateLimiter} 回收令牌桶的测试
+ * 
+ * @author World Studio
+ */
+class RateLimiterTest {
+    
+    @Test
+    void evictKeepsDrainedBucketsAndRemovesFullOnes() throws Exception {
+        RateLimit slow = RateLimit.of(0.001, 3);
+        RateLimiter<String> limiter = new RateLimiter<>();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("bot", slow));
+        }
+        assertFalse(limiter.tryAcquire("bot", slow));
+        assertTrue(limiter.tryAcquire("idle", slow));
+        
+        // 用完额度的桶不会被回收，"重新进入" 后仍然受限
+        assertEquals(0, limiter.evictFull(slow));
+        assertFalse(limiter.tryAcquire("bot", slow));
+        assertEquals(2, limiter.size());
+        
+        // 补充足够快时两个桶都已补满，回收后再次出现时与新建的桶相同
+        RateLimit fast = RateLimit.of(1000, 3);
+        Thread.sleep(20);
+        assertEquals(2, limiter.evictFull(fast));
+        assertEquals(0, limiter.size());
+        assertTrue(limiter.tryAcquire("bot", fast));
+        
+        assertEquals(1, limiter.evictFull(RateLimit.UNLIMITED));
+    }
+}
\ No newline at end of file